@@ -0,0 +1,29 @@
+package jamesl.reactive.msgpack;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Java equivalent of the {@code Message} test fixture.
+ */
+final class BenchmarkMessage {
+    long checksum;
+    String name;
+    List<String> interests = new ArrayList<>();
+    Map<String, Integer> ratings = new HashMap<>();
+
+    /**
+     * Clears this message so that it can be reused for the next one.
+     */
+    void clear() {
+        checksum = 0;
+        name = null;
+        interests.clear();
+        ratings.clear();
+    }
+}
@@ -0,0 +1,114 @@
+package jamesl.reactive.msgpack;
+
+import java.util.function.Consumer;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Java equivalent of the {@code MessageElementParserFactory} test fixture, the last parser returns to the
+ * first so a stream of messages can be decoded.
+ */
+final class BenchmarkMessageParserFactory implements ElementParserFactory<BenchmarkMessage> {
+    @Override
+    public ElementParser<BenchmarkMessage> firstElementParser(Consumer<BenchmarkMessage> consumer) {
+        return new NameParser(consumer);
+    }
+
+    /**
+     *
+     */
+    static final class NameParser extends DefaultElementParser<BenchmarkMessage> {
+        private final Consumer<BenchmarkMessage> consumer;
+
+        NameParser(Consumer<BenchmarkMessage> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public ElementParser<BenchmarkMessage> onString(String value) {
+            BenchmarkMessage message = new BenchmarkMessage();
+            message.name = value;
+            return new InterestsParser(this, message);
+        }
+    }
+
+    /**
+     *
+     */
+    static final class InterestsParser extends DefaultElementParser<BenchmarkMessage> {
+        private final NameParser first;
+        private final BenchmarkMessage message;
+        private int numberOfElements;
+
+        InterestsParser(NameParser first, BenchmarkMessage message) {
+            this.first = first;
+            this.message = message;
+        }
+
+        @Override
+        public ElementParser<BenchmarkMessage> onArrayHeader(int numberOfElements) {
+            this.numberOfElements = numberOfElements;
+            return numberOfElements > 0 ? this : new RatingsParser(first, message);
+        }
+
+        @Override
+        public ElementParser<BenchmarkMessage> onString(String value) {
+            message.interests.add(value);
+            return --numberOfElements > 0 ? this : new RatingsParser(first, message);
+        }
+    }
+
+    /**
+     *
+     */
+    static final class RatingsParser extends DefaultElementParser<BenchmarkMessage> {
+        private final NameParser first;
+        private final BenchmarkMessage message;
+        private String name;
+        private int numberOfElements;
+
+        RatingsParser(NameParser first, BenchmarkMessage message) {
+            this.first = first;
+            this.message = message;
+        }
+
+        @Override
+        public ElementParser<BenchmarkMessage> onInt(int value) {
+            message.ratings.put(name, value);
+            return --numberOfElements > 0 ? this : new ChecksumParser(first, message);
+        }
+
+        @Override
+        public ElementParser<BenchmarkMessage> onMapHeader(int numberOfElements) {
+            this.numberOfElements = numberOfElements;
+            return numberOfElements > 0 ? this : new ChecksumParser(first, message);
+        }
+
+        @Override
+        public ElementParser<BenchmarkMessage> onString(String value) {
+            this.name = value;
+            return this;
+        }
+    }
+
+    /**
+     *
+     */
+    static final class ChecksumParser extends DefaultElementParser<BenchmarkMessage> {
+        private final NameParser first;
+        private final BenchmarkMessage message;
+
+        ChecksumParser(NameParser first, BenchmarkMessage message) {
+            this.first = first;
+            this.message = message;
+        }
+
+        @Override
+        public ElementParser<BenchmarkMessage> onLong(long value) {
+            message.checksum = value;
+            first.consumer.accept(message);
+            return first;
+        }
+    }
+}
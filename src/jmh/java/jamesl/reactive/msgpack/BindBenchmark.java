@@ -0,0 +1,71 @@
+package jamesl.reactive.msgpack;
+
+import jamesl.reactive.msgpack.bind.BoundElementParserFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Compares binding messages with {@link BoundElementParserFactory} against the hand written parser chain of
+ * {@link BenchmarkMessageParserFactory}. The bound payload is encoded as maps, so it carries four extra key
+ * strings per message that the hand written payload does not.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BindBenchmark {
+    private static final int MESSAGES = 1024;
+
+    @Param({"false", "true"})
+    public boolean stringCache;
+
+    private ByteBuffer boundInput;
+    private ByteBuffer handWrittenInput;
+    private StreamDecoder<BenchmarkMessage> boundDecoder;
+    private StreamDecoder<BenchmarkMessage> handWrittenDecoder;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        boundInput = Payloads.boundMessages(MESSAGES);
+        handWrittenInput = Payloads.messages(MESSAGES);
+        UnpackerOptions options = new UnpackerOptions().stringCache(stringCache ? StringCache::new : null);
+        boundDecoder = new StreamDecoder<>(BoundElementParserFactory.of(BenchmarkMessage.class), this::consume, options);
+        handWrittenDecoder = new StreamDecoder<>(new BenchmarkMessageParserFactory(), this::consume, options);
+    }
+
+    @Benchmark
+    public void bound(Counters counters) {
+        boundInput.rewind();
+        boundDecoder.decode(boundInput);
+
+        counters.bytes += boundInput.limit();
+        counters.elements += MESSAGES;
+    }
+
+    @Benchmark
+    public void handWritten(Counters counters) {
+        handWrittenInput.rewind();
+        handWrittenDecoder.decode(handWrittenInput);
+
+        counters.bytes += handWrittenInput.limit();
+        counters.elements += MESSAGES;
+    }
+
+    private void consume(BenchmarkMessage message) {
+        blackhole.consume(message);
+    }
+}
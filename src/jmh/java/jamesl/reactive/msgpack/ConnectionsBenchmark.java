@@ -0,0 +1,91 @@
+package jamesl.reactive.msgpack;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Decodes many concurrent connections with a single shared {@link DecoderEngine}. Every connection receives one
+ * message per operation, split in two so that each connection holds a split frame while the others are decoded.
+ * {@code open} creates the connections for each operation, so its normalised allocation divided by
+ * {@code connections} is the cost of a connection that decodes one message, while {@code interleaved} reuses
+ * long lived connections to show how throughput scales with their number.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ConnectionsBenchmark {
+    private static final int ELEMENTS_PER_MESSAGE = 12;
+
+    @Param({"1", "1000", "50000"})
+    public int connections;
+
+    private DecoderEngine<BenchmarkMessage> engine;
+    private ByteBuffer firstHalf;
+    private ByteBuffer secondHalf;
+    private StreamDecoder<BenchmarkMessage>[] streams;
+    private Blackhole blackhole;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        ByteBuffer message = Payloads.messages(1);
+        int split = message.limit() / 2;
+        firstHalf = message.duplicate();
+        firstHalf.limit(split);
+        secondHalf = message.duplicate();
+        secondHalf.position(split);
+        secondHalf = secondHalf.slice();
+        firstHalf = firstHalf.slice();
+
+        engine = new DecoderEngine<>(new BenchmarkMessageParserFactory(), new UnpackerOptions());
+        streams = new StreamDecoder[connections];
+        for (int i = 0; i < connections; i++) {
+            streams[i] = engine.newStream(this::consume);
+        }
+    }
+
+    @Benchmark
+    public void open(Counters counters) {
+        for (int i = 0; i < connections; i++) {
+            streams[i] = engine.newStream(this::consume);
+        }
+        decodeAll(counters);
+    }
+
+    @Benchmark
+    public void interleaved(Counters counters) {
+        decodeAll(counters);
+    }
+
+    private void decodeAll(Counters counters) {
+        for (int i = 0; i < connections; i++) {
+            firstHalf.rewind();
+            streams[i].decode(firstHalf);
+        }
+        for (int i = 0; i < connections; i++) {
+            secondHalf.rewind();
+            streams[i].decode(secondHalf);
+        }
+
+        counters.bytes += (long) (firstHalf.limit() + secondHalf.limit()) * connections;
+        counters.elements += (long) ELEMENTS_PER_MESSAGE * connections;
+    }
+
+    private void consume(BenchmarkMessage message) {
+        blackhole.consume(message);
+    }
+}
@@ -0,0 +1,27 @@
+package jamesl.reactive.msgpack;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Level;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Secondary results reported alongside ops/s, in throughput mode JMH reports each field as a rate so
+ * {@code bytes} is bytes/s and {@code elements} is elements/s.
+ */
+@AuxCounters
+@State(Scope.Thread)
+public class Counters {
+    public long bytes;
+    public long elements;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        bytes = 0;
+        elements = 0;
+    }
+}
@@ -0,0 +1,87 @@
+package jamesl.reactive.msgpack;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Compares table driven dispatch with dispatch through {@link WireFormat} on a payload that mixes every wire
+ * format, so that the {@link WireFormat} call sites are megamorphic, and on realistic nested messages.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DispatchBenchmark {
+    private static final String[] WIRE_FORMATS = {
+            "PositiveFixInt", "FixStr", "Int8", "Nil", "Float64", "Str8", "UnsignedInt16", "False", "Int32",
+            "NegativeFixInt", "Bin8", "UnsignedInt8", "Float32", "Int64", "True", "Str16", "Int16", "UnsignedInt32",
+            "Bin16", "UnsignedInt64", "Str32", "Bin32", "FixArray", "Map16", "Array32", "FixMap", "Array16", "Map32"
+    };
+    private static final int REPETITIONS = 256;
+    private static final int MESSAGES = 1024;
+    private static final int ELEMENTS_PER_MESSAGE = 12;
+
+    @Param({"true", "false"})
+    public boolean tableDispatch;
+
+    private ByteBuffer mixed;
+    private ByteBuffer messages;
+    private SinkElementParserFactory sinkElementParserFactory;
+    private StreamDecoder<Object> mixedDecoder;
+    private StreamDecoder<BenchmarkMessage> messageDecoder;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        UnpackerOptions options = new UnpackerOptions().tableDispatch(tableDispatch);
+
+        ByteBuffer elements = ByteBuffer.allocate(64 * WIRE_FORMATS.length);
+        for (String wireFormat : WIRE_FORMATS) {
+            elements.put(Payloads.element(wireFormat));
+        }
+        elements.flip();
+        mixed = Payloads.repeat(elements, REPETITIONS);
+        messages = Payloads.messages(MESSAGES);
+
+        sinkElementParserFactory = new SinkElementParserFactory(false);
+        mixedDecoder = new StreamDecoder<>(sinkElementParserFactory, output -> {
+        }, options);
+        messageDecoder = new StreamDecoder<>(new BenchmarkMessageParserFactory(), this::consume, options);
+    }
+
+    @Benchmark
+    public long mixed(Counters counters) {
+        mixed.rewind();
+        mixedDecoder.decode(mixed);
+
+        counters.bytes += mixed.limit();
+        counters.elements += WIRE_FORMATS.length * REPETITIONS;
+        return sinkElementParserFactory.sink();
+    }
+
+    @Benchmark
+    public void messages(Counters counters) {
+        messages.rewind();
+        messageDecoder.decode(messages);
+
+        counters.bytes += messages.limit();
+        counters.elements += MESSAGES * ELEMENTS_PER_MESSAGE;
+    }
+
+    private void consume(BenchmarkMessage message) {
+        blackhole.consume(message);
+    }
+}
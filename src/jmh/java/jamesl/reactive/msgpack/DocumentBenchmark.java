@@ -0,0 +1,68 @@
+package jamesl.reactive.msgpack;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Compares reading one nested field of every message through a lazy {@link MsgpackDocument} with materialising
+ * each message into a tree of maps and lists first. Compare the gc.alloc.rate.norm results for the memory cost
+ * of each approach.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DocumentBenchmark {
+    private static final int MESSAGES = 1024;
+
+    private final MsgpackDocument.Parser parser = new MsgpackDocument.Parser();
+    private ByteBuffer input;
+    private StreamDecoder<Object> streamDecoder;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        input = Payloads.boundMessages(MESSAGES);
+        streamDecoder = new StreamDecoder<>(new TreeElementParserFactory(), this::consume);
+    }
+
+    @Benchmark
+    public void lazy(Counters counters) {
+        input.rewind();
+        while (input.hasRemaining()) {
+            MsgpackDocument document = parser.parse(input);
+            blackhole.consume(document.root().get("ratings").get("gerkins").asLong());
+        }
+
+        counters.bytes += input.limit();
+        counters.elements += MESSAGES;
+    }
+
+    @Benchmark
+    public void materialised(Counters counters) {
+        input.rewind();
+        streamDecoder.decode(input);
+
+        counters.bytes += input.limit();
+        counters.elements += MESSAGES;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void consume(Object message) {
+        Map<String, Object> ratings = (Map<String, Object>) ((Map<String, Object>) message).get("ratings");
+        blackhole.consume(ratings.get("gerkins"));
+    }
+}
@@ -0,0 +1,73 @@
+package jamesl.reactive.msgpack;
+
+import jamesl.reactive.msgpack.bind.BoundElementParserFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Keeps one in ten bound messages, either by binding every message and testing its checksum afterwards, or by
+ * pushing the same test down to the bytes with a {@link MessageFilter} so that the other nine are never bound.
+ * The checksum is the last key of each message, so the filter has to pass over the rest of the message to find it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FilterBenchmark {
+    private static final int MESSAGES = 1024;
+    private static final int MATCHING_MESSAGES = MESSAGES / 10;
+
+    private ByteBuffer input;
+    private StreamDecoder<BenchmarkMessage> decoder;
+    private StreamDecoder<BenchmarkMessage> filteredDecoder;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        input = Payloads.boundMessages(MESSAGES);
+        ElementParserFactory<BenchmarkMessage> elementParserFactory = BoundElementParserFactory.of(BenchmarkMessage.class);
+        decoder = new StreamDecoder<>(elementParserFactory, this::consumeMatching);
+        UnpackerOptions options = new UnpackerOptions().messageFilter(KeyPath.of("checksum").between(0, MATCHING_MESSAGES - 1));
+        filteredDecoder = new StreamDecoder<>(elementParserFactory, this::consume, options);
+    }
+
+    @Benchmark
+    public void decodeAndFilter(Counters counters) {
+        input.rewind();
+        decoder.decode(input);
+
+        counters.bytes += input.limit();
+        counters.elements += MESSAGES;
+    }
+
+    @Benchmark
+    public void pushdown(Counters counters) {
+        input.rewind();
+        filteredDecoder.decode(input);
+
+        counters.bytes += input.limit();
+        counters.elements += MESSAGES;
+    }
+
+    private void consumeMatching(BenchmarkMessage message) {
+        if (message.checksum < MATCHING_MESSAGES) {
+            blackhole.consume(message);
+        }
+    }
+
+    private void consume(BenchmarkMessage message) {
+        blackhole.consume(message);
+    }
+}
@@ -0,0 +1,91 @@
+package jamesl.reactive.msgpack;
+
+import jamesl.reactive.msgpack.json.JsonTranscoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Converts messages shaped like the {@code Message} test fixture to JSON, either by decoding each one to a
+ * {@link BenchmarkMessage} and serialising it again, or by transcoding the elements straight to JSON bytes with a
+ * {@link JsonTranscoder}. Both produce the same bytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class JsonBenchmark {
+    private static final int MESSAGES = 1024;
+    private static final int ELEMENTS_PER_MESSAGE = 12;
+
+    private ByteBuffer input;
+    private StreamDecoder<BenchmarkMessage> objectDecoder;
+    private StreamDecoder<ByteBuffer> jsonDecoder;
+    private JsonTranscoder transcoder;
+    private StringBuilder json;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        input = Payloads.messages(MESSAGES);
+        transcoder = new JsonTranscoder(new BufferPool(256, 16));
+        objectDecoder = new StreamDecoder<>(new BenchmarkMessageParserFactory(), this::serialise);
+        jsonDecoder = new StreamDecoder<>(transcoder, this::consume);
+        json = new StringBuilder(256);
+    }
+
+    @Benchmark
+    public void decodeAndSerialise(Counters counters) {
+        input.rewind();
+        objectDecoder.decode(input);
+
+        counters.bytes += input.limit();
+        counters.elements += MESSAGES * ELEMENTS_PER_MESSAGE;
+    }
+
+    @Benchmark
+    public void transcode(Counters counters) {
+        input.rewind();
+        jsonDecoder.decode(input);
+
+        counters.bytes += input.limit();
+        counters.elements += MESSAGES * ELEMENTS_PER_MESSAGE;
+    }
+
+    private void serialise(BenchmarkMessage message) {
+        json.setLength(0);
+        json.append('"').append(message.name).append('"');
+        json.append('[');
+        for (int i = 0; i < message.interests.size(); i++) {
+            json.append(i == 0 ? "\"" : ",\"").append(message.interests.get(i)).append('"');
+        }
+        json.append(']');
+        json.append('{');
+        boolean first = true;
+        for (Map.Entry<String, Integer> rating : message.ratings.entrySet()) {
+            json.append(first ? "\"" : ",\"").append(rating.getKey()).append("\":").append(rating.getValue());
+            first = false;
+        }
+        json.append('}');
+        json.append(message.checksum);
+        blackhole.consume(json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void consume(ByteBuffer json) {
+        blackhole.consume(json);
+        transcoder.release(json);
+    }
+}
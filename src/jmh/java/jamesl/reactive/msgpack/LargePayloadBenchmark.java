@@ -0,0 +1,64 @@
+package jamesl.reactive.msgpack;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Decodes a single large str32 or bin32 blob, either in one buffer or split into socket sized chunks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LargePayloadBenchmark {
+    @Param({"Str32", "Bin32"})
+    public String wireFormat;
+
+    @Param({"16384", "1048576"})
+    public int length;
+
+    // JL 0 means the blob arrives in a single buffer.
+    @Param({"0", "65536"})
+    public int chunk;
+
+    @Param({"false", "true"})
+    public boolean zeroCopy;
+
+    private List<ByteBuffer> inputs;
+    private SinkElementParserFactory elementParserFactory;
+    private StreamDecoder<Object> streamDecoder;
+
+    @Setup
+    public void setup() {
+        ByteBuffer blob = Payloads.blob("Str32".equals(wireFormat) ? (byte) 0xdb : (byte) 0xc6, length);
+        inputs = Payloads.split(blob, Integer.toString(chunk == 0 ? blob.limit() : chunk));
+        elementParserFactory = new SinkElementParserFactory(zeroCopy);
+        streamDecoder = new StreamDecoder<>(elementParserFactory, output -> {
+        });
+    }
+
+    @Benchmark
+    public long decode(Counters counters) {
+        for (int i = 0; i < inputs.size(); i++) {
+            ByteBuffer input = inputs.get(i);
+            input.rewind();
+            streamDecoder.decode(input);
+            counters.bytes += input.limit();
+        }
+
+        counters.elements++;
+        return elementParserFactory.sink();
+    }
+}
@@ -0,0 +1,63 @@
+package jamesl.reactive.msgpack;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Replays a file of messages through {@link MappedFileSource} using a zero copy parser, the file stays in the
+ * page cache so this measures the decoder rather than the disk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MappedFileBenchmark {
+    private static final int MESSAGES = 64 * 1024;
+
+    @Param({"65536", "67108864"})
+    public int windowSize;
+
+    private Path path;
+    private long size;
+    private SinkElementParserFactory sinkElementParserFactory;
+    private Unpacker<Object> unpacker;
+
+    @Setup
+    public void setup() throws IOException {
+        ByteBuffer messages = Payloads.messages(MESSAGES);
+        path = Files.createTempFile("msgpack", ".bin");
+        Files.write(path, messages.array());
+        size = messages.limit();
+
+        sinkElementParserFactory = new SinkElementParserFactory(true);
+        unpacker = new Unpacker<>(sinkElementParserFactory);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Benchmark
+    public long replay(Counters counters) {
+        unpacker.unpack(MappedFileSource.map(path, windowSize)).blockLast();
+
+        counters.bytes += size;
+        return sinkElementParserFactory.sink();
+    }
+}
@@ -0,0 +1,83 @@
+package jamesl.reactive.msgpack;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Decodes realistic nested messages, shaped like the {@code Message} test fixture, using a stateful chain
+ * of {@link ElementParser}s, with and without a {@link StringCache} for the repeated strings, and with a chain that
+ * creates new states and messages for every message or one that reuses them through an {@link ObjectPool}. The pooled
+ * chain can also match its ratings keys against a {@link SymbolTable}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MessageBenchmark {
+    private static final int MESSAGES = 1024;
+    private static final int ELEMENTS_PER_MESSAGE = 12;
+
+    @Param({"false", "true"})
+    public boolean stringCache;
+
+    @Param({"false", "true"})
+    public boolean pooled;
+
+    @Param({"false", "true"})
+    public boolean symbolKeys;
+
+    private ByteBuffer input;
+    private StreamDecoder<BenchmarkMessage> streamDecoder;
+    private Unpacker<BenchmarkMessage> unpacker;
+    private ObjectPool<BenchmarkMessage> pool;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        input = Payloads.messages(MESSAGES);
+        UnpackerOptions options = new UnpackerOptions().stringCache(stringCache ? StringCache::new : null);
+        pool = new ObjectPool<>(BenchmarkMessage::new, BenchmarkMessage::clear, 64);
+        ElementParserFactory<BenchmarkMessage> elementParserFactory = pooled ? new PooledMessageParserFactory(pool, symbolKeys) : new BenchmarkMessageParserFactory();
+        streamDecoder = new StreamDecoder<>(elementParserFactory, this::consume, options);
+        unpacker = new Unpacker<>(elementParserFactory, options);
+    }
+
+    @Benchmark
+    public void decode(Counters counters) {
+        input.rewind();
+        streamDecoder.decode(input);
+
+        counters.bytes += input.limit();
+        counters.elements += MESSAGES * ELEMENTS_PER_MESSAGE;
+    }
+
+    @Benchmark
+    public void unpack(Counters counters) {
+        ByteBuffer buffer = input.duplicate();
+        unpacker.unpack(Flux.just(buffer)).subscribe(this::consume);
+
+        counters.bytes += buffer.limit();
+        counters.elements += MESSAGES * ELEMENTS_PER_MESSAGE;
+    }
+
+    private void consume(BenchmarkMessage message) {
+        blackhole.consume(message);
+        if (pooled) {
+            pool.release(message);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package jamesl.reactive.msgpack;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Encodes messages shaped like the {@code Message} test fixture into pooled buffers, releasing each buffer
+ * as soon as it is emitted.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PackerBenchmark {
+    private static final int MESSAGES = 1024;
+
+    private List<BenchmarkMessage> messages;
+    private Packer<BenchmarkMessage> packer;
+
+    @Setup
+    public void setup() {
+        messages = new ArrayList<>();
+        for (int i = 0; i < MESSAGES; i++) {
+            BenchmarkMessage message = new BenchmarkMessage();
+            message.name = "james";
+            message.interests.add("reactive");
+            message.interests.add("msgpack");
+            message.ratings.put("pizza", 100);
+            message.ratings.put("beer", 100);
+            message.ratings.put("gerkins", i);
+            message.checksum = i;
+            messages.add(message);
+        }
+
+        packer = new Packer<>((value, output) -> {
+            output.packString(value.name);
+            output.packArrayHeader(value.interests.size());
+            for (String interest : value.interests) {
+                output.packString(interest);
+            }
+            output.packMapHeader(value.ratings.size());
+            value.ratings.forEach((k, v) -> output.packString(k).packInt(v));
+            output.packLong(value.checksum);
+        });
+    }
+
+    @Benchmark
+    public void pack(Counters counters) {
+        packer.pack(Flux.fromIterable(messages)).subscribe(buffer -> {
+            counters.bytes += buffer.remaining();
+            packer.release(buffer);
+        });
+
+        counters.elements += MESSAGES;
+    }
+}
@@ -0,0 +1,53 @@
+package jamesl.reactive.msgpack;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Compares decoding a large buffer of messages sequentially with {@link Unpacker#unpackParallel(ByteBuffer, int)},
+ * with and without preserving input order.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParallelDecodeBenchmark {
+    private static final int MESSAGES = 64 * 1024;
+    private static final int VALUES_PER_MESSAGE = 4;
+
+    @Param({"true", "false"})
+    public boolean preserveOrder;
+
+    private ByteBuffer input;
+    private Unpacker<BenchmarkMessage> unpacker;
+
+    @Setup
+    public void setup() {
+        input = Payloads.messages(MESSAGES);
+        unpacker = new Unpacker<>(new BenchmarkMessageParserFactory(), new UnpackerOptions().preserveOrder(preserveOrder));
+    }
+
+    @Benchmark
+    public long sequential(Counters counters) {
+        counters.bytes += input.limit();
+        return unpacker.unpack(Flux.just(input.duplicate())).count().block();
+    }
+
+    @Benchmark
+    public long parallel(Counters counters) {
+        counters.bytes += input.limit();
+        return unpacker.unpackParallel(input, VALUES_PER_MESSAGE).count().block();
+    }
+}
@@ -0,0 +1,258 @@
+package jamesl.reactive.msgpack;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Builds msgpack encoded inputs for the benchmarks.
+ */
+final class Payloads {
+    private Payloads() {
+    }
+
+    /**
+     * Returns a buffer containing a single element encoded using the named {@link WireFormat}.
+     *
+     * @param wireFormat
+     * @return
+     */
+    static ByteBuffer element(String wireFormat) {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        byte[] str = "reactive".getBytes(StandardCharsets.UTF_8);
+
+        switch (wireFormat) {
+            case "PositiveFixInt":
+                buffer.put((byte) 0x14);
+                break;
+            case "FixMap":
+                buffer.put((byte) 0x83);
+                break;
+            case "FixArray":
+                buffer.put((byte) 0x93);
+                break;
+            case "FixStr":
+                buffer.put((byte) (0xa0 | str.length)).put(str);
+                break;
+            case "NegativeFixInt":
+                buffer.put((byte) 0xf0);
+                break;
+            case "Nil":
+                buffer.put((byte) 0xc0);
+                break;
+            case "False":
+                buffer.put((byte) 0xc2);
+                break;
+            case "True":
+                buffer.put((byte) 0xc3);
+                break;
+            case "Bin8":
+                buffer.put((byte) 0xc4).put((byte) str.length).put(str);
+                break;
+            case "Bin16":
+                buffer.put((byte) 0xc5).putShort((short) str.length).put(str);
+                break;
+            case "Bin32":
+                buffer.put((byte) 0xc6).putInt(str.length).put(str);
+                break;
+            case "Float32":
+                buffer.put((byte) 0xca).putFloat(2.345f);
+                break;
+            case "Float64":
+                buffer.put((byte) 0xcb).putDouble(2.345);
+                break;
+            case "UnsignedInt8":
+                buffer.put((byte) 0xcc).put((byte) 200);
+                break;
+            case "UnsignedInt16":
+                buffer.put((byte) 0xcd).putShort((short) 60000);
+                break;
+            case "UnsignedInt32":
+                buffer.put((byte) 0xce).putInt(0xf0000000);
+                break;
+            case "UnsignedInt64":
+                buffer.put((byte) 0xcf).putLong(1479830000000L);
+                break;
+            case "Int8":
+                buffer.put((byte) 0xd0).put((byte) -100);
+                break;
+            case "Int16":
+                buffer.put((byte) 0xd1).putShort((short) -20000);
+                break;
+            case "Int32":
+                buffer.put((byte) 0xd2).putInt(-2000000);
+                break;
+            case "Int64":
+                buffer.put((byte) 0xd3).putLong(-1479830000000L);
+                break;
+            case "Str8":
+                buffer.put((byte) 0xd9).put((byte) str.length).put(str);
+                break;
+            case "Str16":
+                buffer.put((byte) 0xda).putShort((short) str.length).put(str);
+                break;
+            case "Str32":
+                buffer.put((byte) 0xdb).putInt(str.length).put(str);
+                break;
+            case "Array16":
+                buffer.put((byte) 0xdc).putShort((short) 3);
+                break;
+            case "Array32":
+                buffer.put((byte) 0xdd).putInt(3);
+                break;
+            case "Map16":
+                buffer.put((byte) 0xde).putShort((short) 3);
+                break;
+            case "Map32":
+                buffer.put((byte) 0xdf).putInt(3);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown wire format - wireFormat = " + wireFormat);
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer containing a single str32 or bin32 element with a payload of {@code length} bytes.
+     *
+     * @param head
+     * @param length
+     * @return
+     */
+    static ByteBuffer blob(byte head, int length) {
+        byte[] payload = new byte[length];
+        Arrays.fill(payload, (byte) 'x');
+
+        ByteBuffer buffer = ByteBuffer.allocate(length + 5).put(head).putInt(length).put(payload);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer containing {@code count} messages shaped like the {@code Message} test fixture.
+     *
+     * @param count
+     * @return
+     */
+    static ByteBuffer messages(int count) {
+        ByteBuffer buffer = ByteBuffer.allocate(count * 128);
+        for (int i = 0; i < count; i++) {
+            str8("james", buffer);
+
+            buffer.put((byte) 0xdc).putShort((short) 2);
+            str8("reactive", buffer);
+            str8("msgpack", buffer);
+
+            buffer.put((byte) 0xde).putShort((short) 3);
+            str8("pizza", buffer);
+            buffer.put((byte) 0xd2).putInt(100);
+            str8("beer", buffer);
+            buffer.put((byte) 0xd2).putInt(100);
+            str8("gerkins", buffer);
+            buffer.put((byte) 0xd2).putInt(i);
+
+            buffer.put((byte) 0xd3).putLong(i);
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer containing {@code count} messages with the same content as {@link Payloads#messages(int)},
+     * each encoded as a map keyed by the field names of {@link BenchmarkMessage}.
+     *
+     * @param count
+     * @return
+     */
+    static ByteBuffer boundMessages(int count) {
+        ByteBuffer buffer = ByteBuffer.allocate(count * 160);
+        for (int i = 0; i < count; i++) {
+            buffer.put((byte) 0x84);
+            str8("name", buffer);
+            str8("james", buffer);
+
+            str8("interests", buffer);
+            buffer.put((byte) 0xdc).putShort((short) 2);
+            str8("reactive", buffer);
+            str8("msgpack", buffer);
+
+            str8("ratings", buffer);
+            buffer.put((byte) 0xde).putShort((short) 3);
+            str8("pizza", buffer);
+            buffer.put((byte) 0xd2).putInt(100);
+            str8("beer", buffer);
+            buffer.put((byte) 0xd2).putInt(100);
+            str8("gerkins", buffer);
+            buffer.put((byte) 0xd2).putInt(i);
+
+            str8("checksum", buffer);
+            buffer.put((byte) 0xd3).putLong(i);
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer containing {@code count} copies of {@code element}.
+     *
+     * @param element
+     * @param count
+     * @return
+     */
+    static ByteBuffer repeat(ByteBuffer element, int count) {
+        ByteBuffer buffer = ByteBuffer.allocate(element.remaining() * count);
+        for (int i = 0; i < count; i++) {
+            buffer.put(element.duplicate());
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Splits {@code buffer} into views of at most {@code split} bytes, "random" splits into views of
+     * between 1 and 16 bytes using a fixed seed so runs are comparable.
+     *
+     * @param buffer
+     * @param split
+     * @return
+     */
+    static List<ByteBuffer> split(ByteBuffer buffer, String split) {
+        List<ByteBuffer> result = new ArrayList<>();
+        Random random = new Random(42);
+
+        int offset = 0;
+        while (offset < buffer.limit()) {
+            int length = "random".equals(split) ? random.nextInt(16) + 1 : Integer.parseInt(split);
+            length = Math.min(length, buffer.limit() - offset);
+
+            ByteBuffer view = buffer.duplicate();
+            view.limit(offset + length).position(offset);
+            result.add(view.slice());
+            offset += length;
+        }
+
+        return result;
+    }
+
+    /**
+     * Packs {@code s} as a msgpack "str8" element.
+     *
+     * @param s
+     * @param buffer
+     */
+    private static void str8(String s, ByteBuffer buffer) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        buffer.put((byte) 0xd9).put((byte) bytes.length).put(bytes);
+    }
+}
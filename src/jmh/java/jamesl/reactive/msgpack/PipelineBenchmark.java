@@ -0,0 +1,77 @@
+package jamesl.reactive.msgpack;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Unpacks a stream of 4 KB input buffers whose publisher burns {@code readTokens} of CPU per buffer, standing in for
+ * a socket read, either decoding on the publishing thread or pipelined onto a dedicated decode thread. Pipelining
+ * only pays off when there is a spare core for the decode thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PipelineBenchmark {
+    private static final int MESSAGES = 1024;
+    private static final int ELEMENTS_PER_MESSAGE = 12;
+
+    @Param({"false", "true"})
+    public boolean pipelined;
+
+    @Param({"0", "2000"})
+    public long readTokens;
+
+    private List<ByteBuffer> inputs;
+    private int inputBytes;
+    private Unpacker<BenchmarkMessage> unpacker;
+    private Scheduler scheduler;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        ByteBuffer input = Payloads.messages(MESSAGES);
+        inputBytes = input.limit();
+        inputs = Payloads.split(input, "4096");
+        unpacker = new Unpacker<>(new BenchmarkMessageParserFactory());
+        scheduler = Schedulers.newSingle("decode");
+    }
+
+    @TearDown
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Benchmark
+    public void unpack(Counters counters) {
+        Flux<ByteBuffer> reads = Flux.fromIterable(inputs).map(this::read);
+        Flux<BenchmarkMessage> messages = pipelined ? unpacker.unpackOn(reads, scheduler) : unpacker.unpack(reads);
+        blackhole.consume(messages.doOnNext(blackhole::consume).blockLast());
+
+        counters.bytes += inputBytes;
+        counters.elements += MESSAGES * ELEMENTS_PER_MESSAGE;
+    }
+
+    private ByteBuffer read(ByteBuffer input) {
+        Blackhole.consumeCPU(readTokens);
+        return input.duplicate();
+    }
+}
@@ -0,0 +1,150 @@
+package jamesl.reactive.msgpack;
+
+import java.util.function.Consumer;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Equivalent of {@link BenchmarkMessageParserFactory} whose chain creates each of its states once and takes its
+ * messages from an {@link ObjectPool}, so that a steady stream of messages only allocates what the message itself
+ * holds on to. The subscriber releases each message back to the pool. When {@code symbolKeys} is {@code true} the
+ * ratings keys are matched against a {@link SymbolTable} and arrive as ids rather than decoded strings.
+ */
+final class PooledMessageParserFactory implements ElementParserFactory<BenchmarkMessage> {
+    private static final SymbolTable RATINGS = SymbolTable.of("pizza", "beer", "gerkins");
+    private final ObjectPool<BenchmarkMessage> pool;
+    private final SymbolTable ratings;
+
+    PooledMessageParserFactory(ObjectPool<BenchmarkMessage> pool, boolean symbolKeys) {
+        this.pool = pool;
+        this.ratings = symbolKeys ? RATINGS : null;
+    }
+
+    @Override
+    public ElementParser<BenchmarkMessage> firstElementParser(Consumer<BenchmarkMessage> consumer) {
+        return new Chain(pool, ratings, consumer).nameParser;
+    }
+
+    /**
+     * The states of a single chain and the message they are parsing.
+     */
+    static final class Chain {
+        private final ObjectPool<BenchmarkMessage> pool;
+        private final SymbolTable ratings;
+        private final Consumer<BenchmarkMessage> consumer;
+        private final NameParser nameParser = new NameParser();
+        private final InterestsParser interestsParser = new InterestsParser();
+        private final RatingsParser ratingsParser = new RatingsParser();
+        private final ChecksumParser checksumParser = new ChecksumParser();
+        private BenchmarkMessage message;
+        private String name;
+        private int numberOfElements;
+        private boolean expectingKey;
+
+        Chain(ObjectPool<BenchmarkMessage> pool, SymbolTable ratings, Consumer<BenchmarkMessage> consumer) {
+            this.pool = pool;
+            this.ratings = ratings;
+            this.consumer = consumer;
+        }
+
+        ElementParser<BenchmarkMessage> reset() {
+            if (message != null) {
+                pool.release(message);
+                message = null;
+            }
+            return nameParser;
+        }
+
+        /**
+         *
+         */
+        abstract class State extends DefaultElementParser<BenchmarkMessage> {
+            @Override
+            public ElementParser<BenchmarkMessage> reset() {
+                return Chain.this.reset();
+            }
+        }
+
+        /**
+         *
+         */
+        final class NameParser extends State {
+            @Override
+            public ElementParser<BenchmarkMessage> onString(String value) {
+                message = pool.acquire();
+                message.name = value;
+                return interestsParser;
+            }
+        }
+
+        /**
+         *
+         */
+        final class InterestsParser extends State {
+            @Override
+            public ElementParser<BenchmarkMessage> onArrayHeader(int numberOfElements) {
+                Chain.this.numberOfElements = numberOfElements;
+                return numberOfElements > 0 ? this : ratingsParser;
+            }
+
+            @Override
+            public ElementParser<BenchmarkMessage> onString(String value) {
+                message.interests.add(value);
+                return --numberOfElements > 0 ? this : ratingsParser;
+            }
+        }
+
+        /**
+         *
+         */
+        final class RatingsParser extends State {
+            @Override
+            public SymbolTable symbolTable() {
+                return expectingKey ? ratings : null;
+            }
+
+            @Override
+            public ElementParser<BenchmarkMessage> onInt(int value) {
+                message.ratings.put(name, value);
+                expectingKey = true;
+                return --numberOfElements > 0 ? this : checksumParser;
+            }
+
+            @Override
+            public ElementParser<BenchmarkMessage> onMapHeader(int numberOfElements) {
+                Chain.this.numberOfElements = numberOfElements;
+                expectingKey = true;
+                return numberOfElements > 0 ? this : checksumParser;
+            }
+
+            @Override
+            public ElementParser<BenchmarkMessage> onKey(int symbolId) {
+                name = ratings.name(symbolId);
+                expectingKey = false;
+                return this;
+            }
+
+            @Override
+            public ElementParser<BenchmarkMessage> onString(String value) {
+                name = value;
+                expectingKey = false;
+                return this;
+            }
+        }
+
+        /**
+         *
+         */
+        final class ChecksumParser extends State {
+            @Override
+            public ElementParser<BenchmarkMessage> onLong(long value) {
+                BenchmarkMessage complete = message;
+                complete.checksum = value;
+                message = null;
+                consumer.accept(complete);
+                return nameParser;
+            }
+        }
+    }
+}
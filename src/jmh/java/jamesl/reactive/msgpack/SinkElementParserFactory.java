@@ -0,0 +1,166 @@
+package jamesl.reactive.msgpack;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * {@link ElementParserFactory} whose parser folds every value it receives into {@link SinkElementParser#sink}
+ * so the JIT cannot eliminate the decoding work. No messages are emitted.
+ */
+final class SinkElementParserFactory implements ElementParserFactory<Object> {
+    private final boolean zeroCopy;
+    private SinkElementParser elementParser;
+
+    SinkElementParserFactory(boolean zeroCopy) {
+        this.zeroCopy = zeroCopy;
+    }
+
+    @Override
+    public ElementParser<Object> firstElementParser(Consumer<Object> consumer) {
+        elementParser = new SinkElementParser(zeroCopy);
+        return elementParser;
+    }
+
+    /**
+     * Returns the accumulated value of the last parser created by this factory.
+     *
+     * @return
+     */
+    long sink() {
+        return elementParser.sink;
+    }
+
+    /**
+     *
+     */
+    static final class SinkElementParser implements ElementParser<Object> {
+        private final boolean zeroCopy;
+        long sink;
+
+        SinkElementParser(boolean zeroCopy) {
+            this.zeroCopy = zeroCopy;
+        }
+
+        @Override
+        public boolean isRoutingNullsViaOnStringEnabled() {
+            return false;
+        }
+
+        @Override
+        public boolean isZeroCopyEnabled() {
+            return zeroCopy;
+        }
+
+        @Override
+        public ElementParser<Object> onArrayHeader(int numberOfElements) {
+            sink += numberOfElements;
+            return this;
+        }
+
+        @Override
+        public ElementParser<Object> onBigInteger(BigInteger value) {
+            sink += value.longValue();
+            return this;
+        }
+
+        @Override
+        public ElementParser<Object> onBoolean(boolean value) {
+            sink += value ? 1 : 0;
+            return this;
+        }
+
+        @Override
+        public ElementParser<Object> onByte(byte value) {
+            sink += value;
+            return this;
+        }
+
+        @Override
+        public ElementParser<Object> onDouble(double value) {
+            sink += Double.doubleToRawLongBits(value);
+            return this;
+        }
+
+        @Override
+        public ElementParser<Object> onFloat(float value) {
+            sink += Float.floatToRawIntBits(value);
+            return this;
+        }
+
+        @Override
+        public ElementParser<Object> onInt(int value) {
+            sink += value;
+            return this;
+        }
+
+        @Override
+        public ElementParser<Object> onLong(long value) {
+            sink += value;
+            return this;
+        }
+
+        @Override
+        public ElementParser<Object> onUnsignedInt(long value) {
+            sink += value;
+            return this;
+        }
+
+        @Override
+        public ElementParser<Object> onUnsignedLong(long bits) {
+            sink += bits;
+            return this;
+        }
+
+        @Override
+        public ElementParser<Object> onExtension(byte type, ByteBuffer payload) {
+            sink += type + payload.remaining();
+            return this;
+        }
+
+        @Override
+        public ElementParser<Object> onTimestamp(long seconds, int nanos) {
+            sink += seconds + nanos;
+            return this;
+        }
+
+        @Override
+        public ElementParser<Object> onMapHeader(int numberOfElements) {
+            sink += numberOfElements;
+            return this;
+        }
+
+        @Override
+        public ElementParser<Object> onNull() {
+            sink++;
+            return this;
+        }
+
+        @Override
+        public ElementParser<Object> onRaw(byte[] value) {
+            sink += value.length;
+            return this;
+        }
+
+        @Override
+        public ElementParser<Object> onString(String value) {
+            sink += value.length();
+            return this;
+        }
+
+        @Override
+        public ElementParser<Object> onRawSlice(ByteBuffer value) {
+            sink += value.remaining();
+            return this;
+        }
+
+        @Override
+        public ElementParser<Object> onStringSlice(ByteBuffer value) {
+            sink += value.remaining();
+            return this;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package jamesl.reactive.msgpack;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Decodes a stream of messages that has been split into pathologically small input buffers, so that
+ * almost every element goes through frame length detection and split frame reassembly.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SplitFrameBenchmark {
+    private static final int MESSAGES = 64;
+    private static final int ELEMENTS_PER_MESSAGE = 12;
+
+    @Param({"1", "2", "random"})
+    public String split;
+
+    private List<ByteBuffer> inputs;
+    private StreamDecoder<BenchmarkMessage> streamDecoder;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        inputs = Payloads.split(Payloads.messages(MESSAGES), split);
+        streamDecoder = new StreamDecoder<>(new BenchmarkMessageParserFactory(), this::consume);
+    }
+
+    @Benchmark
+    public void decode(Counters counters) {
+        for (int i = 0; i < inputs.size(); i++) {
+            ByteBuffer input = inputs.get(i);
+            input.rewind();
+            streamDecoder.decode(input);
+            counters.bytes += input.limit();
+        }
+
+        counters.elements += MESSAGES * ELEMENTS_PER_MESSAGE;
+    }
+
+    private void consume(BenchmarkMessage message) {
+        blackhole.consume(message);
+    }
+}
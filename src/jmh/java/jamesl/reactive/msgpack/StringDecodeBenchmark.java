@@ -0,0 +1,62 @@
+package jamesl.reactive.msgpack;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Compares decoding str payloads with {@link StringDecoder} against copying them into a {@code byte[]} and
+ * running {@code new String(..., UTF_8)}, as {@link WireFormatFactory.RawWireFormat} used to.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StringDecodeBenchmark {
+    @Param({"heap", "direct"})
+    public String bufferType;
+
+    @Param({"checksum", "reactive-msgpack-identifier", "\u00fcber-caf\u00e9"})
+    public String value;
+
+    private final StringDecoder stringDecoder = new StringDecoder();
+    private ByteBuffer buffer;
+    private int length;
+
+    @Setup
+    public void setup() {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        length = utf8.length;
+        buffer = "heap".equals(bufferType) ? ByteBuffer.allocate(length) : ByteBuffer.allocateDirect(length);
+        buffer.put(utf8).flip();
+    }
+
+    @Benchmark
+    public String copyAndDecode() {
+        byte[] raw = new byte[length];
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.get(raw);
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String decode() {
+        return stringDecoder.decode(buffer, 0, length);
+    }
+
+    @Benchmark
+    public int charSequenceHashCode() {
+        return stringDecoder.charSequence(buffer, 0, length).hashCode();
+    }
+}
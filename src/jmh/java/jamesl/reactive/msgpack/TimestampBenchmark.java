@@ -0,0 +1,72 @@
+package jamesl.reactive.msgpack;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Measures decoding a stream of timestamps in each of their formats through {@link TimestampDecoder}, which should
+ * not allocate, against passing the same ext values to {@link ElementParser#onExtension(byte, ByteBuffer)} as views.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TimestampBenchmark {
+    private static final int TIMESTAMPS = 1024;
+
+    @Param({"timestamp32", "timestamp64", "timestamp96"})
+    public String format;
+
+    @Param({"true", "false"})
+    public boolean timestampDecoder;
+
+    private ByteBuffer timestamps;
+    private SinkElementParserFactory sinkElementParserFactory;
+    private StreamDecoder<Object> decoder;
+
+    @Setup
+    public void setup() {
+        timestamps = ByteBuffer.allocate(15 * TIMESTAMPS);
+        for (int i = 0; i < TIMESTAMPS; i++) {
+            long seconds = 1500000000L + i;
+            switch (format) {
+                case "timestamp32":
+                    timestamps.put((byte) 0xd6).put(ExtensionDecoder.TIMESTAMP_TYPE).putInt((int) seconds);
+                    break;
+                case "timestamp64":
+                    timestamps.put((byte) 0xd7).put(ExtensionDecoder.TIMESTAMP_TYPE).putLong(((long) i << 34) | seconds);
+                    break;
+                default:
+                    timestamps.put((byte) 0xc7).put((byte) 12).put(ExtensionDecoder.TIMESTAMP_TYPE).putInt(i).putLong(-seconds);
+                    break;
+            }
+        }
+        timestamps.flip();
+
+        UnpackerOptions options = new UnpackerOptions();
+        if (!timestampDecoder) {
+            options.extensionDecoder(ExtensionDecoder.TIMESTAMP_TYPE, null);
+        }
+        sinkElementParserFactory = new SinkElementParserFactory(false);
+        decoder = new StreamDecoder<>(sinkElementParserFactory, output -> {
+        }, options);
+    }
+
+    @Benchmark
+    public long decode() {
+        timestamps.rewind();
+        decoder.decode(timestamps);
+        return sinkElementParserFactory.sink();
+    }
+}
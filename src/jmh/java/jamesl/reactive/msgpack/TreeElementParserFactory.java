@@ -0,0 +1,127 @@
+package jamesl.reactive.msgpack;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * {@link ElementParserFactory} that materialises every top level value into a graph of {@link Map}s, {@link List}s
+ * and boxed scalars, as consumers that need random access to a message typically do.
+ */
+final class TreeElementParserFactory implements ElementParserFactory<Object> {
+    @Override
+    public ElementParser<Object> firstElementParser(Consumer<Object> consumer) {
+        return new TreeElementParser(consumer);
+    }
+
+    /**
+     *
+     */
+    static final class TreeElementParser extends DefaultElementParser<Object> {
+        private final Consumer<Object> consumer;
+        // JL the open containers, each with the number of values still to come and the key of a pending map entry.
+        private final Deque<Object[]> containers = new ArrayDeque<>();
+
+        TreeElementParser(Consumer<Object> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public ElementParser<Object> onArrayHeader(int numberOfElements) {
+            return open(new ArrayList<>(numberOfElements), numberOfElements);
+        }
+
+        @Override
+        public ElementParser<Object> onMapHeader(int numberOfElements) {
+            return open(new HashMap<>(), 2 * numberOfElements);
+        }
+
+        @Override
+        public ElementParser<Object> onBigInteger(BigInteger value) {
+            return add(value);
+        }
+
+        @Override
+        public ElementParser<Object> onBoolean(boolean value) {
+            return add(value);
+        }
+
+        @Override
+        public ElementParser<Object> onByte(byte value) {
+            return add((long) value);
+        }
+
+        @Override
+        public ElementParser<Object> onDouble(double value) {
+            return add(value);
+        }
+
+        @Override
+        public ElementParser<Object> onInt(int value) {
+            return add((long) value);
+        }
+
+        @Override
+        public ElementParser<Object> onLong(long value) {
+            return add(value);
+        }
+
+        @Override
+        public ElementParser<Object> onNull() {
+            return add(null);
+        }
+
+        @Override
+        public ElementParser<Object> onRaw(byte[] value) {
+            return add(value);
+        }
+
+        @Override
+        public ElementParser<Object> onString(String value) {
+            return add(value);
+        }
+
+        private ElementParser<Object> open(Object container, int numberOfValues) {
+            if (numberOfValues == 0) {
+                return add(container);
+            }
+
+            containers.push(new Object[]{container, numberOfValues, null});
+            return this;
+        }
+
+        @SuppressWarnings("unchecked")
+        private ElementParser<Object> add(Object value) {
+            while (!containers.isEmpty()) {
+                Object[] top = containers.peek();
+                int remaining = (Integer) top[1];
+                if (top[0] instanceof List) {
+                    ((List<Object>) top[0]).add(value);
+                } else if (remaining % 2 == 0) {
+                    top[2] = value;
+                } else {
+                    ((Map<Object, Object>) top[0]).put(top[2], value);
+                }
+
+                top[1] = --remaining;
+                if (remaining > 0) {
+                    return this;
+                }
+
+                containers.pop();
+                value = top[0];
+            }
+
+            consumer.accept(value);
+            return this;
+        }
+    }
+}
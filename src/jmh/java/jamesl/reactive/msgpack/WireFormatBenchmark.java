@@ -0,0 +1,55 @@
+package jamesl.reactive.msgpack;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Decodes a buffer holding {@link WireFormatBenchmark#ELEMENTS} copies of a single element for each {@link WireFormat}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class WireFormatBenchmark {
+    private static final int ELEMENTS = 1024;
+
+    @Param({"PositiveFixInt", "FixMap", "FixArray", "FixStr", "NegativeFixInt", "Nil", "False", "True",
+            "Bin8", "Bin16", "Bin32", "Float32", "Float64",
+            "UnsignedInt8", "UnsignedInt16", "UnsignedInt32", "UnsignedInt64",
+            "Int8", "Int16", "Int32", "Int64", "Str8", "Str16", "Str32",
+            "Array16", "Array32", "Map16", "Map32"})
+    public String wireFormat;
+
+    private ByteBuffer input;
+    private SinkElementParserFactory elementParserFactory;
+    private StreamDecoder<Object> streamDecoder;
+
+    @Setup
+    public void setup() {
+        input = Payloads.repeat(Payloads.element(wireFormat), ELEMENTS);
+        elementParserFactory = new SinkElementParserFactory(false);
+        streamDecoder = new StreamDecoder<>(elementParserFactory, output -> {
+        });
+    }
+
+    @Benchmark
+    public long decode(Counters counters) {
+        input.rewind();
+        streamDecoder.decode(input);
+
+        counters.bytes += input.limit();
+        counters.elements += ELEMENTS;
+        return elementParserFactory.sink();
+    }
+}
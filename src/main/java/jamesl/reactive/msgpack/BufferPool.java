@@ -0,0 +1,63 @@
+package jamesl.reactive.msgpack;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Bounded pool of fixed size {@link ByteBuffer}s. Buffers may be acquired and released from different threads,
+ * buffers of the wrong size are simply dropped on release so callers can release every buffer they were given.
+ */
+public class BufferPool {
+    private final int bufferSize;
+    private final boolean direct;
+    private final Queue<ByteBuffer> buffers;
+
+    public BufferPool(int bufferSize, int maxPooledBuffers) {
+        this(bufferSize, maxPooledBuffers, false);
+    }
+
+    public BufferPool(int bufferSize, int maxPooledBuffers, boolean direct) {
+        if (bufferSize <= 0 || maxPooledBuffers <= 0) {
+            throw new IllegalArgumentException("bufferSize and maxPooledBuffers must be positive - bufferSize = " + bufferSize + ", maxPooledBuffers = " + maxPooledBuffers);
+        }
+
+        this.bufferSize = bufferSize;
+        this.direct = direct;
+        this.buffers = new ArrayBlockingQueue<>(maxPooledBuffers);
+    }
+
+    /**
+     * Returns a cleared buffer of {@link BufferPool#bufferSize()} bytes, allocating one if the pool is empty.
+     *
+     * @return
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            return direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+        }
+
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns {@code buffer} to the pool. The caller must not use the buffer afterwards.
+     *
+     * @param buffer
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() == bufferSize && buffer.isDirect() == direct && !buffer.isReadOnly()) {
+            buffer.clear();
+            buffers.offer(buffer);
+        }
+    }
+
+    public int bufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,102 @@
+package jamesl.reactive.msgpack;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * @param <T>
+ * @author jamesl
+ * @since 1.0
+ *
+ * The immutable half of decoding: the {@link ElementParserFactory} and a snapshot of the {@link UnpackerOptions}
+ * that every stream decodes with, on top of the static {@link DispatchTable} and {@link WireFormat} tables. An
+ * engine is built once per {@link Unpacker} and shared by all of its streams, from any number of threads, each
+ * stream only holding its own {@link StreamDecoder}.
+ */
+final class DecoderEngine<T> {
+    final ElementParserFactory<T> elementParserFactory;
+    final int splitFrameThreshold;
+    final boolean tableDispatch;
+    final Supplier<StringCache> stringCache;
+    final UnpackerListener listener;
+    final ExtensionDecoder[] extensionDecoders;
+    final int maxPayloadLength;
+    final int maxContainerSize;
+    final int maxDepth;
+    final int maxBufferedBytes;
+    final boolean resyncOnLimitExceeded;
+    // JL frames no longer than this cannot exceed the payload or buffered bytes limits, nor be oversized.
+    final int frameLengthThreshold;
+    final int parallelBatchSize;
+    final boolean preserveOrder;
+    final int pipelineCapacity;
+    final MessageFilter messageFilter;
+
+    DecoderEngine(ElementParserFactory<T> elementParserFactory, UnpackerOptions options) {
+        this.elementParserFactory = elementParserFactory;
+        this.splitFrameThreshold = options.splitFrameThreshold();
+        this.tableDispatch = options.tableDispatch();
+        this.stringCache = options.stringCache();
+        this.listener = options.listener();
+        this.extensionDecoders = options.extensionDecoders();
+        this.maxPayloadLength = options.maxPayloadLength();
+        this.maxContainerSize = options.maxContainerSize();
+        this.maxDepth = options.maxDepth();
+        this.maxBufferedBytes = options.maxBufferedBytes();
+        this.resyncOnLimitExceeded = options.resyncOnLimitExceeded();
+        this.frameLengthThreshold = Math.min(Math.min(maxPayloadLength, maxBufferedBytes), WireFormat.OVERSIZED_FRAME_LENGTH - 1);
+        this.parallelBatchSize = options.parallelBatchSize();
+        this.preserveOrder = options.preserveOrder();
+        this.pipelineCapacity = options.pipelineCapacity();
+        this.messageFilter = options.messageFilter();
+    }
+
+    private DecoderEngine(DecoderEngine<T> engine, MessageFilter messageFilter) {
+        this.elementParserFactory = engine.elementParserFactory;
+        this.splitFrameThreshold = engine.splitFrameThreshold;
+        this.tableDispatch = engine.tableDispatch;
+        this.stringCache = engine.stringCache;
+        this.listener = engine.listener;
+        this.extensionDecoders = engine.extensionDecoders;
+        this.maxPayloadLength = engine.maxPayloadLength;
+        this.maxContainerSize = engine.maxContainerSize;
+        this.maxDepth = engine.maxDepth;
+        this.maxBufferedBytes = engine.maxBufferedBytes;
+        this.resyncOnLimitExceeded = engine.resyncOnLimitExceeded;
+        this.frameLengthThreshold = engine.frameLengthThreshold;
+        this.parallelBatchSize = engine.parallelBatchSize;
+        this.preserveOrder = engine.preserveOrder;
+        this.pipelineCapacity = engine.pipelineCapacity;
+        this.messageFilter = messageFilter;
+    }
+
+    /**
+     * Returns an engine that is the same as this one apart from only decoding top level values that match
+     * {@code messageFilter} as well as any filter of this engine.
+     *
+     * @param messageFilter
+     * @return
+     */
+    DecoderEngine<T> filter(MessageFilter messageFilter) {
+        return new DecoderEngine<>(this, this.messageFilter == null ? messageFilter : this.messageFilter.and(messageFilter));
+    }
+
+    /**
+     * Returns the state of a new stream that passes its messages to {@code consumer}.
+     *
+     * @param consumer
+     * @return
+     */
+    StreamDecoder<T> newStream(Consumer<T> consumer) {
+        return new StreamDecoder<>(this, consumer);
+    }
+
+    /**
+     * Indicates whether streams track the nesting of containers, see {@link StreamDecoder}.
+     *
+     * @return
+     */
+    boolean isTrackingNesting() {
+        return maxDepth != Integer.MAX_VALUE || resyncOnLimitExceeded;
+    }
+}
@@ -4,6 +4,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -90,4 +91,22 @@ public abstract class DefaultElementParser<T> implements ElementParser<T> {
         logger.trace("onString({})", value);
         return this;
     }
+
+    @Override
+    public ElementParser<T> onRawStart(int length, boolean string) {
+        logger.trace("onRawStart(length={}, string={})", length, string);
+        return this;
+    }
+
+    @Override
+    public ElementParser<T> onRawChunk(ByteBuffer chunk) {
+        logger.trace("onRawChunk({})", chunk);
+        return this;
+    }
+
+    @Override
+    public ElementParser<T> onRawEnd() {
+        logger.trace("onRawEnd()");
+        return this;
+    }
 }
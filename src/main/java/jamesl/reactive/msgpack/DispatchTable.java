@@ -0,0 +1,401 @@
+package jamesl.reactive.msgpack;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Table driven alternative to dispatching through {@link WireFormat}. The frame length (or the width of the
+ * length field) and a dense "kind" code are precomputed for every head byte, so that decoding an element reads
+ * the head byte once and dispatches through a single {@code switch} that the JIT can compile to a jump table,
+ * instead of through two call sites with ~30 receiver classes each.
+ *
+ * The tables are derived from {@link WireFormatFactory} so both paths always agree on the wire format.
+ */
+final class DispatchTable {
+    static final int POSITIVE_FIXINT = 0;
+    static final int FIXMAP = 1;
+    static final int FIXARRAY = 2;
+    static final int FIXSTR = 3;
+    static final int NIL = 4;
+    static final int NEVER_USED = 5;
+    static final int FALSE = 6;
+    static final int TRUE = 7;
+    static final int BIN8 = 8;
+    static final int BIN16 = 9;
+    static final int BIN32 = 10;
+    static final int FLOAT32 = 11;
+    static final int FLOAT64 = 12;
+    static final int UINT8 = 13;
+    static final int UINT16 = 14;
+    static final int UINT32 = 15;
+    static final int UINT64 = 16;
+    static final int INT8 = 17;
+    static final int INT16 = 18;
+    static final int INT32 = 19;
+    static final int INT64 = 20;
+    static final int STR8 = 21;
+    static final int STR16 = 22;
+    static final int STR32 = 23;
+    static final int ARRAY16 = 24;
+    static final int ARRAY32 = 25;
+    static final int MAP16 = 26;
+    static final int MAP32 = 27;
+    static final int NEGATIVE_FIXINT = 28;
+    static final int FIXEXT = 29;
+    static final int EXT8 = 30;
+    static final int EXT16 = 31;
+    static final int EXT32 = 32;
+
+    private static final byte[] kinds = new byte[256];
+    // JL frame length of fixed size frames (including fixstr), 0 for frames with a length field.
+    private static final int[] fixedFrameLengths = new int[256];
+    // JL width of the length field that follows the head byte, 0 for fixed size frames.
+    private static final byte[] lengthFieldWidths = new byte[256];
+    // JL number of bytes before the payload of str, bin and ext frames, the extension type included.
+    private static final byte[] headerLengths = new byte[256];
+
+    static {
+        WireFormatFactory wireFormatFactory = new WireFormatFactory();
+        for (int head = 0; head < 256; head++) {
+            WireFormat wireFormat = wireFormatFactory.newWireFormat((byte) head);
+            kinds[head] = (byte) kind(wireFormat);
+
+            if (wireFormat instanceof WireFormatFactory.FixStr) {
+                fixedFrameLengths[head] = 1 + (head & 0x1f);
+                headerLengths[head] = 1;
+            } else if (wireFormat instanceof WireFormatFactory.FixExt) {
+                fixedFrameLengths[head] = wireFormat.numberOfBytesInFrame(null, 0, 0);
+                headerLengths[head] = 2;
+            } else if (wireFormat instanceof WireFormatFactory.RawWireFormat) {
+                headerLengths[head] = (byte) ((WireFormatFactory.RawWireFormat) wireFormat).numberOfBytesInHeader();
+                lengthFieldWidths[head] = (byte) (headerLengths[head] - 1);
+            } else if (wireFormat instanceof WireFormatFactory.ExtWireFormat) {
+                headerLengths[head] = (byte) ((WireFormatFactory.ExtWireFormat) wireFormat).numberOfBytesInHeader();
+                lengthFieldWidths[head] = (byte) (headerLengths[head] - 2);
+            } else {
+                fixedFrameLengths[head] = wireFormat.numberOfBytesInFrame(null, 0, 0);
+            }
+        }
+    }
+
+    private DispatchTable() {
+    }
+
+    /**
+     * Returns the number of bytes in the frame starting with {@code head} at {@code startOffset}, or
+     * {@link WireFormat#UNKNOWN_FRAME_LENGTH} if the length field is not yet available.
+     *
+     * @param head
+     * @param buffer
+     * @param startOffset
+     * @param limit
+     * @return
+     */
+    static int numberOfBytesInFrame(int head, ByteBuffer buffer, int startOffset, int limit) {
+        int fixedFrameLength = fixedFrameLengths[head];
+        if (fixedFrameLength != 0) {
+            return fixedFrameLength;
+        }
+
+        int lengthFieldWidth = lengthFieldWidths[head];
+        if (startOffset + 1 + lengthFieldWidth > limit) {
+            return WireFormat.UNKNOWN_FRAME_LENGTH;
+        }
+
+        switch (lengthFieldWidth) {
+            case 1:
+                return headerLengths[head] + (buffer.get(startOffset + 1) & 0xff);
+            case 2:
+                return headerLengths[head] + (buffer.getShort(startOffset + 1) & 0xffff);
+            default:
+                return WireFormatFactory.numberOfBytesInFrame(headerLengths[head], buffer.getInt(startOffset + 1));
+        }
+    }
+
+    /**
+     * Returns the number of bytes in the frame starting with {@code head} at {@code startOffset}, for which
+     * {@link DispatchTable#numberOfBytesInFrame(int, ByteBuffer, int, int)} returned
+     * {@link WireFormat#OVERSIZED_FRAME_LENGTH}.
+     *
+     * @param head
+     * @param buffer
+     * @param startOffset
+     * @return
+     */
+    static long numberOfBytesInOversizedFrame(int head, ByteBuffer buffer, int startOffset) {
+        return headerLengths[head] + (buffer.getInt(startOffset + 1) & 0xffffffffL);
+    }
+
+    /**
+     * Returns the kind code for {@code head}, one of the constants of this class.
+     *
+     * @param head
+     * @return
+     */
+    static int kind(int head) {
+        return kinds[head];
+    }
+
+    /**
+     * Returns the number of bytes before the payload of the str, bin or ext frame starting with {@code head},
+     * including the extension type of an ext frame.
+     *
+     * @param head
+     * @return
+     */
+    static int numberOfBytesInHeader(int head) {
+        return headerLengths[head];
+    }
+
+    /**
+     * Indicates whether {@code head} starts an ext frame of any length.
+     *
+     * @param head
+     * @return
+     */
+    static boolean isExtension(int head) {
+        int kind = kinds[head];
+        return kind == FIXEXT || kind == EXT8 || kind == EXT16 || kind == EXT32;
+    }
+
+    /**
+     * Indicates whether {@code head} starts an array or map header.
+     *
+     * @param head
+     * @return
+     */
+    static boolean isContainerHeader(int head) {
+        switch (kinds[head]) {
+            case FIXMAP:
+            case FIXARRAY:
+            case ARRAY16:
+            case ARRAY32:
+            case MAP16:
+            case MAP32:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Indicates whether {@code head} starts a map header.
+     *
+     * @param head
+     * @return
+     */
+    static boolean isMapHeader(int head) {
+        int kind = kinds[head];
+        return kind == FIXMAP || kind == MAP16 || kind == MAP32;
+    }
+
+    /**
+     * Returns the number of values nested directly in the container whose complete header starts with
+     * {@code head} at {@code startOffset}, two per map entry, or zero for any other frame.
+     *
+     * @param head
+     * @param buffer
+     * @param startOffset
+     * @return
+     */
+    static long numberOfNestedValues(int head, ByteBuffer buffer, int startOffset) {
+        switch (kinds[head]) {
+            case FIXMAP:
+                return 2 * (head & 0x0f);
+            case FIXARRAY:
+                return head & 0x0f;
+            case ARRAY16:
+                return buffer.getShort(startOffset + 1) & 0xffff;
+            case ARRAY32:
+                return buffer.getInt(startOffset + 1) & 0xffffffffL;
+            case MAP16:
+                return 2L * (buffer.getShort(startOffset + 1) & 0xffff);
+            case MAP32:
+                return 2L * (buffer.getInt(startOffset + 1) & 0xffffffffL);
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Indicates whether {@code head} starts a fixstr or str8 frame.
+     *
+     * @param head
+     * @return
+     */
+    static boolean isShortString(int head) {
+        int kind = kinds[head];
+        return kind == FIXSTR || kind == STR8;
+    }
+
+    /**
+     * Indicates whether {@code head} starts a str frame of any length.
+     *
+     * @param head
+     * @return
+     */
+    static boolean isString(int head) {
+        int kind = kinds[head];
+        return kind == FIXSTR || kind == STR8 || kind == STR16 || kind == STR32;
+    }
+
+    /**
+     * Parses the complete frame starting with {@code head} at {@code startOffset}.
+     *
+     * @param head
+     * @param buffer
+     * @param startOffset
+     * @param elementParser
+     * @param <T>
+     * @return the parser to use for the next element.
+     */
+    static <T> ElementParser<T> parseElement(int head, ByteBuffer buffer, int startOffset, ElementParser<T> elementParser) {
+        switch (kinds[head]) {
+            case POSITIVE_FIXINT:
+            case NEGATIVE_FIXINT:
+                return elementParser.onByte((byte) head);
+            case FIXMAP:
+                return elementParser.onMapHeader(head & 0x0f);
+            case FIXARRAY:
+                return elementParser.onArrayHeader(head & 0x0f);
+            case FIXSTR:
+                return WireFormatFactory.RawWireFormat.onString(buffer, startOffset + 1, head & 0x1f, elementParser);
+            case NIL:
+                if (elementParser.isRoutingNullsViaOnStringEnabled()) {
+                    return elementParser.onString(null);
+                } else {
+                    return elementParser.onNull();
+                }
+            case FALSE:
+                return elementParser.onBoolean(false);
+            case TRUE:
+                return elementParser.onBoolean(true);
+            case BIN8:
+                return WireFormatFactory.RawWireFormat.onRaw(buffer, startOffset + 2, buffer.get(startOffset + 1) & 0xff, elementParser);
+            case BIN16:
+                return WireFormatFactory.RawWireFormat.onRaw(buffer, startOffset + 3, buffer.getShort(startOffset + 1) & 0xffff, elementParser);
+            case BIN32:
+                return WireFormatFactory.RawWireFormat.onRaw(buffer, startOffset + 5, buffer.getInt(startOffset + 1), elementParser);
+            case FLOAT32:
+                return elementParser.onFloat(buffer.getFloat(startOffset + 1));
+            case FLOAT64:
+                return elementParser.onDouble(buffer.getDouble(startOffset + 1));
+            case UINT8:
+                return elementParser.onInt(buffer.get(startOffset + 1) & 0xff);
+            case UINT16:
+                return elementParser.onInt(buffer.getShort(startOffset + 1) & 0xffff);
+            case UINT32:
+                return elementParser.onUnsignedInt(buffer.getInt(startOffset + 1) & 0xffffffffL);
+            case UINT64:
+                return elementParser.onUnsignedLong(buffer.getLong(startOffset + 1));
+            case INT8:
+                return elementParser.onByte(buffer.get(startOffset + 1));
+            case INT16:
+                return elementParser.onInt(buffer.getShort(startOffset + 1));
+            case INT32:
+                return elementParser.onInt(buffer.getInt(startOffset + 1));
+            case INT64:
+                return elementParser.onLong(buffer.getLong(startOffset + 1));
+            case STR8:
+                return WireFormatFactory.RawWireFormat.onString(buffer, startOffset + 2, buffer.get(startOffset + 1) & 0xff, elementParser);
+            case STR16:
+                return WireFormatFactory.RawWireFormat.onString(buffer, startOffset + 3, buffer.getShort(startOffset + 1) & 0xffff, elementParser);
+            case STR32:
+                return WireFormatFactory.RawWireFormat.onString(buffer, startOffset + 5, buffer.getInt(startOffset + 1), elementParser);
+            case ARRAY16:
+                return elementParser.onArrayHeader(buffer.getShort(startOffset + 1) & 0xffff);
+            case ARRAY32:
+                return elementParser.onArrayHeader(buffer.getInt(startOffset + 1));
+            case MAP16:
+                return elementParser.onMapHeader(buffer.getShort(startOffset + 1) & 0xffff);
+            case MAP32:
+                return elementParser.onMapHeader(buffer.getInt(startOffset + 1));
+            case FIXEXT:
+            case EXT8:
+            case EXT16:
+            case EXT32:
+                return WireFormatFactory.ExtWireFormat.onExtension(buffer, startOffset + headerLengths[head],
+                        numberOfBytesInFrame(head, buffer, startOffset, buffer.limit()) - headerLengths[head], elementParser);
+            default:
+                return elementParser;
+        }
+    }
+
+    /**
+     * Returns the kind code for {@code wireFormat}.
+     *
+     * @param wireFormat
+     * @return
+     */
+    private static int kind(WireFormat wireFormat) {
+        if (wireFormat instanceof WireFormatFactory.PositiveFixInt) {
+            return POSITIVE_FIXINT;
+        } else if (wireFormat instanceof WireFormatFactory.FixMap) {
+            return FIXMAP;
+        } else if (wireFormat instanceof WireFormatFactory.FixArray) {
+            return FIXARRAY;
+        } else if (wireFormat instanceof WireFormatFactory.FixStr) {
+            return FIXSTR;
+        } else if (wireFormat instanceof WireFormatFactory.Nil) {
+            return NIL;
+        } else if (wireFormat instanceof WireFormatFactory.False) {
+            return FALSE;
+        } else if (wireFormat instanceof WireFormatFactory.True) {
+            return TRUE;
+        } else if (wireFormat instanceof WireFormatFactory.Bin8) {
+            return BIN8;
+        } else if (wireFormat instanceof WireFormatFactory.Bin16) {
+            return BIN16;
+        } else if (wireFormat instanceof WireFormatFactory.Bin32) {
+            return BIN32;
+        } else if (wireFormat instanceof WireFormatFactory.Float32) {
+            return FLOAT32;
+        } else if (wireFormat instanceof WireFormatFactory.Float64) {
+            return FLOAT64;
+        } else if (wireFormat instanceof WireFormatFactory.UnsignedInt8) {
+            return UINT8;
+        } else if (wireFormat instanceof WireFormatFactory.UnsignedInt16) {
+            return UINT16;
+        } else if (wireFormat instanceof WireFormatFactory.UnsignedInt32) {
+            return UINT32;
+        } else if (wireFormat instanceof WireFormatFactory.UnsignedInt64) {
+            return UINT64;
+        } else if (wireFormat instanceof WireFormatFactory.Int8) {
+            return INT8;
+        } else if (wireFormat instanceof WireFormatFactory.Int16) {
+            return INT16;
+        } else if (wireFormat instanceof WireFormatFactory.Int32) {
+            return INT32;
+        } else if (wireFormat instanceof WireFormatFactory.Int64) {
+            return INT64;
+        } else if (wireFormat instanceof WireFormatFactory.Str8) {
+            return STR8;
+        } else if (wireFormat instanceof WireFormatFactory.Str16) {
+            return STR16;
+        } else if (wireFormat instanceof WireFormatFactory.Str32) {
+            return STR32;
+        } else if (wireFormat instanceof WireFormatFactory.Array16) {
+            return ARRAY16;
+        } else if (wireFormat instanceof WireFormatFactory.Array32) {
+            return ARRAY32;
+        } else if (wireFormat instanceof WireFormatFactory.Map16) {
+            return MAP16;
+        } else if (wireFormat instanceof WireFormatFactory.Map32) {
+            return MAP32;
+        } else if (wireFormat instanceof WireFormatFactory.NegativeFixInt) {
+            return NEGATIVE_FIXINT;
+        } else if (wireFormat instanceof WireFormatFactory.FixExt) {
+            return FIXEXT;
+        } else if (wireFormat instanceof WireFormatFactory.Ext8) {
+            return EXT8;
+        } else if (wireFormat instanceof WireFormatFactory.Ext16) {
+            return EXT16;
+        } else if (wireFormat instanceof WireFormatFactory.Ext32) {
+            return EXT32;
+        } else {
+            return NEVER_USED;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package jamesl.reactive.msgpack;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Writes msgpack elements to a {@link ByteBuffer} using the smallest wire format that can represent each value.
+ * The remaining capacity is checked before each element is written. If the element does not fit, the message
+ * written so far is moved to a new buffer - a pooled buffer if the message fits in one, otherwise a larger buffer
+ * that is not pooled - and the buffer holding the preceding messages is handed back as full.
+ */
+public final class ElementOutput {
+    private static final BigInteger MAX_UNSIGNED_INT64 = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+    private final BufferPool bufferPool;
+    private ByteBuffer buffer;
+    private ByteBuffer fullBuffer;
+    private int startOfMessage;
+
+    ElementOutput(BufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * Starts a new message at the position of {@code buffer}.
+     *
+     * @param buffer
+     * @return
+     */
+    ElementOutput reset(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.fullBuffer = null;
+        this.startOfMessage = buffer.position();
+        return this;
+    }
+
+    /**
+     * Returns the buffer the current message is being written to, which is not the buffer passed to
+     * {@link ElementOutput#reset(ByteBuffer)} if the message had to be moved.
+     *
+     * @return
+     */
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the buffer holding the messages that preceded the current message if it had to be moved, or
+     * {@code null}. The full buffer's position is at the end of the last complete message.
+     *
+     * @return
+     */
+    ByteBuffer fullBuffer() {
+        return fullBuffer;
+    }
+
+    public ElementOutput packArrayHeader(int numberOfElements) {
+        if (numberOfElements < 0) {
+            throw new IllegalArgumentException("numberOfElements must not be negative - numberOfElements = " + numberOfElements);
+        }
+
+        if (numberOfElements < 16) {
+            ensure(1).put((byte) (0x90 | numberOfElements));
+        } else if (numberOfElements < 0x10000) {
+            ensure(3).put((byte) 0xdc).putShort((short) numberOfElements);
+        } else {
+            ensure(5).put((byte) 0xdd).putInt(numberOfElements);
+        }
+        return this;
+    }
+
+    public ElementOutput packBigInteger(BigInteger value) {
+        if (value.bitLength() < 64) {
+            return packLong(value.longValue());
+        } else if (value.signum() > 0 && value.compareTo(MAX_UNSIGNED_INT64) <= 0) {
+            ensure(9).put((byte) 0xcf).putLong(value.longValue());
+            return this;
+        } else {
+            throw new IllegalArgumentException("value cannot be represented as a msgpack integer - value = " + value);
+        }
+    }
+
+    public ElementOutput packBoolean(boolean value) {
+        ensure(1).put(value ? (byte) 0xc3 : (byte) 0xc2);
+        return this;
+    }
+
+    public ElementOutput packDouble(double value) {
+        ensure(9).put((byte) 0xcb).putDouble(value);
+        return this;
+    }
+
+    public ElementOutput packFloat(float value) {
+        ensure(5).put((byte) 0xca).putFloat(value);
+        return this;
+    }
+
+    public ElementOutput packInt(int value) {
+        return packLong(value);
+    }
+
+    public ElementOutput packLong(long value) {
+        if (value >= 0) {
+            if (value < 0x80) {
+                ensure(1).put((byte) value);
+            } else if (value < 0x100) {
+                ensure(2).put((byte) 0xcc).put((byte) value);
+            } else if (value < 0x10000) {
+                ensure(3).put((byte) 0xcd).putShort((short) value);
+            } else if (value < 0x100000000L) {
+                ensure(5).put((byte) 0xce).putInt((int) value);
+            } else {
+                ensure(9).put((byte) 0xcf).putLong(value);
+            }
+        } else {
+            if (value >= -32) {
+                ensure(1).put((byte) value);
+            } else if (value >= Byte.MIN_VALUE) {
+                ensure(2).put((byte) 0xd0).put((byte) value);
+            } else if (value >= Short.MIN_VALUE) {
+                ensure(3).put((byte) 0xd1).putShort((short) value);
+            } else if (value >= Integer.MIN_VALUE) {
+                ensure(5).put((byte) 0xd2).putInt((int) value);
+            } else {
+                ensure(9).put((byte) 0xd3).putLong(value);
+            }
+        }
+        return this;
+    }
+
+    public ElementOutput packMapHeader(int numberOfElements) {
+        if (numberOfElements < 0) {
+            throw new IllegalArgumentException("numberOfElements must not be negative - numberOfElements = " + numberOfElements);
+        }
+
+        if (numberOfElements < 16) {
+            ensure(1).put((byte) (0x80 | numberOfElements));
+        } else if (numberOfElements < 0x10000) {
+            ensure(3).put((byte) 0xde).putShort((short) numberOfElements);
+        } else {
+            ensure(5).put((byte) 0xdf).putInt(numberOfElements);
+        }
+        return this;
+    }
+
+    public ElementOutput packNull() {
+        ensure(1).put((byte) 0xc0);
+        return this;
+    }
+
+    public ElementOutput packRaw(byte[] value) {
+        packRawHeader(value.length);
+        buffer.put(value);
+        return this;
+    }
+
+    /**
+     * Packs the remaining bytes of {@code value} as a bin element without changing its position.
+     *
+     * @param value
+     * @return
+     */
+    public ElementOutput packRaw(ByteBuffer value) {
+        packRawHeader(value.remaining());
+        buffer.put(value.duplicate());
+        return this;
+    }
+
+    /**
+     * Packs {@code value} as a str element, encoding it as UTF-8 directly into the buffer. {@code null} is
+     * packed as nil.
+     *
+     * @param value
+     * @return
+     */
+    public ElementOutput packString(CharSequence value) {
+        if (value == null) {
+            return packNull();
+        }
+
+        int length = utf8Length(value);
+        if (length < 32) {
+            ensure(1 + length).put((byte) (0xa0 | length));
+        } else if (length < 0x100) {
+            ensure(2 + length).put((byte) 0xd9).put((byte) length);
+        } else if (length < 0x10000) {
+            ensure(3 + length).put((byte) 0xda).putShort((short) length);
+        } else {
+            ensure(5 + length).put((byte) 0xdb).putInt(length);
+        }
+
+        ByteBuffer buffer = this.buffer;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xc0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3f)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xf0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3f)));
+            } else if (Character.isSurrogate(c)) {
+                // JL unpaired surrogates are replaced, as String#getBytes does.
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xe0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (c & 0x3f)));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Packs a bin header for a payload of {@code length} bytes, making room for the payload as well.
+     *
+     * @param length
+     */
+    private void packRawHeader(int length) {
+        if (length < 0x100) {
+            ensure(2 + length).put((byte) 0xc4).put((byte) length);
+        } else if (length < 0x10000) {
+            ensure(3 + length).put((byte) 0xc5).putShort((short) length);
+        } else {
+            ensure(5 + length).put((byte) 0xc6).putInt(length);
+        }
+    }
+
+    /**
+     * Returns the current buffer once it has at least {@code numberOfBytes} remaining.
+     *
+     * @param numberOfBytes
+     * @return
+     */
+    private ByteBuffer ensure(int numberOfBytes) {
+        if (buffer.remaining() < numberOfBytes) {
+            moveMessage(numberOfBytes);
+        }
+        return buffer;
+    }
+
+    /**
+     * Moves the message written so far to a buffer with at least {@code numberOfBytes} remaining after it. The
+     * messages before it are left in the current buffer, which becomes the full buffer, or if there are none the
+     * current buffer is returned to the pool.
+     *
+     * @param numberOfBytes
+     */
+    private void moveMessage(int numberOfBytes) {
+        int lengthOfMessage = buffer.position() - startOfMessage;
+        int required = lengthOfMessage + numberOfBytes;
+
+        ByteBuffer next;
+        if (startOfMessage > 0 && required <= bufferPool.bufferSize()) {
+            next = bufferPool.acquire();
+        } else {
+            next = ByteBuffer.allocate(Math.max(required, buffer.capacity() * 2));
+        }
+
+        ByteBuffer message = buffer.duplicate();
+        message.limit(buffer.position()).position(startOfMessage);
+        next.put(message);
+
+        if (startOfMessage > 0) {
+            buffer.position(startOfMessage);
+            fullBuffer = buffer;
+        } else {
+            bufferPool.release(buffer);
+        }
+
+        buffer = next;
+        startOfMessage = 0;
+    }
+
+    /**
+     * Returns the number of bytes needed to encode {@code value} as UTF-8.
+     *
+     * @param value
+     * @return
+     */
+    private static int utf8Length(CharSequence value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
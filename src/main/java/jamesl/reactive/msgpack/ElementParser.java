@@ -1,6 +1,8 @@
 package jamesl.reactive.msgpack;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 /**
  * @param <T>
@@ -17,6 +19,52 @@ public interface ElementParser<T> {
      */
     boolean isRoutingNullsViaOnStringEnabled();
 
+    /**
+     * Indicates whether {@link Unpacker} should deliver str and bin payloads as read-only views over the
+     * input via {@link ElementParser#onStringSlice(ByteBuffer)} and {@link ElementParser#onRawSlice(ByteBuffer)}
+     * instead of copying them into a {@link String} or {@code byte[]}. Disabled by default.
+     *
+     * @return
+     */
+    default boolean isZeroCopyEnabled() {
+        return false;
+    }
+
+    /**
+     * Indicates whether {@link Unpacker} should stream bin and str payloads that span input buffers to
+     * {@link ElementParser#onRawStart(int, boolean)}, {@link ElementParser#onRawChunk(ByteBuffer)} and
+     * {@link ElementParser#onRawEnd()} as the bytes arrive, rather than buffering the whole frame. Payloads
+     * that are contained in a single input buffer are still delivered whole. Disabled by default.
+     *
+     * @return
+     */
+    default boolean isRawStreamingEnabled() {
+        return false;
+    }
+
+    /**
+     * Indicates whether {@link Unpacker} should deliver str payloads to {@link ElementParser#onCharSequence(CharSequence)}
+     * instead of {@link ElementParser#onString(String)}, for parsers that only compare or hash strings. Ignored when
+     * {@link ElementParser#isZeroCopyEnabled()} is {@code true}. Disabled by default.
+     *
+     * @return
+     */
+    default boolean isCharSequenceEnabled() {
+        return false;
+    }
+
+    /**
+     * Returns the names of the map keys this parser expects next, or {@code null} (the default) for none. str payloads
+     * that match a name in the table are delivered to {@link ElementParser#onKey(int)}, without being decoded, and
+     * anything else is delivered as usual. Parsers should only return a table while they are expecting a key, so
+     * that a value which happens to equal a key name is not mistaken for one.
+     *
+     * @return
+     */
+    default SymbolTable symbolTable() {
+        return null;
+    }
+
     ElementParser<T> onArrayHeader(int numberOfElements);
     ElementParser<T> onBigInteger(BigInteger value);
     ElementParser<T> onBoolean(boolean value);
@@ -28,4 +76,205 @@ public interface ElementParser<T> {
     ElementParser<T> onNull();
     ElementParser<T> onRaw(byte[] value);
     ElementParser<T> onString(String value);
+
+    /**
+     * Invoked with a float32 value, without widening it. By default the value is passed to
+     * {@link ElementParser#onDouble(double)}.
+     *
+     * @param value
+     * @return
+     */
+    default ElementParser<T> onFloat(float value) {
+        return onDouble(value);
+    }
+
+    /**
+     * Invoked with a uint32 value, which is always in the range {@code [0, 2^32)}. By default the value is passed
+     * to {@link ElementParser#onLong(long)}.
+     *
+     * @param value
+     * @return
+     */
+    default ElementParser<T> onUnsignedInt(long value) {
+        return onLong(value);
+    }
+
+    /**
+     * Invoked with the bits of a uint64 value, which is negative when the value is {@code 2^63} or more, see
+     * {@link Long#toUnsignedString(long)} and {@link Long#compareUnsigned(long, long)}. By default the value is
+     * converted to a {@link BigInteger} and passed to {@link ElementParser#onBigInteger(BigInteger)}, so override
+     * this method to decode uint64 values without allocating.
+     *
+     * @param bits
+     * @return
+     */
+    default ElementParser<T> onUnsignedLong(long bits) {
+        if (bits < 0) {
+            return onBigInteger(BigInteger.valueOf(bits & Long.MAX_VALUE).setBit(63));
+        } else {
+            return onBigInteger(BigInteger.valueOf(bits));
+        }
+    }
+
+    /**
+     * Invoked with an ext value whose extension type has no {@link ExtensionDecoder} registered in
+     * {@link UnpackerOptions#extensionDecoder(byte, ExtensionDecoder)}. The payload is the remaining bytes of a
+     * read-only view over the input that is only valid for the duration of the call. By default the value is ignored.
+     *
+     * @param type
+     * @param payload
+     * @return
+     */
+    default ElementParser<T> onExtension(byte type, ByteBuffer payload) {
+        return this;
+    }
+
+    /**
+     * Invoked with a timestamp (ext type -1) in any of its 32, 64 or 96 bit formats, see
+     * {@link ExtensionDecoder#timestamps()}. Parsers that do not override this method are passed the original
+     * payload through {@link ElementParser#onExtension(byte, ByteBuffer)} instead, so the default is only reached
+     * when it is called directly.
+     *
+     * @param seconds the number of seconds since 1970-01-01T00:00:00Z, negative before it.
+     * @param nanos the nanoseconds within the second, always in the range {@code [0, 999999999]}.
+     * @return
+     */
+    default ElementParser<T> onTimestamp(long seconds, int nanos) {
+        // JL re-encode in the 96 bit format so that parsers which only handle onExtension still see the value.
+        ByteBuffer payload = ByteBuffer.allocate(12).putInt(nanos).putLong(seconds);
+        payload.flip();
+        return onExtension(ExtensionDecoder.TIMESTAMP_TYPE, payload.asReadOnlyBuffer());
+    }
+
+    /**
+     * Invoked with a read-only view over a bin payload when {@link ElementParser#isZeroCopyEnabled()} is
+     * {@code true}. The view's position is zero and its limit is the payload length; it is only valid for the
+     * duration of the call so implementations must copy anything they want to keep. By default the payload is
+     * bulk copied and passed to {@link ElementParser#onRaw(byte[])}.
+     *
+     * @param value
+     * @return
+     */
+    default ElementParser<T> onRawSlice(ByteBuffer value) {
+        byte[] raw = new byte[value.remaining()];
+        value.duplicate().get(raw);
+        return onRaw(raw);
+    }
+
+    /**
+     * Invoked with a read-only view over the UTF-8 bytes of a str payload when {@link ElementParser#isZeroCopyEnabled()}
+     * is {@code true}. The same lifetime rules as {@link ElementParser#onRawSlice(ByteBuffer)} apply. By default the
+     * payload is decoded and passed to {@link ElementParser#onString(String)}.
+     *
+     * @param value
+     * @return
+     */
+    default ElementParser<T> onStringSlice(ByteBuffer value) {
+        byte[] raw = new byte[value.remaining()];
+        value.duplicate().get(raw);
+        return onString(new String(raw, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Invoked with the content of a str payload when {@link ElementParser#isCharSequenceEnabled()} is {@code true}.
+     * ASCII payloads are passed as a view over the input whose {@code hashCode()} agrees with {@link String#hashCode()}
+     * and whose {@code equals()} compares the content of any {@link CharSequence}. The view is only valid for the
+     * duration of the call so implementations must call {@code toString()} on anything they want to keep. By default
+     * the payload is passed to {@link ElementParser#onString(String)}.
+     *
+     * @param value
+     * @return
+     */
+    default ElementParser<T> onCharSequence(CharSequence value) {
+        return onString(value.toString());
+    }
+
+    /**
+     * Invoked with the id of a str payload that matched a name in {@link ElementParser#symbolTable()}. By default
+     * the name is passed to {@link ElementParser#onString(String)}, which receives the same {@link String} instance from
+     * the table every time.
+     *
+     * @param symbolId
+     * @return
+     */
+    default ElementParser<T> onKey(int symbolId) {
+        return onString(symbolTable().name(symbolId));
+    }
+
+    /**
+     * Invoked when a streamed bin or str payload starts, see {@link ElementParser#isRawStreamingEnabled()}.
+     *
+     * @param length the total number of bytes in the payload.
+     * @param string {@code true} for a str payload, {@code false} for a bin payload.
+     * @return the parser that receives the chunks of the payload.
+     */
+    default ElementParser<T> onRawStart(int length, boolean string) {
+        return this;
+    }
+
+    /**
+     * Invoked with a read-only view over the next chunk of a streamed payload. The view is only valid for
+     * the duration of the call.
+     *
+     * @param chunk
+     * @return
+     */
+    default ElementParser<T> onRawChunk(ByteBuffer chunk) {
+        return this;
+    }
+
+    /**
+     * Invoked once every chunk of a streamed payload has been delivered.
+     *
+     * @return the parser for the next element.
+     */
+    default ElementParser<T> onRawEnd() {
+        return this;
+    }
+
+    /**
+     * Resets the chain of parsers that this parser belongs to, discarding anything parsed since the last message
+     * was produced, and returns the first state of the chain. Chains that reuse their states and outputs from one message
+     * to the next implement this so that they can be restarted without allocating, e.g. when a stream resyncs after
+     * {@link UnpackerOptions#resyncOnLimitExceeded(boolean)}. By default chains cannot be reset and {@code null} is
+     * returned, in which case a new chain is created by {@link ElementParserFactory#firstElementParser(java.util.function.Consumer)}.
+     *
+     * @return
+     */
+    default ElementParser<T> reset() {
+        return null;
+    }
+
+    /**
+     * Invoked on the {@code next} parser of {@link ElementParser#skip(int, ElementParser)} as soon as the last skipped
+     * value has been passed over, e.g. to account for the skipped value of a map entry without waiting for the next
+     * element to arrive. By default nothing happens.
+     *
+     * @return the parser for the next element.
+     */
+    default ElementParser<T> onSkipped() {
+        return this;
+    }
+
+    /**
+     * Returns a parser that skips the next {@code numberOfValues} values, including everything nested in them,
+     * and then continues with {@code next}. For example return {@code ElementParser.skip(1, this)} from
+     * {@link ElementParser#onString(String)} to skip the value of an uninteresting map key, or
+     * {@code ElementParser.skip(numberOfElements, next)} from {@link ElementParser#onArrayHeader(int)} to skip
+     * the contents of an array. Skipped frames are passed over by their length without being decoded.
+     * {@link ElementParser#onSkipped()} is invoked on {@code next} once the values have been skipped, straight
+     * away if {@code numberOfValues} is zero.
+     *
+     * @param numberOfValues
+     * @param next
+     * @param <T>
+     * @return
+     */
+    static <T> ElementParser<T> skip(int numberOfValues, ElementParser<T> next) {
+        if (numberOfValues < 0) {
+            throw new IllegalArgumentException("numberOfValues must not be negative - numberOfValues = " + numberOfValues);
+        }
+
+        return numberOfValues == 0 ? next.onSkipped() : new SkippingElementParser<>(numberOfValues, next);
+    }
 }
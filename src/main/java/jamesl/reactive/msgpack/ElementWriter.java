@@ -0,0 +1,19 @@
+package jamesl.reactive.msgpack;
+
+/**
+ * @param <T>
+ * @author jamesl
+ * @since 1.0
+ *
+ * Counterpart to {@link ElementParser} used by {@link Packer} - writes the elements of a single message.
+ */
+public interface ElementWriter<T> {
+    /**
+     * Writes {@code value} as a sequence of elements to {@code output}. Implementations must not hold on to
+     * {@code output} after returning.
+     *
+     * @param value
+     * @param output
+     */
+    void write(T value, ElementOutput output);
+}
@@ -0,0 +1,42 @@
+package jamesl.reactive.msgpack;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Decodes the payload of ext values of a particular extension type, registered with
+ * {@link UnpackerOptions#extensionDecoder(byte, ExtensionDecoder)}. The payload is addressed by absolute offsets
+ * into the input, so that decoders can read it without allocating a view.
+ */
+public interface ExtensionDecoder {
+    /**
+     * The extension type reserved for timestamps.
+     */
+    byte TIMESTAMP_TYPE = -1;
+
+    /**
+     * Decodes the {@code length} byte payload starting at {@code startOffset} in {@code buffer} and passes it to
+     * {@code elementParser}. Implementations must not change the position or limit of {@code buffer}.
+     *
+     * @param type
+     * @param buffer
+     * @param startOffset
+     * @param length
+     * @param elementParser
+     * @param <T>
+     * @return the parser to use for the next element.
+     */
+    <T> ElementParser<T> decode(byte type, ByteBuffer buffer, int startOffset, int length, ElementParser<T> elementParser);
+
+    /**
+     * Returns the decoder for {@link ExtensionDecoder#TIMESTAMP_TYPE}, which passes timestamps to
+     * {@link ElementParser#onTimestamp(long, int)} as primitives. Registered by default.
+     *
+     * @return
+     */
+    static ExtensionDecoder timestamps() {
+        return TimestampDecoder.INSTANCE;
+    }
+}
@@ -0,0 +1,104 @@
+package jamesl.reactive.msgpack;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Structural scanner that finds the boundaries of values, nested containers included, using only frame
+ * lengths and container header counts. Nothing is decoded and no {@link ElementParser} is involved.
+ */
+final class FrameScanner {
+    static final int INCOMPLETE = -1;
+
+    private FrameScanner() {
+    }
+
+    /**
+     * Returns the offset just past the value, including everything nested in it, that starts at {@code startOffset}
+     * in {@code buffer}, or {@link FrameScanner#INCOMPLETE} if the value does not end before {@code limit}.
+     *
+     * @param buffer
+     * @param startOffset
+     * @param limit
+     * @return
+     */
+    static int endOfValue(ByteBuffer buffer, int startOffset, int limit) {
+        int offset = startOffset;
+        long valuesRemaining = 1;
+
+        while (valuesRemaining > 0) {
+            if (offset >= limit) {
+                return INCOMPLETE;
+            }
+
+            int head = buffer.get(offset) & 0xff;
+            int numberOfBytesInFrame = DispatchTable.numberOfBytesInFrame(head, buffer, offset, limit);
+            if (numberOfBytesInFrame == WireFormat.UNKNOWN_FRAME_LENGTH || numberOfBytesInFrame > limit - offset) {
+                return INCOMPLETE;
+            }
+
+            valuesRemaining += DispatchTable.numberOfNestedValues(head, buffer, offset) - 1;
+            offset += numberOfBytesInFrame;
+        }
+
+        return offset;
+    }
+
+    /**
+     * Splits the remaining bytes of {@code input} into views that each hold whole messages of {@code valuesPerMessage}
+     * top level values, and at least {@code batchSize} bytes except for the last. Any trailing bytes that do not
+     * form a complete message are left in the last view.
+     *
+     * @param input
+     * @param valuesPerMessage
+     * @param batchSize
+     * @return
+     */
+    static List<ByteBuffer> batches(ByteBuffer input, int valuesPerMessage, int batchSize) {
+        List<ByteBuffer> batches = new ArrayList<>();
+        int limit = input.limit();
+        int startOfBatch = input.position();
+        int offset = startOfBatch;
+
+        scan:
+        while (offset < limit) {
+            for (int i = 0; i < valuesPerMessage; i++) {
+                int endOfValue = endOfValue(input, offset, limit);
+                if (endOfValue == INCOMPLETE) {
+                    break scan;
+                }
+                offset = endOfValue;
+            }
+
+            if (offset - startOfBatch >= batchSize) {
+                batches.add(slice(input, startOfBatch, offset));
+                startOfBatch = offset;
+            }
+        }
+
+        if (startOfBatch < limit) {
+            batches.add(slice(input, startOfBatch, limit));
+        }
+        return batches;
+    }
+
+    /**
+     * Returns a view over the bytes from {@code startOffset} to {@code endOffset} that shares the backing
+     * array of {@code buffer}, if it has one, so decoding it can read the array directly.
+     *
+     * @param buffer
+     * @param startOffset
+     * @param endOffset
+     * @return
+     */
+    private static ByteBuffer slice(ByteBuffer buffer, int startOffset, int endOffset) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(endOffset);
+        view.position(startOffset);
+        return view.slice();
+    }
+}
@@ -0,0 +1,40 @@
+package jamesl.reactive.msgpack;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @param <I>
+ * @author jamesl
+ * @since 1.0
+ *
+ * Adapts the buffers of another library so {@link Unpacker#unpack(org.reactivestreams.Publisher, InputAdapter)}
+ * can decode them in place. An input is exposed as one or more {@link ByteBuffer} views, decoded in order, and
+ * is released once every view has been decoded or the stream is cancelled or fails.
+ */
+public interface InputAdapter<I> {
+    /**
+     * Returns views over the bytes of {@code input} that are to be decoded, in order. The views must remain
+     * valid until {@link InputAdapter#release(Object)} is called.
+     *
+     * @param input
+     * @return
+     */
+    ByteBuffer[] nioBuffers(I input);
+
+    /**
+     * Invoked once {@code input} is no longer needed, including when it was not fully decoded.
+     *
+     * @param input
+     */
+    default void release(I input) {
+    }
+
+    /**
+     * Returns the adapter for plain {@link ByteBuffer}s, which are decoded as they are and not released.
+     *
+     * @return
+     */
+    static InputAdapter<ByteBuffer> byteBuffers() {
+        return input -> new ByteBuffer[]{input};
+    }
+}
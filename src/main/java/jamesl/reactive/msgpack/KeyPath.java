@@ -0,0 +1,245 @@
+package jamesl.reactive.msgpack;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Path of str keys through nested maps, e.g. {@code KeyPath.of("order", "side")} for the value of the "side" key
+ * of the map that is the value of the "order" key of a top level map, that creates {@link MessageFilter}s over the
+ * value at the end of the path.
+ *
+ * The path is followed over the raw bytes of the top level value: each map is searched by comparing the UTF-8
+ * bytes of its str keys in place, and the values of other keys are passed over by their frame lengths. Nothing is
+ * decoded or allocated. A value that is missing, or not of the type a filter compares, does not match.
+ *
+ * Instances are immutable and thread safe.
+ */
+public final class KeyPath {
+    static final int NOT_FOUND = -1;
+    private final String[] names;
+    private final byte[][] keys;
+
+    private KeyPath(String[] names) {
+        if (names.length == 0) {
+            throw new IllegalArgumentException("key paths must hold at least one key");
+        }
+
+        this.names = names;
+        this.keys = new byte[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            if (names[i] == null) {
+                throw new IllegalArgumentException("keys must not be null - index = " + i);
+            }
+            keys[i] = names[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Returns the path through {@code keys}, outermost first.
+     *
+     * @param keys
+     * @return
+     */
+    public static KeyPath of(String... keys) {
+        return new KeyPath(keys.clone());
+    }
+
+    /**
+     * Returns a filter that matches values whose value at this path is a str equal to {@code value}.
+     *
+     * @param value
+     * @return
+     */
+    public MessageFilter equalTo(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return (buffer, startOffset, endOffset) -> {
+            int offset = find(buffer, startOffset, endOffset);
+            return offset != NOT_FOUND && compareString(buffer, offset, bytes, false);
+        };
+    }
+
+    /**
+     * Returns a filter that matches values whose value at this path is a str starting with {@code prefix}.
+     *
+     * @param prefix
+     * @return
+     */
+    public MessageFilter startsWith(String prefix) {
+        byte[] bytes = prefix.getBytes(StandardCharsets.UTF_8);
+        return (buffer, startOffset, endOffset) -> {
+            int offset = find(buffer, startOffset, endOffset);
+            return offset != NOT_FOUND && compareString(buffer, offset, bytes, true);
+        };
+    }
+
+    /**
+     * Returns a filter that matches values whose value at this path is an int from {@code min} up to and including
+     * {@code max}.
+     *
+     * @param min
+     * @param max
+     * @return
+     */
+    public MessageFilter between(long min, long max) {
+        if (min > max) {
+            throw new IllegalArgumentException("min must not be greater than max - min = " + min + ", max = " + max);
+        }
+
+        return (buffer, startOffset, endOffset) -> {
+            int offset = find(buffer, startOffset, endOffset);
+            return offset != NOT_FOUND && isIntBetween(buffer, offset, min, max);
+        };
+    }
+
+    /**
+     * Returns a filter that matches values that have a value of any type at this path.
+     *
+     * @return
+     */
+    public MessageFilter exists() {
+        return (buffer, startOffset, endOffset) -> find(buffer, startOffset, endOffset) != NOT_FOUND;
+    }
+
+    /**
+     * Returns the offset of the frame of the value at this path in the complete top level value held in
+     * {@code buffer} from {@code startOffset} up to {@code endOffset}, or {@link KeyPath#NOT_FOUND}.
+     *
+     * @param buffer
+     * @param startOffset
+     * @param endOffset
+     * @return
+     */
+    int find(ByteBuffer buffer, int startOffset, int endOffset) {
+        int offset = startOffset;
+        for (byte[] key : keys) {
+            int head = buffer.get(offset) & 0xff;
+            if (!DispatchTable.isMapHeader(head)) {
+                return NOT_FOUND;
+            }
+
+            long numberOfEntries = DispatchTable.numberOfNestedValues(head, buffer, offset) / 2;
+            offset += DispatchTable.numberOfBytesInFrame(head, buffer, offset, endOffset);
+            offset = findValue(buffer, offset, endOffset, numberOfEntries, key);
+            if (offset == NOT_FOUND) {
+                return NOT_FOUND;
+            }
+        }
+        return offset;
+    }
+
+    @Override
+    public String toString() {
+        return "KeyPath" + Arrays.toString(names);
+    }
+
+    /**
+     * Returns the offset of the value of the entry keyed by {@code key} among the {@code numberOfEntries} entries of
+     * a map that start at {@code startOffset}, or {@link KeyPath#NOT_FOUND}.
+     *
+     * @param buffer
+     * @param startOffset
+     * @param endOffset
+     * @param numberOfEntries
+     * @param key
+     * @return
+     */
+    private static int findValue(ByteBuffer buffer, int startOffset, int endOffset, long numberOfEntries, byte[] key) {
+        int offset = startOffset;
+        for (long i = 0; i < numberOfEntries; i++) {
+            boolean found = compareString(buffer, offset, key, false);
+            offset = FrameScanner.endOfValue(buffer, offset, endOffset);
+            if (found) {
+                return offset;
+            }
+            offset = FrameScanner.endOfValue(buffer, offset, endOffset);
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Compares the payload of the frame at {@code offset}, if it is a str, with {@code bytes}.
+     *
+     * @param buffer
+     * @param offset
+     * @param bytes
+     * @param prefix {@code true} if the payload need only start with {@code bytes}.
+     * @return
+     */
+    private static boolean compareString(ByteBuffer buffer, int offset, byte[] bytes, boolean prefix) {
+        int head = buffer.get(offset) & 0xff;
+        if (!DispatchTable.isString(head)) {
+            return false;
+        }
+
+        int numberOfBytesInHeader = DispatchTable.numberOfBytesInHeader(head);
+        int length = DispatchTable.numberOfBytesInFrame(head, buffer, offset, buffer.limit()) - numberOfBytesInHeader;
+        if (prefix ? length < bytes.length : length != bytes.length) {
+            return false;
+        }
+
+        int payloadOffset = offset + numberOfBytesInHeader;
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(payloadOffset + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Indicates whether the frame at {@code offset} is an int from {@code min} up to and including {@code max}.
+     *
+     * @param buffer
+     * @param offset
+     * @param min
+     * @param max
+     * @return
+     */
+    private static boolean isIntBetween(ByteBuffer buffer, int offset, long min, long max) {
+        int head = buffer.get(offset) & 0xff;
+        long value;
+        switch (DispatchTable.kind(head)) {
+            case DispatchTable.POSITIVE_FIXINT:
+                value = head;
+                break;
+            case DispatchTable.NEGATIVE_FIXINT:
+                value = (byte) head;
+                break;
+            case DispatchTable.UINT8:
+                value = buffer.get(offset + 1) & 0xff;
+                break;
+            case DispatchTable.UINT16:
+                value = buffer.getShort(offset + 1) & 0xffff;
+                break;
+            case DispatchTable.UINT32:
+                value = buffer.getInt(offset + 1) & 0xffffffffL;
+                break;
+            case DispatchTable.UINT64:
+                value = buffer.getLong(offset + 1);
+                if (value < 0) {
+                    // JL above Long.MAX_VALUE, so above any max.
+                    return false;
+                }
+                break;
+            case DispatchTable.INT8:
+                value = buffer.get(offset + 1);
+                break;
+            case DispatchTable.INT16:
+                value = buffer.getShort(offset + 1);
+                break;
+            case DispatchTable.INT32:
+                value = buffer.getInt(offset + 1);
+                break;
+            case DispatchTable.INT64:
+                value = buffer.getLong(offset + 1);
+                break;
+            default:
+                return false;
+        }
+        return value >= min && value <= max;
+    }
+}
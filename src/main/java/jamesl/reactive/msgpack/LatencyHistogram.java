@@ -0,0 +1,110 @@
+package jamesl.reactive.msgpack;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Thread safe histogram of non-negative values, typically nanoseconds, using HDR style log-linear buckets: values
+ * below 32 are counted exactly and larger values fall into 16 linear sub-buckets per power of two, so recorded
+ * values are accurate to within ~6% across the whole range of {@code long}. Recording does not allocate.
+ */
+public final class LatencyHistogram {
+    private static final int EXACT_BUCKETS = 32;
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // JL the first power of two above the exact buckets is 2^5, the last is 2^62.
+    private static final int FIRST_MAGNITUDE = 5;
+    private static final int NUMBER_OF_BUCKETS = EXACT_BUCKETS + (63 - FIRST_MAGNITUDE) * SUB_BUCKETS;
+    private final AtomicLongArray counts = new AtomicLongArray(NUMBER_OF_BUCKETS);
+
+    /**
+     * Records {@code value}, negative values are recorded as zero.
+     *
+     * @param value
+     */
+    public void record(long value) {
+        counts.incrementAndGet(index(Math.max(value, 0)));
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return
+     */
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the largest value that is equivalent to the value at {@code percentile}, or zero if nothing has
+     * been recorded.
+     *
+     * @param percentile between 0 and 100.
+     * @return
+     */
+    public long valueAtPercentile(double percentile) {
+        long count = count();
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100d) / 100d * count));
+        long seen = 0;
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return highestEquivalentValue(i);
+            }
+        }
+        return highestEquivalentValue(NUMBER_OF_BUCKETS - 1);
+    }
+
+    /**
+     * Returns the largest value that is equivalent to the largest recorded value, or zero if nothing has been
+     * recorded.
+     *
+     * @return
+     */
+    public long max() {
+        for (int i = NUMBER_OF_BUCKETS - 1; i >= 0; i--) {
+            if (counts.get(i) > 0) {
+                return highestEquivalentValue(i);
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{count=" + count() + ", p50=" + valueAtPercentile(50) + ", p99=" + valueAtPercentile(99) + ", max=" + max() + "}";
+    }
+
+    private static int index(long value) {
+        if (value < EXACT_BUCKETS) {
+            return (int) value;
+        }
+
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return EXACT_BUCKETS + (magnitude - FIRST_MAGNITUDE) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long highestEquivalentValue(int index) {
+        if (index < EXACT_BUCKETS) {
+            return index;
+        }
+
+        int magnitude = (index - EXACT_BUCKETS) / SUB_BUCKETS + FIRST_MAGNITUDE;
+        int subBucket = (index - EXACT_BUCKETS) % SUB_BUCKETS;
+        int shift = magnitude - SUB_BUCKET_BITS;
+        long lowestEquivalentValue = (long) (SUB_BUCKETS + subBucket) << shift;
+        return lowestEquivalentValue + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,66 @@
+package jamesl.reactive.msgpack;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Signals that a frame exceeds one of the decoding limits of {@link UnpackerOptions}. The frame is rejected as
+ * soon as its header has been read, before anything is buffered for it.
+ */
+public class LimitExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    private final Limit limit;
+    private final long value;
+    private final long maximum;
+
+    public LimitExceededException(Limit limit, long value, long maximum) {
+        super("decoding limit exceeded - limit = " + limit + ", value = " + value + ", maximum = " + maximum);
+        this.limit = limit;
+        this.value = value;
+        this.maximum = maximum;
+    }
+
+    /**
+     * Returns the limit that was exceeded.
+     *
+     * @return
+     */
+    public Limit getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the length, size or depth of the rejected frame.
+     *
+     * @return
+     */
+    public long getValue() {
+        return value;
+    }
+
+    public long getMaximum() {
+        return maximum;
+    }
+
+    /**
+     *
+     */
+    public enum Limit {
+        /**
+         * {@link UnpackerOptions#maxPayloadLength(int)}.
+         */
+        PAYLOAD_LENGTH,
+        /**
+         * {@link UnpackerOptions#maxContainerSize(int)}.
+         */
+        CONTAINER_SIZE,
+        /**
+         * {@link UnpackerOptions#maxDepth(int)}.
+         */
+        DEPTH,
+        /**
+         * {@link UnpackerOptions#maxBufferedBytes(int)}.
+         */
+        BUFFERED_BYTES
+    }
+}
@@ -0,0 +1,82 @@
+package jamesl.reactive.msgpack;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SynchronousSink;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Publishes the contents of a file as a sequence of read-only windows mapped with {@link FileChannel#map},
+ * so that a file can be replayed through {@link Unpacker#unpack(org.reactivestreams.Publisher)} without
+ * copying it onto the heap. Each window is mapped only when it is requested, frames that cross a window
+ * boundary are reassembled by the {@link Unpacker} like any other split frame.
+ */
+public final class MappedFileSource {
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+    private static final Logger logger = LoggerFactory.getLogger(MappedFileSource.class);
+
+    private MappedFileSource() {
+    }
+
+    /**
+     * Maps {@code path} in windows of {@link MappedFileSource#DEFAULT_WINDOW_SIZE} bytes.
+     *
+     * @param path
+     * @return
+     */
+    public static Flux<ByteBuffer> map(Path path) {
+        return map(path, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Maps {@code path} in windows of at most {@code windowSize} bytes. The file is opened on subscription and
+     * closed when the sequence terminates or is cancelled.
+     *
+     * @param path
+     * @param windowSize
+     * @return
+     */
+    public static Flux<ByteBuffer> map(Path path, int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("windowSize must be positive - windowSize = " + windowSize);
+        }
+
+        return Flux.using(() -> FileChannel.open(path, StandardOpenOption.READ),
+                channel -> Flux.generate(() -> 0L, (Long position, SynchronousSink<ByteBuffer> sink) -> {
+                    try {
+                        long size = channel.size();
+                        if (position >= size) {
+                            sink.complete();
+                            return position;
+                        }
+
+                        long length = Math.min(windowSize, size - position);
+                        logger.debug("mapping window - path = {}, position = {}, length = {}", path, position, length);
+                        sink.next(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+                        return position + length;
+                    } catch (IOException e) {
+                        sink.error(new UncheckedIOException(e));
+                        return position;
+                    }
+                }),
+                MappedFileSource::close);
+    }
+
+    private static void close(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("failed to close channel", e);
+        }
+    }
+}
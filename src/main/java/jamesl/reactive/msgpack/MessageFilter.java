@@ -0,0 +1,41 @@
+package jamesl.reactive.msgpack;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Predicate over the raw bytes of a complete top level value, evaluated by the {@link Unpacker} before any of the
+ * value's elements reach an {@link ElementParser}, see {@link Unpacker#filter(MessageFilter)}. Values that do not
+ * match are passed over by their length without being decoded. Filters for common cases are created by
+ * {@link KeyPath}.
+ *
+ * Implementations must not change the position or limit of the buffer and must be safe to call from several
+ * threads, as every stream of an {@link Unpacker} shares them.
+ */
+@FunctionalInterface
+public interface MessageFilter {
+    /**
+     * Indicates whether the top level value held in {@code buffer} from {@code startOffset} up to {@code endOffset}
+     * should be decoded.
+     *
+     * @param buffer
+     * @param startOffset
+     * @param endOffset
+     * @return
+     */
+    boolean test(ByteBuffer buffer, int startOffset, int endOffset);
+
+    default MessageFilter and(MessageFilter other) {
+        return (buffer, startOffset, endOffset) -> test(buffer, startOffset, endOffset) && other.test(buffer, startOffset, endOffset);
+    }
+
+    default MessageFilter or(MessageFilter other) {
+        return (buffer, startOffset, endOffset) -> test(buffer, startOffset, endOffset) || other.test(buffer, startOffset, endOffset);
+    }
+
+    default MessageFilter negate() {
+        return (buffer, startOffset, endOffset) -> !test(buffer, startOffset, endOffset);
+    }
+}
@@ -0,0 +1,185 @@
+package jamesl.reactive.msgpack;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * A single msgpack value, nested containers included, that is decoded lazily. Parsing makes one structural pass
+ * over the frames and records, for every element, its offset in the buffer and the index of the element that
+ * follows it once everything nested in it is skipped, in a single {@code int[]}. Nothing else is decoded until it
+ * is read through a {@link MsgpackValue}, so a document costs 8 bytes per element on top of the input instead of
+ * an object per element.
+ *
+ * A document is a view over its input, so the input must not be modified or recycled while the document is in use.
+ * Documents are immutable and may be shared between threads.
+ */
+public final class MsgpackDocument {
+    private final ByteBuffer buffer;
+    // JL two entries per element - the offset of its frame and the index of the element that follows it.
+    private final int[] index;
+    private final int numberOfElements;
+
+    private MsgpackDocument(ByteBuffer buffer, int[] index, int numberOfElements) {
+        this.buffer = buffer;
+        this.index = index;
+        this.numberOfElements = numberOfElements;
+    }
+
+    /**
+     * Parses the value that starts at the position of {@code input} and advances the position past it. The document
+     * reads from a view over {@code input} so later changes to its position and limit do not affect the document.
+     * Use a {@link Parser} to parse many documents without allocating scratch space for each.
+     *
+     * @param input
+     * @return
+     * @throws IllegalArgumentException       if {@code input} does not contain a complete value.
+     * @throws UnsupportedWireFormatException if the value contains an unrecognised frame.
+     */
+    public static MsgpackDocument parse(ByteBuffer input) {
+        return new Parser().parse(input);
+    }
+
+    /**
+     * Returns the top level value of this document.
+     *
+     * @return
+     */
+    public MsgpackValue root() {
+        return new MsgpackValue(this, 0);
+    }
+
+    /**
+     * Returns the number of elements in this document, counting each container header, key and value.
+     *
+     * @return
+     */
+    public int numberOfElements() {
+        return numberOfElements;
+    }
+
+    @Override
+    public String toString() {
+        return "MsgpackDocument{numberOfElements=" + numberOfElements + "}";
+    }
+
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the offset of the frame of {@code element}.
+     *
+     * @param element
+     * @return
+     */
+    int offset(int element) {
+        return index[2 * element];
+    }
+
+    /**
+     * Returns the index of the element that follows {@code element} and everything nested in it.
+     *
+     * @param element
+     * @return
+     */
+    int next(int element) {
+        return index[2 * element + 1];
+    }
+
+    private static IllegalArgumentException incomplete(ByteBuffer input, int offset) {
+        return new IllegalArgumentException("input does not contain a complete value - input = " + input + ", offset = " + offset);
+    }
+
+    /**
+     * Reusable parser that keeps its scratch space between documents, so that each document only allocates its
+     * exactly sized index. Documents parsed from the same input buffer also share a single view over it. Parsers
+     * are not thread safe.
+     */
+    public static final class Parser {
+        private int[] index = new int[64];
+        // JL the open containers, innermost last, and the number of values still to come in each.
+        private int[] containers = new int[8];
+        private long[] valuesRemaining = new long[8];
+        private ByteBuffer input;
+        private ByteBuffer buffer;
+
+        /**
+         * See {@link MsgpackDocument#parse(ByteBuffer)}.
+         *
+         * @param input
+         * @return
+         */
+        public MsgpackDocument parse(ByteBuffer input) {
+            ByteBuffer buffer = view(input);
+            int limit = buffer.limit();
+            int offset = input.position();
+            int numberOfElements = 0;
+            int depth = 0;
+
+            do {
+                if (offset >= limit) {
+                    throw incomplete(input, offset);
+                }
+
+                int head = buffer.get(offset) & 0xff;
+                if (DispatchTable.kind(head) == DispatchTable.NEVER_USED) {
+                    throw new UnsupportedWireFormatException((byte) head);
+                }
+
+                int numberOfBytesInFrame = DispatchTable.numberOfBytesInFrame(head, buffer, offset, limit);
+                if (numberOfBytesInFrame == WireFormat.UNKNOWN_FRAME_LENGTH || numberOfBytesInFrame > limit - offset) {
+                    throw incomplete(input, offset);
+                }
+
+                if (2 * numberOfElements == index.length) {
+                    index = Arrays.copyOf(index, index.length * 2);
+                }
+
+                int element = numberOfElements++;
+                index[2 * element] = offset;
+                long numberOfNestedValues = DispatchTable.numberOfNestedValues(head, buffer, offset);
+                offset += numberOfBytesInFrame;
+
+                if (numberOfNestedValues > 0) {
+                    if (depth == containers.length) {
+                        containers = Arrays.copyOf(containers, depth * 2);
+                        valuesRemaining = Arrays.copyOf(valuesRemaining, depth * 2);
+                    }
+
+                    containers[depth] = element;
+                    valuesRemaining[depth] = numberOfNestedValues;
+                    depth++;
+                    continue;
+                }
+
+                // JL a complete value may complete the containers it is nested in as well.
+                index[2 * element + 1] = numberOfElements;
+                while (depth > 0 && --valuesRemaining[depth - 1] == 0) {
+                    depth--;
+                    index[2 * containers[depth] + 1] = numberOfElements;
+                }
+            } while (depth > 0);
+
+            input.position(offset);
+            return new MsgpackDocument(buffer, Arrays.copyOf(index, 2 * numberOfElements), numberOfElements);
+        }
+
+        /**
+         * Returns a view over {@code input}, reusing the view of the previous document if it came from the same
+         * buffer and the limit has not changed since.
+         *
+         * @param input
+         * @return
+         */
+        private ByteBuffer view(ByteBuffer input) {
+            if (input != this.input || buffer.limit() != input.limit()) {
+                this.input = input;
+                this.buffer = input.duplicate();
+            }
+            return buffer;
+        }
+    }
+}
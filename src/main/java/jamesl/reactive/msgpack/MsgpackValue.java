@@ -0,0 +1,427 @@
+package jamesl.reactive.msgpack;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Flyweight over a single element of a {@link MsgpackDocument}. Values hold nothing but the document and the
+ * position of the element in its index, and decode their frame each time an accessor is called.
+ *
+ * Array elements and map entries are found by skipping over their predecessors through the index, so accessing
+ * the i-th element of a container takes time proportional to i. Map keys are compared with the UTF-8 bytes in
+ * the input without being decoded.
+ */
+public final class MsgpackValue {
+    private final MsgpackDocument document;
+    private final int element;
+
+    MsgpackValue(MsgpackDocument document, int element) {
+        this.document = document;
+        this.element = element;
+    }
+
+    /**
+     *
+     */
+    public enum Type {
+        NIL,
+        BOOLEAN,
+        INTEGER,
+        FLOAT,
+        STRING,
+        BINARY,
+        ARRAY,
+        MAP,
+        EXTENSION
+    }
+
+    /**
+     * Returns the type of this value.
+     *
+     * @return
+     */
+    public Type type() {
+        switch (DispatchTable.kind(head())) {
+            case DispatchTable.NIL:
+                return Type.NIL;
+            case DispatchTable.FALSE:
+            case DispatchTable.TRUE:
+                return Type.BOOLEAN;
+            case DispatchTable.FLOAT32:
+            case DispatchTable.FLOAT64:
+                return Type.FLOAT;
+            case DispatchTable.FIXSTR:
+            case DispatchTable.STR8:
+            case DispatchTable.STR16:
+            case DispatchTable.STR32:
+                return Type.STRING;
+            case DispatchTable.BIN8:
+            case DispatchTable.BIN16:
+            case DispatchTable.BIN32:
+                return Type.BINARY;
+            case DispatchTable.FIXARRAY:
+            case DispatchTable.ARRAY16:
+            case DispatchTable.ARRAY32:
+                return Type.ARRAY;
+            case DispatchTable.FIXMAP:
+            case DispatchTable.MAP16:
+            case DispatchTable.MAP32:
+                return Type.MAP;
+            case DispatchTable.FIXEXT:
+            case DispatchTable.EXT8:
+            case DispatchTable.EXT16:
+            case DispatchTable.EXT32:
+                return Type.EXTENSION;
+            default:
+                return Type.INTEGER;
+        }
+    }
+
+    public boolean isNil() {
+        return type() == Type.NIL;
+    }
+
+    public boolean asBoolean() {
+        switch (DispatchTable.kind(head())) {
+            case DispatchTable.FALSE:
+                return false;
+            case DispatchTable.TRUE:
+                return true;
+            default:
+                throw mismatch(Type.BOOLEAN);
+        }
+    }
+
+    /**
+     * Returns this integer as a {@code long}. A uint64 greater than {@link Long#MAX_VALUE} is returned as its two's
+     * complement bits, use {@link MsgpackValue#asBigInteger()} to read it exactly.
+     *
+     * @return
+     */
+    public long asLong() {
+        ByteBuffer buffer = document.buffer();
+        int offset = offset();
+        int head = buffer.get(offset) & 0xff;
+        switch (DispatchTable.kind(head)) {
+            case DispatchTable.POSITIVE_FIXINT:
+            case DispatchTable.NEGATIVE_FIXINT:
+                return (byte) head;
+            case DispatchTable.UINT8:
+                return buffer.get(offset + 1) & 0xff;
+            case DispatchTable.UINT16:
+                return buffer.getShort(offset + 1) & 0xffff;
+            case DispatchTable.UINT32:
+                return buffer.getInt(offset + 1) & 0xffffffffL;
+            case DispatchTable.UINT64:
+            case DispatchTable.INT64:
+                return buffer.getLong(offset + 1);
+            case DispatchTable.INT8:
+                return buffer.get(offset + 1);
+            case DispatchTable.INT16:
+                return buffer.getShort(offset + 1);
+            case DispatchTable.INT32:
+                return buffer.getInt(offset + 1);
+            default:
+                throw mismatch(Type.INTEGER);
+        }
+    }
+
+    public BigInteger asBigInteger() {
+        long bits = asLong();
+        if (bits < 0 && DispatchTable.kind(head()) == DispatchTable.UINT64) {
+            return BigInteger.valueOf(bits + Long.MAX_VALUE + 1L).setBit(63);
+        } else {
+            return BigInteger.valueOf(bits);
+        }
+    }
+
+    /**
+     * Returns this float, or this integer converted to a {@code double}.
+     *
+     * @return
+     */
+    public double asDouble() {
+        ByteBuffer buffer = document.buffer();
+        int offset = offset();
+        switch (DispatchTable.kind(head())) {
+            case DispatchTable.FLOAT32:
+                return buffer.getFloat(offset + 1);
+            case DispatchTable.FLOAT64:
+                return buffer.getDouble(offset + 1);
+            case DispatchTable.UINT64:
+                return asBigInteger().doubleValue();
+            default:
+                if (type() != Type.INTEGER) {
+                    throw mismatch(Type.FLOAT);
+                }
+                return asLong();
+        }
+    }
+
+    /**
+     * Decodes this str value, see {@link MsgpackValue#contentEquals(String)} to compare it without decoding.
+     *
+     * @return
+     */
+    public String asString() {
+        checkType(Type.STRING);
+        return WireFormatFactory.RawWireFormat.str(document.buffer(), payloadOffset(), payloadLength());
+    }
+
+    /**
+     * Returns the extension type of this ext value.
+     *
+     * @return
+     */
+    public byte extensionType() {
+        checkType(Type.EXTENSION);
+        return document.buffer().get(payloadOffset() - 1);
+    }
+
+    /**
+     * Returns a copy of the payload of this bin, str or ext value.
+     *
+     * @return
+     */
+    public byte[] asBytes() {
+        ByteBuffer view = asByteBuffer();
+        byte[] value = new byte[view.remaining()];
+        view.get(value);
+        return value;
+    }
+
+    /**
+     * Returns a read-only view over the payload of this bin, str or ext value. The view's position is zero and its
+     * limit is the payload length.
+     *
+     * @return
+     */
+    public ByteBuffer asByteBuffer() {
+        Type type = type();
+        if (type != Type.BINARY && type != Type.STRING && type != Type.EXTENSION) {
+            throw mismatch(Type.BINARY);
+        }
+
+        ByteBuffer view = document.buffer().asReadOnlyBuffer();
+        int offset = payloadOffset();
+        view.limit(offset + payloadLength()).position(offset);
+        return view.slice();
+    }
+
+    /**
+     * Indicates whether this is a str value whose content is {@code value}, without decoding it.
+     *
+     * @param value
+     * @return
+     */
+    public boolean contentEquals(String value) {
+        return isString(element, value);
+    }
+
+    /**
+     * Returns the number of elements in this array or entries in this map.
+     *
+     * @return
+     */
+    public int size() {
+        Type type = type();
+        if (type != Type.ARRAY && type != Type.MAP) {
+            throw mismatch(Type.ARRAY);
+        }
+
+        long numberOfNestedValues = DispatchTable.numberOfNestedValues(head(), document.buffer(), offset());
+        return (int) (type == Type.MAP ? numberOfNestedValues / 2 : numberOfNestedValues);
+    }
+
+    /**
+     * Returns the i-th element of this array.
+     *
+     * @param i
+     * @return
+     * @throws IndexOutOfBoundsException if {@code i} is not less than {@link MsgpackValue#size()}.
+     */
+    public MsgpackValue get(int i) {
+        checkType(Type.ARRAY);
+        return new MsgpackValue(document, nested(i, size()));
+    }
+
+    /**
+     * Returns the value of the first entry of this map whose key is the str {@code key}, or {@code null} if there
+     * is no such entry.
+     *
+     * @param key
+     * @return
+     */
+    public MsgpackValue get(String key) {
+        checkType(Type.MAP);
+        int size = size();
+        int entry = element + 1;
+        for (int i = 0; i < size; i++) {
+            int value = document.next(entry);
+            if (isString(entry, key)) {
+                return new MsgpackValue(document, value);
+            }
+            entry = document.next(value);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the key of the i-th entry of this map.
+     *
+     * @param i
+     * @return
+     */
+    public MsgpackValue keyAt(int i) {
+        checkType(Type.MAP);
+        return new MsgpackValue(document, nested(2 * i, 2 * size()));
+    }
+
+    /**
+     * Returns the value of the i-th entry of this map.
+     *
+     * @param i
+     * @return
+     */
+    public MsgpackValue valueAt(int i) {
+        checkType(Type.MAP);
+        return new MsgpackValue(document, nested(2 * i + 1, 2 * size()));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        MsgpackValue that = (MsgpackValue) o;
+        return element == that.element && document == that.document;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(document) + element;
+    }
+
+    @Override
+    public String toString() {
+        return "MsgpackValue{type=" + type() + ", offset=" + offset() + "}";
+    }
+
+    private int offset() {
+        return document.offset(element);
+    }
+
+    private int head() {
+        return document.buffer().get(offset()) & 0xff;
+    }
+
+    private int payloadOffset() {
+        return offset() + DispatchTable.numberOfBytesInHeader(head());
+    }
+
+    private int payloadLength() {
+        int head = head();
+        int offset = offset();
+        ByteBuffer buffer = document.buffer();
+        return DispatchTable.numberOfBytesInFrame(head, buffer, offset, buffer.limit()) - DispatchTable.numberOfBytesInHeader(head);
+    }
+
+    /**
+     * Returns the index of the i-th value nested directly in this container.
+     *
+     * @param i
+     * @param numberOfNestedValues
+     * @return
+     */
+    private int nested(int i, int numberOfNestedValues) {
+        if (i < 0 || i >= numberOfNestedValues) {
+            throw new IndexOutOfBoundsException("index = " + i + ", numberOfNestedValues = " + numberOfNestedValues);
+        }
+
+        int nested = element + 1;
+        for (int j = 0; j < i; j++) {
+            nested = document.next(nested);
+        }
+        return nested;
+    }
+
+    /**
+     * Compares {@code value} with the UTF-8 bytes at {@code offset}, without encoding it unless it contains
+     * characters outside of ASCII.
+     *
+     * @param value
+     * @param offset
+     * @param length
+     * @return
+     */
+    private boolean utf8Equals(String value, int offset, int length) {
+        ByteBuffer buffer = document.buffer();
+        int numberOfChars = value.length();
+        if (numberOfChars > length) {
+            return false;
+        }
+
+        for (int i = 0; i < numberOfChars; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                return utf8Equals(value.getBytes(StandardCharsets.UTF_8), offset, length);
+            }
+            if (buffer.get(offset + i) != c) {
+                return false;
+            }
+        }
+        return numberOfChars == length;
+    }
+
+    private boolean utf8Equals(byte[] utf8, int offset, int length) {
+        if (utf8.length != length) {
+            return false;
+        }
+
+        ByteBuffer buffer = document.buffer();
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(offset + i) != utf8[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Indicates whether {@code element} of the document is a str value whose content is {@code value}.
+     *
+     * @param element
+     * @param value
+     * @return
+     */
+    private boolean isString(int element, String value) {
+        ByteBuffer buffer = document.buffer();
+        int offset = document.offset(element);
+        int head = buffer.get(offset) & 0xff;
+        if (!DispatchTable.isString(head)) {
+            return false;
+        }
+
+        int numberOfBytesInHeader = DispatchTable.numberOfBytesInHeader(head);
+        int length = DispatchTable.numberOfBytesInFrame(head, buffer, offset, buffer.limit()) - numberOfBytesInHeader;
+        return utf8Equals(value, offset + numberOfBytesInHeader, length);
+    }
+
+    private void checkType(Type type) {
+        if (type() != type) {
+            throw mismatch(type);
+        }
+    }
+
+    private IllegalStateException mismatch(Type expected) {
+        return new IllegalStateException("value is not of the expected type - expected = " + expected + ", value = " + this);
+    }
+}
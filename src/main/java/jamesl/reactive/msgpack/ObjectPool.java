@@ -0,0 +1,86 @@
+package jamesl.reactive.msgpack;
+
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * @param <T>
+ * @author jamesl
+ * @since 1.0
+ *
+ * Bounded pool of reusable output objects, e.g. the messages produced by a chain of {@link ElementParser}s that
+ * resets its states with {@link ElementParser#reset()} instead of creating new ones. The chain acquires an object
+ * for each message and the subscriber releases it once it has finished with the message, see
+ * {@link ObjectPool#releasing(Consumer)}, so that a steady stream of messages does not allocate.
+ *
+ * Objects may be acquired and released from different threads. Objects released to a full pool are dropped.
+ */
+public class ObjectPool<T> {
+    private final Supplier<? extends T> factory;
+    private final Consumer<? super T> reset;
+    private final Queue<T> objects;
+
+    /**
+     * @param factory          creates an object when the pool is empty.
+     * @param reset            clears an object as it is released, so that it can be reused.
+     * @param maxPooledObjects
+     */
+    public ObjectPool(Supplier<? extends T> factory, Consumer<? super T> reset, int maxPooledObjects) {
+        if (maxPooledObjects <= 0) {
+            throw new IllegalArgumentException("maxPooledObjects must be positive - maxPooledObjects = " + maxPooledObjects);
+        }
+
+        this.factory = factory;
+        this.reset = reset;
+        this.objects = new ArrayBlockingQueue<>(maxPooledObjects);
+    }
+
+    /**
+     * Returns a pooled object, creating one if the pool is empty.
+     *
+     * @return
+     */
+    public T acquire() {
+        T object = objects.poll();
+        return object == null ? factory.get() : object;
+    }
+
+    /**
+     * Resets {@code object} and returns it to the pool. The caller must not use the object afterwards.
+     *
+     * @param object
+     */
+    public void release(T object) {
+        reset.accept(object);
+        objects.offer(object);
+    }
+
+    /**
+     * Returns a {@link Consumer} that passes each object to {@code consumer} and then releases it, for subscribers
+     * that are done with each message when {@code consumer} returns, e.g.
+     * {@code unpacker.unpack(input).subscribe(pool.releasing(this::handle))}.
+     *
+     * @param consumer
+     * @return
+     */
+    public Consumer<T> releasing(Consumer<? super T> consumer) {
+        return object -> {
+            try {
+                consumer.accept(object);
+            } finally {
+                release(object);
+            }
+        };
+    }
+
+    /**
+     * Returns the number of objects waiting in the pool.
+     *
+     * @return
+     */
+    public int size() {
+        return objects.size();
+    }
+}
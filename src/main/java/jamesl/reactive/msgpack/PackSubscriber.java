@@ -0,0 +1,260 @@
+package jamesl.reactive.msgpack;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.Operators;
+import reactor.util.concurrent.QueueSupplier;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * @param <T>
+ * @author jamesl
+ * @since 1.0
+ *
+ * Operator that encodes messages into pooled output buffers. Messages are appended to the current buffer until
+ * it is full or until the upstream {@link org.reactivestreams.Publisher} has nothing more to offer, at which
+ * point the buffer is emitted. Messages are only encoded while there are no full buffers waiting for demand.
+ */
+final class PackSubscriber<T> implements Subscriber<T>, Subscription {
+    private static final AtomicIntegerFieldUpdater<PackSubscriber> WIP = AtomicIntegerFieldUpdater.newUpdater(PackSubscriber.class, "wip");
+    private static final AtomicLongFieldUpdater<PackSubscriber> REQUESTED = AtomicLongFieldUpdater.newUpdater(PackSubscriber.class, "requested");
+    private final Subscriber<? super ByteBuffer> actual;
+    private final ElementWriter<T> elementWriter;
+    private final BufferPool bufferPool;
+    private final int prefetch;
+    private final int limit;
+    private final Queue<T> inputQueue;
+    private final Queue<ByteBuffer> outputQueue;
+    private final ElementOutput elementOutput;
+    private Subscription subscription;
+    private ByteBuffer currentBuffer;
+    private int consumed;
+    private volatile boolean initialRequest;
+    private volatile boolean done;
+    private Throwable error;
+    private volatile boolean cancelled;
+    private volatile int wip;
+    private volatile long requested;
+
+    PackSubscriber(Subscriber<? super ByteBuffer> actual, ElementWriter<T> elementWriter, BufferPool bufferPool, int prefetch) {
+        this.actual = actual;
+        this.elementWriter = elementWriter;
+        this.bufferPool = bufferPool;
+        this.prefetch = prefetch;
+        this.limit = prefetch - (prefetch >> 2);
+        this.inputQueue = QueueSupplier.<T>get(prefetch).get();
+        this.outputQueue = new ArrayDeque<>();
+        this.elementOutput = new ElementOutput(bufferPool);
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        if (Operators.validate(subscription, s)) {
+            subscription = s;
+            actual.onSubscribe(this);
+
+            // JL a synchronous upstream may emit many messages before request returns, hold back the idle flush until it does.
+            initialRequest = true;
+            s.request(prefetch);
+            initialRequest = false;
+            drain();
+        }
+    }
+
+    @Override
+    public void onNext(T t) {
+        if (done) {
+            Operators.onNextDropped(t);
+            return;
+        }
+
+        if (!inputQueue.offer(t)) {
+            onError(Operators.onOperatorError(subscription, new IllegalStateException("input queue is full, upstream ignored backpressure")));
+            return;
+        }
+
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        if (done) {
+            Operators.onErrorDropped(t);
+            return;
+        }
+
+        error = t;
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        if (done) {
+            return;
+        }
+
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void request(long n) {
+        if (Operators.validate(n)) {
+            Operators.getAndAddCap(REQUESTED, this, n);
+            drain();
+        }
+    }
+
+    @Override
+    public void cancel() {
+        if (!cancelled) {
+            cancelled = true;
+            subscription.cancel();
+
+            if (WIP.getAndIncrement(this) == 0) {
+                clear();
+            }
+        }
+    }
+
+    /**
+     * Emits full buffers, encodes queued messages and flushes the current buffer once the upstream is idle.
+     */
+    private void drain() {
+        if (WIP.getAndIncrement(this) != 0) {
+            return;
+        }
+
+        int missed = 1;
+
+        for (; ; ) {
+            long r = requested;
+            long e = 0L;
+
+            for (; ; ) {
+                if (cancelled) {
+                    clear();
+                    return;
+                }
+
+                if (done && error != null) {
+                    clear();
+                    actual.onError(error);
+                    return;
+                }
+
+                if (!outputQueue.isEmpty()) {
+                    if (e == r) {
+                        break;
+                    }
+
+                    actual.onNext(outputQueue.poll());
+                    e++;
+                    continue;
+                }
+
+                boolean d = done;
+                T value = inputQueue.poll();
+
+                if (value != null) {
+                    try {
+                        write(value);
+                    } catch (Throwable t) {
+                        cancelled = true;
+                        subscription.cancel();
+                        clear();
+                        actual.onError(Operators.onOperatorError(t));
+                        return;
+                    }
+
+                    if (++consumed == limit) {
+                        consumed = 0;
+                        subscription.request(limit);
+                    }
+                    continue;
+                }
+
+                // JL nothing more to encode right now, flush whatever has been written so far.
+                if (currentBuffer != null) {
+                    if (e == r || initialRequest) {
+                        break;
+                    }
+
+                    flush();
+                    continue;
+                }
+
+                if (d) {
+                    actual.onComplete();
+                    return;
+                }
+
+                break;
+            }
+
+            if (e != 0L && r != Long.MAX_VALUE) {
+                REQUESTED.addAndGet(this, -e);
+            }
+
+            missed = WIP.addAndGet(this, -missed);
+            if (missed == 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Encodes {@code value} into the current buffer. If the message does not fit, {@link ElementOutput} moves it
+     * to a new buffer and the buffer holding the preceding messages is queued for emission.
+     *
+     * @param value
+     */
+    private void write(T value) {
+        if (currentBuffer == null) {
+            currentBuffer = bufferPool.acquire();
+        }
+
+        try {
+            elementWriter.write(value, elementOutput.reset(currentBuffer));
+        } finally {
+            ByteBuffer fullBuffer = elementOutput.fullBuffer();
+            if (fullBuffer != null) {
+                fullBuffer.flip();
+                outputQueue.offer(fullBuffer);
+            }
+            currentBuffer = elementOutput.buffer();
+        }
+    }
+
+    /**
+     * Queues the current buffer for emission.
+     */
+    private void flush() {
+        currentBuffer.flip();
+        outputQueue.offer(currentBuffer);
+        currentBuffer = null;
+    }
+
+    /**
+     * Returns any buffers held by this subscription to the pool.
+     */
+    private void clear() {
+        inputQueue.clear();
+
+        ByteBuffer buffer;
+        while ((buffer = outputQueue.poll()) != null) {
+            bufferPool.release(buffer);
+        }
+
+        if (currentBuffer != null) {
+            bufferPool.release(currentBuffer);
+            currentBuffer = null;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package jamesl.reactive.msgpack;
+
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.util.concurrent.QueueSupplier;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @param <T>
+ * @author jamesl
+ * @since 1.0
+ *
+ * Encodes messages using an {@link ElementWriter}. Many small messages are batched into each output buffer,
+ * output buffers come from a {@link BufferPool} and should be handed back via {@link Packer#release(ByteBuffer)}
+ * once they have been written.
+ */
+public class Packer<T> {
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final int DEFAULT_MAX_POOLED_BUFFERS = 64;
+    private final ElementWriter<T> elementWriter;
+    private final BufferPool bufferPool;
+
+    public Packer(ElementWriter<T> elementWriter) {
+        this(elementWriter, DEFAULT_BUFFER_SIZE);
+    }
+
+    public Packer(ElementWriter<T> elementWriter, int bufferSize) {
+        this(elementWriter, new BufferPool(bufferSize, DEFAULT_MAX_POOLED_BUFFERS));
+    }
+
+    public Packer(ElementWriter<T> elementWriter, BufferPool bufferPool) {
+        this.elementWriter = elementWriter;
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * Encodes the messages published by {@code input}. Each emitted buffer is ready to read and holds one or
+     * more complete messages, a message is never split across buffers.
+     *
+     * @param input
+     * @return
+     */
+    public Flux<ByteBuffer> pack(Publisher<T> input) {
+        return Flux.from(subscriber -> input.subscribe(new PackSubscriber<>(subscriber, elementWriter, bufferPool, QueueSupplier.SMALL_BUFFER_SIZE)));
+    }
+
+    /**
+     * Returns a buffer emitted by {@link Packer#pack(Publisher)} to the pool.
+     *
+     * @param buffer
+     */
+    public void release(ByteBuffer buffer) {
+        bufferPool.release(buffer);
+    }
+}
@@ -0,0 +1,126 @@
+package jamesl.reactive.msgpack;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * @param <T>
+ * @author jamesl
+ * @since 1.0
+ *
+ * {@link ElementParser} returned by {@link ElementParser#skip(int, ElementParser)} that discards the next
+ * {@code numberOfValues} values, including every element nested in any map or array among them, and then
+ * hands over to {@code next} through {@link ElementParser#onSkipped()}.
+ *
+ * {@link StreamDecoder} recognises this parser and skips the frames of scalar values by their length alone,
+ * so str and bin payloads are never copied or decoded, even when they span input buffers. The callbacks
+ * below are only used for container headers and by code that drives an {@link ElementParser} directly.
+ */
+final class SkippingElementParser<T> implements ElementParser<T> {
+    private final ElementParser<T> next;
+    private long valuesRemaining;
+
+    SkippingElementParser(long numberOfValues, ElementParser<T> next) {
+        this.valuesRemaining = numberOfValues;
+        this.next = next;
+    }
+
+    /**
+     * Accounts for one skipped value.
+     *
+     * @return the parser for the next element.
+     */
+    ElementParser<T> onSkip() {
+        valuesRemaining--;
+        return valuesRemaining == 0 ? next.onSkipped() : this;
+    }
+
+    @Override
+    public boolean isRoutingNullsViaOnStringEnabled() {
+        return false;
+    }
+
+    @Override
+    public boolean isZeroCopyEnabled() {
+        return true;
+    }
+
+    @Override
+    public ElementParser<T> onArrayHeader(int numberOfElements) {
+        // JL array32 counts are unsigned.
+        valuesRemaining += numberOfElements & 0xffffffffL;
+        return onSkip();
+    }
+
+    @Override
+    public ElementParser<T> onBigInteger(BigInteger value) {
+        return onSkip();
+    }
+
+    @Override
+    public ElementParser<T> onBoolean(boolean value) {
+        return onSkip();
+    }
+
+    @Override
+    public ElementParser<T> onByte(byte value) {
+        return onSkip();
+    }
+
+    @Override
+    public ElementParser<T> onDouble(double value) {
+        return onSkip();
+    }
+
+    @Override
+    public ElementParser<T> onInt(int value) {
+        return onSkip();
+    }
+
+    @Override
+    public ElementParser<T> onLong(long value) {
+        return onSkip();
+    }
+
+    @Override
+    public ElementParser<T> onMapHeader(int numberOfElements) {
+        // JL each map entry is a key and a value.
+        valuesRemaining += 2L * (numberOfElements & 0xffffffffL);
+        return onSkip();
+    }
+
+    @Override
+    public ElementParser<T> onNull() {
+        return onSkip();
+    }
+
+    @Override
+    public ElementParser<T> onRaw(byte[] value) {
+        return onSkip();
+    }
+
+    @Override
+    public ElementParser<T> onString(String value) {
+        return onSkip();
+    }
+
+    @Override
+    public ElementParser<T> onRawSlice(ByteBuffer value) {
+        return onSkip();
+    }
+
+    @Override
+    public ElementParser<T> onStringSlice(ByteBuffer value) {
+        return onSkip();
+    }
+
+    @Override
+    public ElementParser<T> reset() {
+        return next.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "SkippingElementParser{valuesRemaining=" + valuesRemaining + "}";
+    }
+}
@@ -0,0 +1,847 @@
+package jamesl.reactive.msgpack;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * @param <T>
+ * @author jamesl
+ * @since 1.0
+ *
+ * Holds the decoding state of a single stream of input buffers - the current {@link ElementParser},
+ * any frame that is split across input buffers and the progress of a streamed or skipped payload.
+ * Instances are not thread safe.
+ *
+ * Split frames are reassembled into a small scratch buffer if they fit, otherwise into an accumulator
+ * that is reused for every split frame up to {@link UnpackerOptions#splitFrameThreshold()} bytes, so
+ * that steady state reassembly does not allocate. Larger frames get a buffer of their own.
+ *
+ * While the current parser is a {@link SkippingElementParser} the frames of scalar values are passed over
+ * by their length alone, frames that span input buffers included, and only container headers are parsed.
+ *
+ * The limits of {@link UnpackerOptions} are checked as soon as the length of each frame is known, so that
+ * nothing is buffered or allocated for a frame that exceeds them. Nesting is only tracked when it is limited
+ * or when the stream resyncs after a frame exceeds a limit, which needs to know where the top level value ends.
+ *
+ * When the stream is filtered by a {@link MessageFilter}, each top level value is found by a structural scan and
+ * tested before any of its frames are parsed. A value that spans input buffers is copied into a buffer of its own,
+ * reused for values of up to {@link UnpackerOptions#splitFrameThreshold()} bytes, until it is complete.
+ *
+ * Everything that is the same for every stream lives in the shared {@link DecoderEngine}, so an instance only
+ * holds the state of its own stream, and the string decoding scratch space is only allocated once the stream
+ * decodes its first str payload.
+ */
+final class StreamDecoder<T> {
+    private static final Logger logger = LoggerFactory.getLogger(StreamDecoder.class);
+    // JL large enough for any header and for every fixed size frame.
+    private static final int SCRATCH_BUFFER_SIZE = 16;
+    private final DecoderEngine<T> engine;
+    private final Consumer<T> consumer;
+    private StringCache stringCache;
+    private StringDecoder stringDecoder;
+    // JL the number of values still to come in each open container, innermost last, when nesting is tracked.
+    private long[] valuesRemaining;
+    private int depth;
+    private ElementParser<T> elementParser;
+    private ByteBuffer scratchBuffer;
+    private ByteBuffer accumulatorBuffer;
+    private ByteBuffer splitFrameBuffer;
+    private int splitFrameLength;
+    private int rawBytesRemaining;
+    private long skipBytesRemaining;
+    // JL a filtered top level value that spans input buffers, and how far it has been scanned.
+    private ByteBuffer messageBuffer;
+    private boolean bufferingMessage;
+    private int messageScanOffset;
+    private long messageValuesRemaining;
+
+    StreamDecoder(ElementParserFactory<T> elementParserFactory, Consumer<T> consumer) {
+        this(elementParserFactory, consumer, new UnpackerOptions());
+    }
+
+    StreamDecoder(ElementParserFactory<T> elementParserFactory, Consumer<T> consumer, UnpackerOptions options) {
+        this(new DecoderEngine<>(elementParserFactory, options), consumer);
+    }
+
+    StreamDecoder(DecoderEngine<T> engine, Consumer<T> consumer) {
+        this.engine = engine;
+        this.consumer = consumer;
+        this.elementParser = engine.elementParserFactory.firstElementParser(consumer);
+        this.valuesRemaining = engine.isTrackingNesting() ? new long[8] : null;
+    }
+
+    /**
+     * Decodes all of the remaining elements in {@code input}.
+     *
+     * @param input
+     */
+    void decode(ByteBuffer input) {
+        if (engine.listener == null) {
+            while (input.hasRemaining()) {
+                decodeElement(input);
+            }
+            return;
+        }
+
+        int numberOfBytes = input.remaining();
+        long start = System.nanoTime();
+        while (input.hasRemaining()) {
+            decodeElement(input);
+        }
+        engine.listener.onInput(numberOfBytes, System.nanoTime() - start);
+    }
+
+    /**
+     * Decodes the next element in {@code input}. At most one element is passed to the {@link ElementParser},
+     * if the element is split across input buffers its bytes are retained until the rest of the frame arrives.
+     * When the stream is filtered, a whole top level value is tested, and decoded if it matches, at a time.
+     *
+     * @param input
+     */
+    void decodeElement(ByteBuffer input) {
+        if (engine.messageFilter != null && isBetweenValues()) {
+            filterValue(input);
+            return;
+        }
+
+        decodeFrame(input);
+    }
+
+    /**
+     * Indicates whether a frame is waiting for more input.
+     *
+     * @return
+     */
+    boolean hasSplitFrame() {
+        return splitFrameBuffer != null || rawBytesRemaining > 0 || skipBytesRemaining > 0 || bufferingMessage;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamDecoder{splitFrameBuffer=" + splitFrameBuffer + ", rawBytesRemaining=" + rawBytesRemaining + ", skipBytesRemaining=" + skipBytesRemaining
+                + ", bufferingMessage=" + bufferingMessage + "}";
+    }
+
+    /**
+     * Decodes the next frame in {@code input}, see {@link StreamDecoder#decodeElement(ByteBuffer)}.
+     *
+     * @param input
+     */
+    private void decodeFrame(ByteBuffer input) {
+        if (skipBytesRemaining > 0) {
+            skipBytes(input);
+            return;
+        }
+
+        if (rawBytesRemaining > 0) {
+            streamRawChunk(input);
+            return;
+        }
+
+        if (splitFrameBuffer != null) {
+            completeSplitFrame(input);
+            return;
+        }
+
+        int startOfFrame = input.position();
+        int numberOfBytesInFrame = determineNumberOfBytesInFrame(input, startOfFrame, input.limit());
+        if (numberOfBytesInFrame != WireFormat.UNKNOWN_FRAME_LENGTH) {
+            checkFrame(input, startOfFrame, numberOfBytesInFrame, input.remaining());
+        }
+
+        if (numberOfBytesInFrame == WireFormat.UNKNOWN_FRAME_LENGTH || input.remaining() < numberOfBytesInFrame) {
+            if (numberOfBytesInFrame != WireFormat.UNKNOWN_FRAME_LENGTH
+                    && startSkipping(input.get(startOfFrame), exactNumberOfBytesInFrame(input, startOfFrame, numberOfBytesInFrame) - input.remaining())) {
+                input.position(input.limit());
+                return;
+            }
+
+            if (numberOfBytesInFrame != WireFormat.UNKNOWN_FRAME_LENGTH && startRawStreaming(input.get(startOfFrame), numberOfBytesInFrame)) {
+                input.position(startOfFrame + numberOfBytesInFrame - rawBytesRemaining);
+                streamRawChunk(input);
+                return;
+            }
+
+            splitFrameLength = numberOfBytesInFrame;
+            splitFrameBuffer = numberOfBytesInFrame == WireFormat.UNKNOWN_FRAME_LENGTH ? scratchBuffer() : splitFrameBuffer(numberOfBytesInFrame);
+            splitFrameBuffer.put(input);
+            logger.trace("split frame detected - splitFrameBuffer = {}", splitFrameBuffer);
+            return;
+        }
+
+        elementParser = parseElement(input, startOfFrame);
+        input.position(startOfFrame + numberOfBytesInFrame);
+    }
+
+    /**
+     * Indicates whether the stream is between top level values, or buffering one, so that the next value is
+     * filtered. Values skipped by the {@link ElementParser} are passed over unfiltered, as they are never parsed.
+     *
+     * @return
+     */
+    private boolean isBetweenValues() {
+        return bufferingMessage || splitFrameBuffer == null && rawBytesRemaining == 0 && skipBytesRemaining == 0 && !(elementParser instanceof SkippingElementParser);
+    }
+
+    /**
+     * Tests the next top level value in {@code input} against the {@link MessageFilter} and decodes it if it
+     * matches, or starts buffering it if it is not complete.
+     *
+     * @param input
+     */
+    private void filterValue(ByteBuffer input) {
+        if (bufferingMessage) {
+            bufferMessage(input);
+            return;
+        }
+
+        int startOfValue = input.position();
+        int endOfValue = FrameScanner.endOfValue(input, startOfValue, input.limit());
+        if (endOfValue == FrameScanner.INCOMPLETE) {
+            bufferingMessage = true;
+            messageScanOffset = 0;
+            messageValuesRemaining = 1;
+            if (messageBuffer == null) {
+                messageBuffer = ByteBuffer.allocate(Math.min(Math.max(2 * input.remaining(), SCRATCH_BUFFER_SIZE), engine.maxBufferedBytes));
+            }
+            bufferMessage(input);
+            return;
+        }
+
+        decodeValue(input, startOfValue, endOfValue);
+    }
+
+    /**
+     * Decodes the complete top level value held in {@code buffer} from {@code startOfValue} up to
+     * {@code endOfValue} if it matches the {@link MessageFilter}, and moves the position of {@code buffer} past it.
+     *
+     * @param buffer
+     * @param startOfValue
+     * @param endOfValue
+     */
+    private void decodeValue(ByteBuffer buffer, int startOfValue, int endOfValue) {
+        if (!engine.messageFilter.test(buffer, startOfValue, endOfValue)) {
+            logger.trace("filtered value - numberOfBytes = {}", endOfValue - startOfValue);
+            if (engine.listener != null) {
+                engine.listener.onMessageFiltered(endOfValue - startOfValue);
+            }
+
+            buffer.position(endOfValue);
+            return;
+        }
+
+        int limit = buffer.limit();
+        buffer.limit(endOfValue);
+        try {
+            while (buffer.hasRemaining()) {
+                decodeFrame(buffer);
+            }
+        } finally {
+            buffer.limit(limit);
+        }
+    }
+
+    /**
+     * Copies the next bytes of a top level value that spans input buffers from {@code input}, and once the value is
+     * complete, hands back any bytes that follow it and decodes it, see
+     * {@link StreamDecoder#decodeValue(ByteBuffer, int, int)}.
+     *
+     * @param input
+     */
+    private void bufferMessage(ByteBuffer input) {
+        int numberOfBytes = Math.min(input.remaining(), engine.maxBufferedBytes - messageBuffer.position());
+        if (messageBuffer.remaining() < numberOfBytes) {
+            int capacity = (int) Math.min(Math.max(2L * messageBuffer.capacity(), (long) messageBuffer.position() + numberOfBytes), engine.maxBufferedBytes);
+            messageBuffer.flip();
+            messageBuffer = ByteBuffer.allocate(capacity).put(messageBuffer);
+            logger.debug("expanding message buffer - capacity = {}", capacity);
+        }
+        copy(input, messageBuffer, numberOfBytes);
+
+        if (!scanMessage()) {
+            LimitExceededException e = bufferedMessageLimitExceeded(input);
+            if (e != null) {
+                skipBufferedMessage(e);
+            }
+            return;
+        }
+
+        int endOfValue = messageScanOffset;
+        input.position(input.position() - (messageBuffer.position() - endOfValue));
+        bufferingMessage = false;
+        if (engine.listener != null) {
+            engine.listener.onSplitFrame(endOfValue);
+        }
+
+        ByteBuffer value = messageBuffer;
+        value.flip();
+        if (value.capacity() > engine.splitFrameThreshold) {
+            messageBuffer = null;
+        }
+        decodeValue(value, 0, endOfValue);
+        value.clear();
+    }
+
+    /**
+     * Scans the frames of the buffered top level value that have been received since the last scan.
+     *
+     * @return {@code true} if the value is complete.
+     */
+    private boolean scanMessage() {
+        int limit = messageBuffer.position();
+        while (messageValuesRemaining > 0) {
+            if (messageScanOffset >= limit) {
+                return false;
+            }
+
+            int head = messageBuffer.get(messageScanOffset) & 0xff;
+            int numberOfBytesInFrame = DispatchTable.numberOfBytesInFrame(head, messageBuffer, messageScanOffset, limit);
+            if (numberOfBytesInFrame == WireFormat.UNKNOWN_FRAME_LENGTH || numberOfBytesInFrame > limit - messageScanOffset) {
+                return false;
+            }
+
+            messageValuesRemaining += DispatchTable.numberOfNestedValues(head, messageBuffer, messageScanOffset) - 1;
+            messageScanOffset += numberOfBytesInFrame;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the limit exceeded by the incomplete top level value being buffered, or {@code null} if there is none.
+     *
+     * @param input
+     * @return
+     */
+    private LimitExceededException bufferedMessageLimitExceeded(ByteBuffer input) {
+        int limit = messageBuffer.position();
+        if (messageScanOffset < limit) {
+            int head = messageBuffer.get(messageScanOffset) & 0xff;
+            if (DispatchTable.numberOfBytesInFrame(head, messageBuffer, messageScanOffset, limit) == WireFormat.OVERSIZED_FRAME_LENGTH) {
+                long length = DispatchTable.numberOfBytesInOversizedFrame(head, messageBuffer, messageScanOffset) - DispatchTable.numberOfBytesInHeader(head);
+                return new LimitExceededException(LimitExceededException.Limit.PAYLOAD_LENGTH, length, engine.maxPayloadLength);
+            }
+        }
+
+        if (limit >= engine.maxBufferedBytes) {
+            return new LimitExceededException(LimitExceededException.Limit.BUFFERED_BYTES, Math.max((long) limit + input.remaining(), engine.maxBufferedBytes + 1L), engine.maxBufferedBytes);
+        }
+        return null;
+    }
+
+    /**
+     * Throws {@code e}, or if the stream resyncs, stops buffering the current top level value and skips the rest of
+     * it, starting with the frame that is not complete yet. Nothing has been parsed, so the {@link ElementParser}
+     * carries on with the next value.
+     *
+     * @param e
+     */
+    private void skipBufferedMessage(LimitExceededException e) {
+        if (!engine.resyncOnLimitExceeded) {
+            throw e;
+        }
+
+        logger.debug("resyncing after limit exceeded - numberOfValues = {}, e = {}", messageValuesRemaining, e.getMessage());
+        if (engine.listener != null) {
+            engine.listener.onLimitExceeded(e);
+        }
+
+        ByteBuffer value = messageBuffer;
+        messageBuffer = null;
+        bufferingMessage = false;
+        value.flip();
+        value.position(messageScanOffset);
+
+        elementParser = new SkippingElementParser<>(messageValuesRemaining, elementParser);
+        while (value.hasRemaining()) {
+            decodeFrame(value);
+        }
+    }
+
+    /**
+     * Starts skipping the rest of the frame beginning with {@code head} if the current {@link ElementParser}
+     * is skipping values and the frame is not a container header.
+     *
+     * @param head
+     * @param numberOfBytesRemaining the number of bytes of the frame that have not been consumed yet.
+     * @return {@code true} if the frame will be skipped.
+     */
+    private boolean startSkipping(byte head, long numberOfBytesRemaining) {
+        if (!(elementParser instanceof SkippingElementParser) || DispatchTable.isContainerHeader(head & 0xff)) {
+            return false;
+        }
+
+        logger.trace("skipping split frame - numberOfBytesRemaining = {}", numberOfBytesRemaining);
+        if (engine.listener != null) {
+            engine.listener.onElement(head);
+        }
+
+        if (numberOfBytesRemaining == 0) {
+            elementParser = ((SkippingElementParser<T>) elementParser).onSkip();
+        } else {
+            skipBytesRemaining = numberOfBytesRemaining;
+        }
+        return true;
+    }
+
+    /**
+     * Passes over the next bytes of a skipped frame in {@code input}.
+     *
+     * @param input
+     */
+    private void skipBytes(ByteBuffer input) {
+        int length = (int) Math.min(skipBytesRemaining, input.remaining());
+        input.position(input.position() + length);
+        skipBytesRemaining -= length;
+
+        if (skipBytesRemaining == 0) {
+            elementParser = ((SkippingElementParser<T>) elementParser).onSkip();
+        }
+    }
+
+    /**
+     * Starts streaming the payload of the frame beginning with {@code head} if it is a bin or str frame and
+     * the current {@link ElementParser} has enabled raw streaming.
+     *
+     * @param head
+     * @param numberOfBytesInFrame
+     * @return {@code true} if the payload will be streamed.
+     */
+    private boolean startRawStreaming(byte head, int numberOfBytesInFrame) {
+        WireFormat wireFormat = Unpacker.wireFormat(head);
+        if (!(wireFormat instanceof WireFormatFactory.RawWireFormat) || !elementParser.isRawStreamingEnabled()) {
+            return false;
+        }
+
+        WireFormatFactory.RawWireFormat rawWireFormat = (WireFormatFactory.RawWireFormat) wireFormat;
+        int length = numberOfBytesInFrame - rawWireFormat.numberOfBytesInHeader();
+        logger.trace("streaming raw payload - length = {}", length);
+        if (engine.listener != null) {
+            engine.listener.onElement(head);
+        }
+
+        elementParser = elementParser.onRawStart(length, rawWireFormat.isString());
+        rawBytesRemaining = length;
+
+        if (length == 0) {
+            elementParser = elementParser.onRawEnd();
+        }
+        return true;
+    }
+
+    /**
+     * Passes the next chunk of a streamed payload in {@code input} to the {@link ElementParser}.
+     *
+     * @param input
+     */
+    private void streamRawChunk(ByteBuffer input) {
+        int length = Math.min(rawBytesRemaining, input.remaining());
+        if (length == 0) {
+            return;
+        }
+
+        ByteBuffer chunk = WireFormatFactory.RawWireFormat.slice(input, input.position(), length);
+        input.position(input.position() + length);
+        rawBytesRemaining -= length;
+
+        elementParser = elementParser.onRawChunk(chunk);
+        if (rawBytesRemaining == 0) {
+            elementParser = elementParser.onRawEnd();
+        }
+    }
+
+    /**
+     * @param inputBuffer
+     */
+    private void completeSplitFrame(ByteBuffer inputBuffer) {
+        if (attemptToDetermineSplitFrameLength(inputBuffer)) {
+            logger.trace("splitFrameBuffer = {}", splitFrameBuffer);
+            copy(inputBuffer, splitFrameBuffer, Math.min(splitFrameLength - splitFrameBuffer.position(), inputBuffer.remaining()));
+
+            if (splitFrameBuffer.position() == splitFrameLength) {
+                logger.trace("split frame complete - splitFrameBuffer = {}", splitFrameBuffer);
+                if (engine.listener != null) {
+                    engine.listener.onSplitFrame(splitFrameLength);
+                }
+
+                ByteBuffer frame = splitFrameBuffer;
+                splitFrameBuffer = null;
+                if (DispatchTable.isContainerHeader(frame.get(0) & 0xff)) {
+                    checkFrame(frame, 0, splitFrameLength, splitFrameLength);
+                }
+
+                elementParser = parseElement(frame, 0);
+                frame.clear();
+            }
+        }
+    }
+
+    /**
+     * Attempts to determine the length of the current split frame, moving the header out of the scratch
+     * buffer if the frame is too large to be completed there.
+     *
+     * @param inputBuffer
+     * @return
+     */
+    private boolean attemptToDetermineSplitFrameLength(ByteBuffer inputBuffer) {
+        if (splitFrameLength != WireFormat.UNKNOWN_FRAME_LENGTH) {
+            return true;
+        }
+
+        while (inputBuffer.hasRemaining()) {
+            splitFrameBuffer.put(inputBuffer.get());
+            int numberOfBytesInFrame = determineNumberOfBytesInFrame(splitFrameBuffer, 0, splitFrameBuffer.position());
+            logger.trace("attempting to determine split frame length - numberOfBytesInFrame = {}, splitFrameBuffer = {}", numberOfBytesInFrame, splitFrameBuffer);
+
+            if (numberOfBytesInFrame != WireFormat.UNKNOWN_FRAME_LENGTH) {
+                checkFrame(splitFrameBuffer, 0, numberOfBytesInFrame, splitFrameBuffer.position());
+                if (startSkipping(splitFrameBuffer.get(0), exactNumberOfBytesInFrame(splitFrameBuffer, 0, numberOfBytesInFrame) - splitFrameBuffer.position())) {
+                    splitFrameBuffer.clear();
+                    splitFrameBuffer = null;
+                    return false;
+                }
+
+                if (startRawStreaming(splitFrameBuffer.get(0), numberOfBytesInFrame)) {
+                    // JL the scratch buffer holds exactly the header, the payload follows in the input.
+                    splitFrameBuffer.clear();
+                    splitFrameBuffer = null;
+                    return false;
+                }
+
+                splitFrameLength = numberOfBytesInFrame;
+                if (numberOfBytesInFrame > splitFrameBuffer.capacity()) {
+                    ByteBuffer header = splitFrameBuffer;
+                    header.flip();
+
+                    splitFrameBuffer = splitFrameBuffer(numberOfBytesInFrame).put(header);
+                    header.clear();
+                    logger.trace("expanding split frame buffer - numberOfBytesInFrame = {}, splitFrameBuffer = {}", numberOfBytesInFrame, splitFrameBuffer);
+                }
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns an empty buffer that can hold a split frame of {@code numberOfBytesInFrame} bytes.
+     *
+     * @param numberOfBytesInFrame
+     * @return
+     */
+    private ByteBuffer splitFrameBuffer(int numberOfBytesInFrame) {
+        if (numberOfBytesInFrame <= SCRATCH_BUFFER_SIZE) {
+            return scratchBuffer();
+        }
+
+        if (numberOfBytesInFrame > engine.splitFrameThreshold) {
+            return ByteBuffer.allocate(numberOfBytesInFrame);
+        }
+
+        if (accumulatorBuffer == null || accumulatorBuffer.capacity() < numberOfBytesInFrame) {
+            int capacity = Math.min(Math.min(Integer.highestOneBit(numberOfBytesInFrame - 1) << 1, engine.splitFrameThreshold), engine.maxBufferedBytes);
+            accumulatorBuffer = ByteBuffer.allocate(capacity);
+            logger.debug("allocated split frame accumulator - capacity = {}", capacity);
+        }
+
+        accumulatorBuffer.clear();
+        return accumulatorBuffer;
+    }
+
+    /**
+     * Returns the empty scratch buffer, allocating it on first use.
+     *
+     * @return
+     */
+    private ByteBuffer scratchBuffer() {
+        if (scratchBuffer == null) {
+            scratchBuffer = ByteBuffer.allocate(SCRATCH_BUFFER_SIZE);
+        }
+
+        scratchBuffer.clear();
+        return scratchBuffer;
+    }
+
+    /**
+     * Bulk copies {@code length} bytes from {@code source} to {@code destination}.
+     *
+     * @param source
+     * @param destination
+     * @param length
+     */
+    private static void copy(ByteBuffer source, ByteBuffer destination, int length) {
+        int limit = source.limit();
+        source.limit(source.position() + length);
+        destination.put(source);
+        source.limit(limit);
+    }
+
+    /**
+     * Checks the frame of {@code numberOfBytesInFrame} bytes starting at {@code startOffset} in {@code buffer}, of
+     * which {@code numberOfBytesAvailable} have been received, against the limits and accounts for it in the
+     * nesting of the current top level value. Frames that are being skipped are not checked, as nothing is
+     * buffered for them.
+     *
+     * @param buffer
+     * @param startOffset
+     * @param numberOfBytesInFrame
+     * @param numberOfBytesAvailable
+     * @throws LimitExceededException if the frame exceeds a limit and the stream does not resync.
+     */
+    private void checkFrame(ByteBuffer buffer, int startOffset, int numberOfBytesInFrame, int numberOfBytesAvailable) {
+        int head = buffer.get(startOffset) & 0xff;
+        if (numberOfBytesInFrame > numberOfBytesAvailable && DispatchTable.isContainerHeader(head)) {
+            // JL the count of a split container header is checked once the header has been reassembled.
+            return;
+        }
+
+        if (!(elementParser instanceof SkippingElementParser)) {
+            LimitExceededException e = exceededLimit(head, buffer, startOffset, numberOfBytesInFrame, numberOfBytesAvailable);
+            if (e != null) {
+                resync(e);
+            }
+        }
+
+        if (valuesRemaining != null) {
+            trackNesting(head, buffer, startOffset);
+        }
+    }
+
+    /**
+     * Returns the limit exceeded by the frame starting with {@code head}, or {@code null} if there is none.
+     *
+     * @param head
+     * @param buffer
+     * @param startOffset
+     * @param numberOfBytesInFrame
+     * @param numberOfBytesAvailable
+     * @return
+     */
+    private LimitExceededException exceededLimit(int head, ByteBuffer buffer, int startOffset, int numberOfBytesInFrame, int numberOfBytesAvailable) {
+        if (numberOfBytesInFrame > engine.frameLengthThreshold) {
+            int numberOfBytesInHeader = DispatchTable.numberOfBytesInHeader(head);
+            long length = exactNumberOfBytesInFrame(buffer, startOffset, numberOfBytesInFrame);
+            if (numberOfBytesInHeader != 0 && (length - numberOfBytesInHeader > engine.maxPayloadLength || numberOfBytesInFrame == WireFormat.OVERSIZED_FRAME_LENGTH)) {
+                return new LimitExceededException(LimitExceededException.Limit.PAYLOAD_LENGTH, length - numberOfBytesInHeader, engine.maxPayloadLength);
+            }
+
+            boolean streamed = Unpacker.wireFormat((byte) head) instanceof WireFormatFactory.RawWireFormat && elementParser.isRawStreamingEnabled();
+            if (length > numberOfBytesAvailable && length > engine.maxBufferedBytes && !streamed) {
+                return new LimitExceededException(LimitExceededException.Limit.BUFFERED_BYTES, length, engine.maxBufferedBytes);
+            }
+        }
+
+        if (DispatchTable.isContainerHeader(head)) {
+            long numberOfNestedValues = DispatchTable.numberOfNestedValues(head, buffer, startOffset);
+            long size = DispatchTable.isMapHeader(head) ? numberOfNestedValues / 2 : numberOfNestedValues;
+            if (size > engine.maxContainerSize) {
+                return new LimitExceededException(LimitExceededException.Limit.CONTAINER_SIZE, size, engine.maxContainerSize);
+            }
+
+            if (depth >= engine.maxDepth) {
+                return new LimitExceededException(LimitExceededException.Limit.DEPTH, depth + 1L, engine.maxDepth);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Throws {@code e}, or if the stream resyncs, discards the current message and starts skipping the rest of the
+     * top level value that the offending frame belongs to.
+     *
+     * @param e
+     */
+    private void resync(LimitExceededException e) {
+        if (!engine.resyncOnLimitExceeded) {
+            throw e;
+        }
+
+        // JL the values left in the innermost container, the offending one included, and those left in each
+        // enclosing container apart from the container that is still open within it.
+        long numberOfValues = 1;
+        for (int i = 0; i < depth; i++) {
+            numberOfValues += valuesRemaining[i] - 1;
+        }
+        logger.debug("resyncing after limit exceeded - numberOfValues = {}, e = {}", numberOfValues, e.getMessage());
+        if (engine.listener != null) {
+            engine.listener.onLimitExceeded(e);
+        }
+
+        ElementParser<T> firstElementParser = elementParser.reset();
+        if (firstElementParser == null) {
+            firstElementParser = engine.elementParserFactory.firstElementParser(consumer);
+        }
+        elementParser = new SkippingElementParser<>(numberOfValues, firstElementParser);
+        depth = 0;
+    }
+
+    /**
+     * Accounts for the frame starting with {@code head} in the nesting of the current top level value.
+     *
+     * @param head
+     * @param buffer
+     * @param startOffset
+     */
+    private void trackNesting(int head, ByteBuffer buffer, int startOffset) {
+        long numberOfNestedValues = DispatchTable.numberOfNestedValues(head, buffer, startOffset);
+        if (numberOfNestedValues > 0) {
+            if (depth == valuesRemaining.length) {
+                valuesRemaining = Arrays.copyOf(valuesRemaining, depth * 2);
+            }
+
+            valuesRemaining[depth++] = numberOfNestedValues;
+            return;
+        }
+
+        // JL a complete value may complete the containers it is nested in as well.
+        while (depth > 0 && --valuesRemaining[depth - 1] == 0) {
+            depth--;
+        }
+    }
+
+    /**
+     * Returns the number of bytes in a frame whose length has been determined as {@code numberOfBytesInFrame},
+     * reading the length field again if the frame is oversized.
+     *
+     * @param buffer
+     * @param startOffset
+     * @param numberOfBytesInFrame
+     * @return
+     */
+    private static long exactNumberOfBytesInFrame(ByteBuffer buffer, int startOffset, int numberOfBytesInFrame) {
+        if (numberOfBytesInFrame != WireFormat.OVERSIZED_FRAME_LENGTH) {
+            return numberOfBytesInFrame;
+        }
+        return DispatchTable.numberOfBytesInOversizedFrame(buffer.get(startOffset) & 0xff, buffer, startOffset);
+    }
+
+    /**
+     * Attempts to determine the number of bytes in the next frame.
+     *
+     * @param buffer
+     * @param startOffset
+     * @param limit
+     * @return
+     */
+    private int determineNumberOfBytesInFrame(ByteBuffer buffer, int startOffset, int limit) {
+        byte head = buffer.get(startOffset);
+        if (engine.tableDispatch) {
+            return DispatchTable.numberOfBytesInFrame(head & 0xff, buffer, startOffset, limit);
+        }
+        return Unpacker.wireFormat(head).numberOfBytesInFrame(buffer, startOffset, limit);
+    }
+
+    /**
+     * Parses the "element" starting at {@code startOffset} in {@code buffer} and returns
+     * an {@link ElementParser} for the next element.
+     *
+     * @param buffer
+     * @param startOffset
+     * @return
+     */
+    private ElementParser<T> parseElement(ByteBuffer buffer, int startOffset) {
+        byte head = buffer.get(startOffset);
+        if (engine.listener != null) {
+            engine.listener.onElement(head);
+        }
+
+        if (elementParser instanceof SkippingElementParser && !DispatchTable.isContainerHeader(head & 0xff)) {
+            return ((SkippingElementParser<T>) elementParser).onSkip();
+        }
+
+        if (DispatchTable.isString(head & 0xff)) {
+            SymbolTable symbolTable = elementParser.symbolTable();
+            if (symbolTable != null) {
+                int symbolId = lookupSymbol(symbolTable, head & 0xff, buffer, startOffset);
+                if (symbolId != SymbolTable.NOT_FOUND) {
+                    return elementParser.onKey(symbolId);
+                }
+            }
+
+            if (!elementParser.isZeroCopyEnabled()) {
+                return parseString(head & 0xff, buffer, startOffset);
+            }
+        }
+
+        if (DispatchTable.isExtension(head & 0xff)) {
+            return parseExtension(head & 0xff, buffer, startOffset);
+        }
+
+        if (engine.tableDispatch) {
+            return DispatchTable.parseElement(head & 0xff, buffer, startOffset, elementParser);
+        }
+        return Unpacker.wireFormat(head).parseElement(buffer, startOffset, elementParser);
+    }
+
+    /**
+     * Looks up the payload of the complete str frame starting with {@code head} at {@code startOffset} in
+     * {@code symbolTable}.
+     *
+     * @param symbolTable
+     * @param head
+     * @param buffer
+     * @param startOffset
+     * @return
+     */
+    private static int lookupSymbol(SymbolTable symbolTable, int head, ByteBuffer buffer, int startOffset) {
+        int numberOfBytesInHeader = DispatchTable.numberOfBytesInHeader(head);
+        int length = DispatchTable.numberOfBytesInFrame(head, buffer, startOffset, buffer.limit()) - numberOfBytesInHeader;
+        return symbolTable.lookup(buffer, startOffset + numberOfBytesInHeader, length);
+    }
+
+    /**
+     * Parses the complete str frame starting with {@code head} at {@code startOffset} through the
+     * {@link StringCache}, if there is one, or the {@link StringDecoder}.
+     *
+     * @param head
+     * @param buffer
+     * @param startOffset
+     * @return
+     */
+    private ElementParser<T> parseString(int head, ByteBuffer buffer, int startOffset) {
+        int numberOfBytesInHeader = DispatchTable.numberOfBytesInHeader(head);
+        int offset = startOffset + numberOfBytesInHeader;
+        int length = DispatchTable.numberOfBytesInFrame(head, buffer, startOffset, buffer.limit()) - numberOfBytesInHeader;
+
+        if (stringDecoder == null) {
+            // JL the first str payload of the stream, only now is the string scratch space worth allocating.
+            stringDecoder = new StringDecoder();
+            stringCache = engine.stringCache == null ? null : engine.stringCache.get();
+        }
+
+        if (stringCache != null && DispatchTable.isShortString(head) && stringCache.isCacheable(length)) {
+            return elementParser.onString(stringCache.get(buffer, offset, length));
+        }
+
+        if (elementParser.isCharSequenceEnabled()) {
+            return elementParser.onCharSequence(stringDecoder.charSequence(buffer, offset, length));
+        }
+        return elementParser.onString(stringDecoder.decode(buffer, offset, length));
+    }
+
+    /**
+     * Parses the complete ext frame starting with {@code head} at {@code startOffset} through the
+     * {@link ExtensionDecoder} registered for its extension type, if there is one.
+     *
+     * @param head
+     * @param buffer
+     * @param startOffset
+     * @return
+     */
+    private ElementParser<T> parseExtension(int head, ByteBuffer buffer, int startOffset) {
+        int numberOfBytesInHeader = DispatchTable.numberOfBytesInHeader(head);
+        int offset = startOffset + numberOfBytesInHeader;
+        int length = DispatchTable.numberOfBytesInFrame(head, buffer, startOffset, buffer.limit()) - numberOfBytesInHeader;
+        byte type = buffer.get(offset - 1);
+
+        ExtensionDecoder extensionDecoder = engine.extensionDecoders[type & 0xff];
+        if (extensionDecoder != null) {
+            return extensionDecoder.decode(type, buffer, offset, length, elementParser);
+        }
+        return WireFormatFactory.ExtWireFormat.onExtension(buffer, offset, length, elementParser);
+    }
+}
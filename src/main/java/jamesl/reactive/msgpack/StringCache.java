@@ -0,0 +1,163 @@
+package jamesl.reactive.msgpack;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Bounded cache of canonical {@link String}s for short, frequently repeated str payloads such as map keys.
+ * Lookups hash and compare the UTF-8 bytes in place in the input buffer, so a hit returns the cached
+ * {@link String} without allocating. Entries live in a fixed size, direct mapped table; what happens when a
+ * miss collides with an occupied slot is decided by the {@link Eviction} policy.
+ *
+ * Instances are not thread safe, {@link Unpacker} creates one per stream via
+ * {@link UnpackerOptions#stringCache(java.util.function.Supplier)}.
+ */
+public final class StringCache {
+    public static final int DEFAULT_SIZE = 1024;
+    public static final int DEFAULT_MAX_LENGTH = 32;
+    private final int mask;
+    private final int maxLength;
+    private final Eviction eviction;
+    private final int[] hashes;
+    private final byte[][] keys;
+    private final String[] values;
+    private long hits;
+    private long misses;
+
+    public StringCache() {
+        this(DEFAULT_SIZE, DEFAULT_MAX_LENGTH, Eviction.REPLACE);
+    }
+
+    /**
+     * @param size      the number of entries, rounded up to a power of two.
+     * @param maxLength the length in bytes of the longest payload that is cached.
+     * @param eviction
+     */
+    public StringCache(int size, int maxLength, Eviction eviction) {
+        if (size < 1 || size > 1 << 30) {
+            throw new IllegalArgumentException("size must be between 1 and 2^30 - size = " + size);
+        }
+
+        if (maxLength < 0) {
+            throw new IllegalArgumentException("maxLength must not be negative - maxLength = " + maxLength);
+        }
+
+        int capacity = Integer.highestOneBit(size - 1) << 1;
+        this.mask = Math.max(capacity, 1) - 1;
+        this.maxLength = maxLength;
+        this.eviction = eviction;
+        this.hashes = new int[mask + 1];
+        this.keys = new byte[mask + 1][];
+        this.values = new String[mask + 1];
+    }
+
+    /**
+     * Indicates whether payloads of {@code length} bytes are cached.
+     *
+     * @param length
+     * @return
+     */
+    public boolean isCacheable(int length) {
+        return length <= maxLength;
+    }
+
+    /**
+     * Returns the {@link String} for the {@code length} UTF-8 bytes at {@code startOffset} in {@code buffer},
+     * reusing the cached instance if there is one.
+     *
+     * @param buffer
+     * @param startOffset
+     * @param length
+     * @return
+     */
+    public String get(ByteBuffer buffer, int startOffset, int length) {
+        int hash = hash(buffer, startOffset, length);
+        int index = (hash ^ (hash >>> 16)) & mask;
+
+        byte[] key = keys[index];
+        if (key != null && hashes[index] == hash && equals(key, buffer, startOffset, length)) {
+            hits++;
+            return values[index];
+        }
+
+        misses++;
+        String value = WireFormatFactory.RawWireFormat.str(buffer, startOffset, length);
+        if (key == null || eviction == Eviction.REPLACE) {
+            hashes[index] = hash;
+            keys[index] = WireFormatFactory.RawWireFormat.raw(buffer, startOffset, length);
+            values[index] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the number of lookups that returned a cached {@link String}.
+     *
+     * @return
+     */
+    public long hits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that had to decode a new {@link String}.
+     *
+     * @return
+     */
+    public long misses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of entries in the cache.
+     *
+     * @return
+     */
+    public int size() {
+        return mask + 1;
+    }
+
+    @Override
+    public String toString() {
+        return "StringCache{size=" + size() + ", maxLength=" + maxLength + ", eviction=" + eviction + ", hits=" + hits + ", misses=" + misses + "}";
+    }
+
+    private static int hash(ByteBuffer buffer, int startOffset, int length) {
+        int hash = length;
+        for (int i = startOffset, limit = startOffset + length; i < limit; i++) {
+            hash = 31 * hash + buffer.get(i);
+        }
+        return hash;
+    }
+
+    private static boolean equals(byte[] key, ByteBuffer buffer, int startOffset, int length) {
+        if (key.length != length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (key[i] != buffer.get(startOffset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * What to do when a miss maps to a slot that already holds another entry.
+     */
+    public enum Eviction {
+        /**
+         * Replace the resident entry, the cache follows a changing set of keys.
+         */
+        REPLACE,
+
+        /**
+         * Keep the resident entry, the first keys seen stay cached and a stream of one-off values cannot
+         * flush them out.
+         */
+        RETAIN
+    }
+}
@@ -0,0 +1,215 @@
+package jamesl.reactive.msgpack;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Decodes str payloads straight from heap and direct {@link ByteBuffer}s. Payloads are first checked for
+ * bytes outside of ASCII eight at a time, ASCII payloads are turned into a {@link String} with a single copy and
+ * anything else goes through a reusable {@link CharsetDecoder}. Malformed input is replaced, as it is by
+ * {@link String#String(byte[], java.nio.charset.Charset)}.
+ *
+ * Instances hold per-stream scratch space and are not thread safe.
+ */
+final class StringDecoder {
+    private static final long NON_ASCII_BITS = 0x8080808080808080L;
+    private final CharsetDecoder charsetDecoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final AsciiSequence asciiSequence = new AsciiSequence();
+    private byte[] bytes = new byte[64];
+    private CharBuffer chars = CharBuffer.allocate(64);
+    // JL a view over the last input buffer, reused while the input buffer stays the same.
+    private ByteBuffer source;
+    private ByteBuffer sourceView;
+
+    /**
+     * Decodes {@code length} UTF-8 bytes starting at {@code startOffset} in {@code buffer}.
+     *
+     * @param buffer
+     * @param startOffset
+     * @param length
+     * @return
+     */
+    String decode(ByteBuffer buffer, int startOffset, int length) {
+        if (isAscii(buffer, startOffset, length)) {
+            if (buffer.hasArray()) {
+                return ascii(buffer.array(), buffer.arrayOffset() + startOffset, length);
+            }
+
+            if (bytes.length < length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            view(buffer, startOffset, length).get(bytes, 0, length);
+            return ascii(bytes, 0, length);
+        }
+
+        if (chars.capacity() < length) {
+            chars = CharBuffer.allocate(Math.max(length, chars.capacity() * 2));
+        }
+
+        // JL UTF-8 never needs more chars than bytes so a single pass fills the output.
+        chars.clear();
+        charsetDecoder.reset();
+        charsetDecoder.decode(view(buffer, startOffset, length), chars, true);
+        charsetDecoder.flush(chars);
+        return new String(chars.array(), 0, chars.position());
+    }
+
+    /**
+     * Returns the str payload as a {@link CharSequence}, without creating a {@link String} if it is ASCII. An ASCII
+     * payload is returned as a view over {@code buffer} that is reused for the next payload, so it is only valid
+     * until this method is called again.
+     *
+     * @param buffer
+     * @param startOffset
+     * @param length
+     * @return
+     */
+    CharSequence charSequence(ByteBuffer buffer, int startOffset, int length) {
+        if (isAscii(buffer, startOffset, length)) {
+            asciiSequence.wrap(buffer, startOffset, length);
+            return asciiSequence;
+        }
+        return decode(buffer, startOffset, length);
+    }
+
+    /**
+     * Indicates whether the {@code length} bytes starting at {@code startOffset} in {@code buffer} are all ASCII,
+     * checking eight bytes at a time.
+     *
+     * @param buffer
+     * @param startOffset
+     * @param length
+     * @return
+     */
+    static boolean isAscii(ByteBuffer buffer, int startOffset, int length) {
+        int offset = startOffset;
+        int limit = startOffset + length;
+        for (; offset + 8 <= limit; offset += 8) {
+            if ((buffer.getLong(offset) & NON_ASCII_BITS) != 0) {
+                return false;
+            }
+        }
+        for (; offset < limit; offset++) {
+            if (buffer.get(offset) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates a {@link String} from bytes that are known to be ASCII.
+     *
+     * @param bytes
+     * @param offset
+     * @param length
+     * @return
+     */
+    @SuppressWarnings("deprecation")
+    static String ascii(byte[] bytes, int offset, int length) {
+        // JL the high byte constructor copies the bytes as they are, without running a decoder.
+        return new String(bytes, 0, offset, length);
+    }
+
+    /**
+     * Returns the reused view over {@code buffer}, positioned over the {@code length} bytes at {@code startOffset}.
+     *
+     * @param buffer
+     * @param startOffset
+     * @param length
+     * @return
+     */
+    private ByteBuffer view(ByteBuffer buffer, int startOffset, int length) {
+        if (buffer != source) {
+            source = buffer;
+            sourceView = buffer.duplicate();
+        }
+
+        sourceView.clear();
+        sourceView.position(startOffset).limit(startOffset + length);
+        return sourceView;
+    }
+
+    /**
+     * {@link CharSequence} over the ASCII bytes of a str payload. {@link AsciiSequence#hashCode()} agrees with
+     * {@link String#hashCode()} and {@link AsciiSequence#equals(Object)} compares the content of any
+     * {@link CharSequence}, so a sequence can be used to look up a {@link java.util.HashMap} with {@link String}
+     * keys. The converse does not hold - {@link String#equals(Object)} is never {@code true} for a sequence.
+     */
+    static final class AsciiSequence implements CharSequence {
+        private ByteBuffer buffer;
+        private int offset;
+        private int length;
+
+        void wrap(ByteBuffer buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("index = " + index + ", length = " + length);
+            }
+            return (char) buffer.get(offset + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 0;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + buffer.get(offset + i);
+            }
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CharSequence)) {
+                return false;
+            }
+
+            CharSequence that = (CharSequence) o;
+            if (that.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (that.charAt(i) != buffer.get(offset + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            if (buffer.hasArray()) {
+                return ascii(buffer.array(), buffer.arrayOffset() + offset, length);
+            }
+
+            return ascii(WireFormatFactory.RawWireFormat.raw(buffer, offset, length), 0, length);
+        }
+    }
+}
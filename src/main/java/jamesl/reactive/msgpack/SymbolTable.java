@@ -0,0 +1,194 @@
+package jamesl.reactive.msgpack;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Immutable table of the key names a parser expects, each identified by its position in the table. Lookups hash
+ * the UTF-8 bytes of a str payload in place in the input buffer, probe a single slot of a table whose hash is
+ * chosen when the table is built so that no two names collide, and compare the bytes of the one candidate. A
+ * lookup never allocates, see {@link ElementParser#symbolTable()}.
+ *
+ * Instances are thread safe and are meant to be built once, e.g. when an {@link ElementParserFactory} is created,
+ * and shared by every chain the factory creates.
+ */
+public final class SymbolTable {
+    public static final int NOT_FOUND = -1;
+    private static final int MAX_SIZE = 1 << 16;
+    private static final int MAX_CAPACITY = 1 << 24;
+    private static final int SEEDS_PER_CAPACITY = 32;
+    private final String[] names;
+    private final byte[][] keys;
+    private final int maxLength;
+    private final int multiplier;
+    private final int mask;
+    private final int[] ids;
+
+    private SymbolTable(String[] names) {
+        if (names.length > MAX_SIZE) {
+            throw new IllegalArgumentException("symbol tables must not hold more than " + MAX_SIZE + " names - size = " + names.length);
+        }
+
+        this.names = names;
+        this.keys = new byte[names.length][];
+        int maxLength = 0;
+        for (int i = 0; i < names.length; i++) {
+            if (names[i] == null) {
+                throw new IllegalArgumentException("names must not be null - index = " + i);
+            }
+
+            keys[i] = names[i].getBytes(StandardCharsets.UTF_8);
+            maxLength = Math.max(maxLength, keys[i].length);
+        }
+        this.maxLength = maxLength;
+
+        // JL search for a multiplier that places every name in its own slot, growing the table until one is found.
+        int[] ids = null;
+        int multiplier = 0;
+        search:
+        for (int capacity = Integer.highestOneBit(Math.max(2 * names.length, 2) - 1) << 1; capacity <= MAX_CAPACITY; capacity <<= 1) {
+            for (int seed = 0; seed < SEEDS_PER_CAPACITY; seed++) {
+                multiplier = 31 + 2 * seed;
+                ids = place(keys, multiplier, capacity - 1);
+                if (ids != null) {
+                    break search;
+                }
+            }
+        }
+
+        if (ids == null) {
+            throw new IllegalArgumentException("failed to build a collision free table - names = " + Arrays.toString(names));
+        }
+
+        this.multiplier = multiplier;
+        this.mask = ids.length - 1;
+        this.ids = ids;
+    }
+
+    /**
+     * Returns a table of {@code names}, the id of each name being its index.
+     *
+     * @param names
+     * @return
+     */
+    public static SymbolTable of(String... names) {
+        return new SymbolTable(names.clone());
+    }
+
+    /**
+     * Returns a table of {@code names}, the id of each name being its index.
+     *
+     * @param names
+     * @return
+     */
+    public static SymbolTable of(List<String> names) {
+        return new SymbolTable(names.toArray(new String[0]));
+    }
+
+    /**
+     * Returns the id of the name whose UTF-8 encoding is the {@code length} bytes starting at {@code startOffset}
+     * in {@code buffer}, or {@link SymbolTable#NOT_FOUND}.
+     *
+     * @param buffer
+     * @param startOffset
+     * @param length
+     * @return
+     */
+    public int lookup(ByteBuffer buffer, int startOffset, int length) {
+        if (length > maxLength) {
+            return NOT_FOUND;
+        }
+
+        int id = ids[index(hash(buffer, startOffset, length, multiplier), mask)];
+        return id != NOT_FOUND && equals(keys[id], buffer, startOffset, length) ? id : NOT_FOUND;
+    }
+
+    /**
+     * Returns the id of {@code name}, or {@link SymbolTable#NOT_FOUND}.
+     *
+     * @param name
+     * @return
+     */
+    public int id(String name) {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        return lookup(ByteBuffer.wrap(key), 0, key.length);
+    }
+
+    /**
+     * Returns the name with the id {@code symbolId}.
+     *
+     * @param symbolId
+     * @return
+     */
+    public String name(int symbolId) {
+        return names[symbolId];
+    }
+
+    /**
+     * Returns the number of names in the table.
+     *
+     * @return
+     */
+    public int size() {
+        return names.length;
+    }
+
+    @Override
+    public String toString() {
+        return "SymbolTable{names=" + Arrays.toString(names) + ", capacity=" + (mask + 1) + "}";
+    }
+
+    /**
+     * Returns the id in each slot of a table of {@code mask + 1} slots, or {@code null} if two names collide.
+     *
+     * @param keys
+     * @param multiplier
+     * @param mask
+     * @return
+     */
+    private static int[] place(byte[][] keys, int multiplier, int mask) {
+        int[] ids = new int[mask + 1];
+        Arrays.fill(ids, NOT_FOUND);
+        for (int i = 0; i < keys.length; i++) {
+            int index = index(hash(ByteBuffer.wrap(keys[i]), 0, keys[i].length, multiplier), mask);
+            if (ids[index] != NOT_FOUND) {
+                if (Arrays.equals(keys[ids[index]], keys[i])) {
+                    throw new IllegalArgumentException("names must be unique - name = " + new String(keys[i], StandardCharsets.UTF_8));
+                }
+                return null;
+            }
+            ids[index] = i;
+        }
+        return ids;
+    }
+
+    private static int hash(ByteBuffer buffer, int startOffset, int length, int multiplier) {
+        int hash = length;
+        for (int i = startOffset, limit = startOffset + length; i < limit; i++) {
+            hash = multiplier * hash + buffer.get(i);
+        }
+        return hash * 0x9e3779b9;
+    }
+
+    private static int index(int hash, int mask) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static boolean equals(byte[] key, ByteBuffer buffer, int startOffset, int length) {
+        if (key.length != length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (key[i] != buffer.get(startOffset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
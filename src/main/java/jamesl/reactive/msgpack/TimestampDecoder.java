@@ -0,0 +1,57 @@
+package jamesl.reactive.msgpack;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * {@link ExtensionDecoder} for the timestamp extension type, which reads the seconds and nanoseconds of the
+ * 32, 64 and 96 bit formats straight from the input. Payloads of any other length are not timestamps and are
+ * passed to {@link ElementParser#onExtension(byte, ByteBuffer)} as they are, as are all timestamps for parsers
+ * that do not override {@link ElementParser#onTimestamp(long, int)}.
+ *
+ * msgpack spec: https://github.com/msgpack/msgpack/blob/master/spec.md#timestamp-extension-type
+ */
+final class TimestampDecoder implements ExtensionDecoder {
+    static final TimestampDecoder INSTANCE = new TimestampDecoder();
+    // JL whether a parser class overrides onTimestamp, looked up once per class rather than per timestamp.
+    private static final ClassValue<Boolean> HANDLES_TIMESTAMPS = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return type.getMethod("onTimestamp", long.class, int.class).getDeclaringClass() != ElementParser.class;
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException("ElementParser#onTimestamp not found - type = " + type, e);
+            }
+        }
+    };
+
+    private TimestampDecoder() {
+    }
+
+    @Override
+    public <T> ElementParser<T> decode(byte type, ByteBuffer buffer, int startOffset, int length, ElementParser<T> elementParser) {
+        if (!HANDLES_TIMESTAMPS.get(elementParser.getClass())) {
+            return elementParser.onExtension(type, WireFormatFactory.RawWireFormat.slice(buffer, startOffset, length));
+        }
+
+        switch (length) {
+            case 4:
+                return elementParser.onTimestamp(buffer.getInt(startOffset) & 0xffffffffL, 0);
+            case 8:
+                // JL 30 bits of nanoseconds followed by 34 bits of seconds.
+                long bits = buffer.getLong(startOffset);
+                return elementParser.onTimestamp(bits & 0x3ffffffffL, (int) (bits >>> 34));
+            case 12:
+                return elementParser.onTimestamp(buffer.getLong(startOffset + 4), buffer.getInt(startOffset));
+            default:
+                return elementParser.onExtension(type, WireFormatFactory.RawWireFormat.slice(buffer, startOffset, length));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TimestampDecoder";
+    }
+}
@@ -0,0 +1,403 @@
+package jamesl.reactive.msgpack;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Operators;
+import reactor.core.scheduler.Scheduler;
+import reactor.util.concurrent.QueueSupplier;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * @param <I>
+ * @param <T>
+ * @author jamesl
+ * @since 1.0
+ *
+ * Operator that decodes a stream of input buffers into messages. Input buffers are requested one at a time
+ * and only while the downstream {@link Subscriber} has outstanding demand, elements are decoded one at a
+ * time and messages are emitted as soon as they are produced. All decoding state is held per subscription, and
+ * the {@link StreamDecoder} that holds it is only created when the first input arrives.
+ *
+ * Inputs are exposed as {@link ByteBuffer}s by an {@link InputAdapter} and each input is released as soon as
+ * all of its bytes have been decoded, or when the subscription is cancelled or fails.
+ *
+ * When a {@link Scheduler} is given the subscription is pipelined: inputs are read ahead into a bounded
+ * single-producer/single-consumer queue on the thread that publishes them, up to {@code capacity} at a time, and
+ * are decoded and emitted on a worker of the {@link Scheduler}. The upstream is only asked for more inputs as the
+ * worker takes them off the queue, so a slow parser holds back the reader rather than the reader's thread.
+ */
+final class UnpackSubscriber<I, T> implements Subscriber<I>, Subscription {
+    private static final Logger logger = LoggerFactory.getLogger(UnpackSubscriber.class);
+    private static final AtomicIntegerFieldUpdater<UnpackSubscriber> WIP = AtomicIntegerFieldUpdater.newUpdater(UnpackSubscriber.class, "wip");
+    private static final AtomicLongFieldUpdater<UnpackSubscriber> REQUESTED = AtomicLongFieldUpdater.newUpdater(UnpackSubscriber.class, "requested");
+    private final Subscriber<? super T> actual;
+    private final InputAdapter<? super I> inputAdapter;
+    private final DecoderEngine<T> engine;
+    private StreamDecoder<T> streamDecoder;
+    private final UnpackerListener listener;
+    // JL holds the messages produced by a single element, usually at most one.
+    private final Queue<T> outputQueue;
+    // JL only set when pipelined, in which case inputs are handed over through inputQueue rather than nextInput.
+    private final Scheduler.Worker worker;
+    private final Queue<I> inputQueue;
+    private final int capacity;
+    private final int replenishThreshold;
+    private int inputsTaken;
+    private Subscription subscription;
+    private I input;
+    private ByteBuffer[] inputBuffers;
+    private int inputBufferIndex;
+    private int inputBytes;
+    private long inputDecodeNanos;
+    private boolean inputRequested;
+    private volatile I nextInput;
+    private volatile boolean done;
+    private Throwable error;
+    private volatile boolean cancelled;
+    private volatile int wip;
+    private volatile long requested;
+
+    /**
+     * @param actual
+     * @param engine
+     * @param inputAdapter
+     * @param scheduler    decodes on a worker of {@code scheduler}, or on the calling threads if {@code null}.
+     */
+    UnpackSubscriber(Subscriber<? super T> actual, DecoderEngine<T> engine, InputAdapter<? super I> inputAdapter, Scheduler scheduler) {
+        this.actual = actual;
+        this.engine = engine;
+        this.inputAdapter = inputAdapter;
+        this.outputQueue = new ArrayDeque<>(2);
+        this.listener = engine.listener;
+        this.worker = scheduler == null ? null : scheduler.createWorker();
+        this.capacity = engine.pipelineCapacity;
+        this.inputQueue = scheduler == null ? null : QueueSupplier.<I>get(capacity).get();
+        // JL replenish in batches, as publishOn does, rather than asking the reader for one input at a time.
+        this.replenishThreshold = capacity - (capacity >> 2);
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        if (Operators.validate(subscription, s)) {
+            subscription = s;
+            actual.onSubscribe(this);
+
+            if (inputQueue != null) {
+                s.request(capacity);
+            }
+        }
+    }
+
+    @Override
+    public void onNext(I i) {
+        if (done || cancelled) {
+            inputAdapter.release(i);
+            Operators.onNextDropped(i);
+            return;
+        }
+
+        logger.debug("received input = {}, streamDecoder = {}", i, streamDecoder);
+        if (inputQueue == null) {
+            nextInput = i;
+        } else if (!inputQueue.offer(i)) {
+            inputAdapter.release(i);
+            subscription.cancel();
+            onError(Operators.onOperatorError(new IllegalStateException("input published without demand - capacity = " + capacity)));
+            return;
+        }
+        // JL cancel may have run since the check above and already cleared the queue, drain releases the input if so.
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        if (done) {
+            Operators.onErrorDropped(t);
+            return;
+        }
+
+        error = t;
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        if (done) {
+            return;
+        }
+
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void request(long n) {
+        if (Operators.validate(n)) {
+            Operators.getAndAddCap(REQUESTED, this, n);
+            drain();
+        }
+    }
+
+    @Override
+    public void cancel() {
+        if (!cancelled) {
+            cancelled = true;
+            subscription.cancel();
+
+            if (WIP.getAndIncrement(this) == 0) {
+                clearCancelled(1);
+            }
+        }
+    }
+
+    /**
+     * Runs {@link UnpackSubscriber#drainLoop()} on the worker, if there is one, or on the calling thread unless another
+     * thread is already draining.
+     */
+    private void drain() {
+        if (WIP.getAndIncrement(this) != 0) {
+            return;
+        }
+
+        if (cancelled) {
+            clearCancelled(1);
+        } else if (worker == null) {
+            drainLoop();
+        } else if (worker.schedule(this::drainLoop) == Scheduler.REJECTED) {
+            cancelled = true;
+            subscription.cancel();
+            clearCancelled(1);
+            actual.onError(Operators.onOperatorError(new IllegalStateException("scheduler rejected the decode task - worker = " + worker)));
+        }
+    }
+
+    /**
+     * Emits queued messages, decodes elements and requests input for as long as there is demand.
+     */
+    private void drainLoop() {
+        int missed = 1;
+
+        for (; ; ) {
+            long r = requested;
+            long e = 0L;
+
+            for (; ; ) {
+                if (cancelled) {
+                    clearCancelled(missed);
+                    return;
+                }
+
+                if (done && error != null) {
+                    clear();
+                    actual.onError(error);
+                    return;
+                }
+
+                if (!outputQueue.isEmpty()) {
+                    if (e == r) {
+                        break;
+                    }
+
+                    actual.onNext(outputQueue.poll());
+                    e++;
+                    continue;
+                }
+
+                if (input == null) {
+                    // JL read done before polling so that an input queued just before completion is not missed.
+                    boolean d = done;
+                    I i = pollInput();
+                    if (i == null) {
+                        if (d) {
+                            if (streamDecoder != null && streamDecoder.hasSplitFrame()) {
+                                logger.debug("input completed with incomplete frame - streamDecoder = {}", streamDecoder);
+                            }
+
+                            shutdownWorker();
+                            actual.onComplete();
+                            return;
+                        }
+
+                        if (e == r || inputRequested || inputQueue != null) {
+                            break;
+                        }
+
+                        inputRequested = true;
+                        subscription.request(1);
+                        continue;
+                    }
+
+                    if (streamDecoder == null) {
+                        streamDecoder = engine.newStream(listener == null ? outputQueue::offer : this::offer);
+                    }
+
+                    input = i;
+                    inputBuffers = inputAdapter.nioBuffers(input);
+                    inputBufferIndex = 0;
+                    if (listener != null) {
+                        inputBytes = remaining(inputBuffers);
+                        inputDecodeNanos = 0;
+                    }
+                    inputRequested = false;
+                }
+
+                ByteBuffer inputBuffer = inputBuffer();
+                if (inputBuffer != null) {
+                    if (e == r) {
+                        break;
+                    }
+
+                    try {
+                        if (listener == null) {
+                            streamDecoder.decodeElement(inputBuffer);
+                        } else {
+                            long start = System.nanoTime();
+                            streamDecoder.decodeElement(inputBuffer);
+                            inputDecodeNanos += System.nanoTime() - start;
+                        }
+                    } catch (Throwable t) {
+                        cancelled = true;
+                        subscription.cancel();
+                        clear();
+                        actual.onError(Operators.onOperatorError(t));
+                        return;
+                    }
+                    continue;
+                }
+
+                logger.debug("consumed input = {}, streamDecoder = {}", input, streamDecoder);
+                if (listener != null) {
+                    listener.onInput(inputBytes, inputDecodeNanos);
+                }
+                releaseInput();
+            }
+
+            if (e != 0L && r != Long.MAX_VALUE) {
+                REQUESTED.addAndGet(this, -e);
+            }
+
+            missed = WIP.addAndGet(this, -missed);
+            if (missed == 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Takes the next input off the queue, asking the upstream for another batch once enough have been taken, or
+     * takes the single requested input when not pipelined.
+     *
+     * @return the next input, or {@code null} if none has arrived.
+     */
+    private I pollInput() {
+        if (inputQueue == null) {
+            I i = nextInput;
+            nextInput = null;
+            return i;
+        }
+
+        I i = inputQueue.poll();
+        if (i != null && ++inputsTaken == replenishThreshold) {
+            inputsTaken = 0;
+            subscription.request(replenishThreshold);
+        }
+        return i;
+    }
+
+    /**
+     * Returns the first view of the current input that has bytes remaining, or {@code null} once it has been
+     * fully decoded.
+     *
+     * @return
+     */
+    private ByteBuffer inputBuffer() {
+        while (inputBufferIndex < inputBuffers.length) {
+            ByteBuffer inputBuffer = inputBuffers[inputBufferIndex];
+            if (inputBuffer.hasRemaining()) {
+                return inputBuffer;
+            }
+            inputBufferIndex++;
+        }
+        return null;
+    }
+
+    /**
+     * Queues a message produced by the {@link StreamDecoder} and reports it to the {@link UnpackerListener}.
+     *
+     * @param output
+     */
+    private void offer(T output) {
+        outputQueue.offer(output);
+        listener.onMessage(outputQueue.size());
+    }
+
+    private static int remaining(ByteBuffer[] buffers) {
+        int remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        return remaining;
+    }
+
+    private void releaseInput() {
+        I i = input;
+        input = null;
+        inputBuffers = null;
+        inputAdapter.release(i);
+    }
+
+    /**
+     * Releases any state held by a cancelled subscription, again for as long as other threads signal while doing so,
+     * e.g. {@link UnpackSubscriber#onNext(Object)} queueing an input after the queue was cleared. The caller must own
+     * {@code missed} counts of the work in progress counter.
+     *
+     * @param missed
+     */
+    private void clearCancelled(int missed) {
+        for (; ; ) {
+            clear();
+
+            missed = WIP.addAndGet(this, -missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Releases any state held by this subscription.
+     */
+    private void clear() {
+        outputQueue.clear();
+        if (input != null) {
+            releaseInput();
+        }
+
+        I i = nextInput;
+        if (i != null) {
+            nextInput = null;
+            inputAdapter.release(i);
+        }
+
+        if (inputQueue != null) {
+            while ((i = inputQueue.poll()) != null) {
+                inputAdapter.release(i);
+            }
+        }
+        shutdownWorker();
+    }
+
+    private void shutdownWorker() {
+        if (worker != null) {
+            worker.shutdown();
+        }
+    }
+}
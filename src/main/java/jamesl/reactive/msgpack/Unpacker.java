@@ -4,15 +4,32 @@ import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
+import java.util.function.Function;
 
 /**
  * @param <T>
  * @author jamesl
  * @since 1.0
+ *
+ * Decodes streams of msgpack into messages. An instance is immutable once constructed and may be shared by any
+ * number of streams and threads, e.g. one per application rather than one per connection: the wire format tables
+ * are static, the {@link ElementParserFactory} and a snapshot of the {@link UnpackerOptions} are shared by every
+ * stream, and each subscription to a returned {@link Flux} holds its own small decoding state, created when its first
+ * input arrives. The {@link ElementParserFactory} must therefore be safe to call from several threads, although each
+ * chain of {@link ElementParser}s it creates is only used by one stream at a time.
+ *
+ * The exception is {@link Unpacker#unpack(ByteBuffer)}, which decodes every call as part of a single stream owned by
+ * this instance.
  */
 public class Unpacker<T> {
     private static final Logger logger = LoggerFactory.getLogger(Unpacker.class);
@@ -26,134 +43,206 @@ public class Unpacker<T> {
         }
     }
 
-    private static final int MAX_UNKNOWN_FRAME_LENGTH = 5;
-    private ElementParser<T> elementParser;
-    private final Queue<T> outputQueue;
-    private ByteBuffer splitFrameBuffer;
+    private final DecoderEngine<T> engine;
+    // JL the single stream of unpack(ByteBuffer), created on first use and guarded by this.
+    private Queue<T> outputQueue;
+    private StreamDecoder<T> streamDecoder;
 
     public Unpacker(ElementParserFactory<T> elementParserFactory) {
-        this.outputQueue = new ArrayDeque<>();
-        this.elementParser = elementParserFactory.firstElementParser(output -> outputQueue.offer(output));
+        this(elementParserFactory, new UnpackerOptions());
     }
 
-    public Publisher<T> unpack(ByteBuffer input) {
-        return Flux.create(sink -> {
-            logger.debug("received input = {}, splitFrameBuffer = {}", input, splitFrameBuffer);
+    public Unpacker(ElementParserFactory<T> elementParserFactory, UnpackerOptions options) {
+        this.engine = new DecoderEngine<>(elementParserFactory, options);
+    }
 
-            if (splitFrameBuffer != null) {
-                completeSplitFrame(input);
-            }
+    private Unpacker(DecoderEngine<T> engine) {
+        this.engine = engine;
+    }
 
-            while (input.hasRemaining()) {
-                int startOfFrame = input.position();
-                int numberOfBytesInFrame = determineNumberOfBytesInFrame(input, startOfFrame, input.limit());
+    /**
+     * Returns an unpacker that shares this one's {@link ElementParserFactory} and options but only decodes the top
+     * level values that match {@code messageFilter}, as well as any filter this one already applies, e.g.
+     * {@code unpacker.filter(KeyPath.of("type").equalTo("trade")).unpack(input)}. Each value is found by a structural
+     * scan and tested before any of its elements reach an {@link ElementParser}, the values that do not match are
+     * passed over by their length. A value that spans input buffers is held, up to
+     * {@link UnpackerOptions#maxBufferedBytes(int)} bytes, until it is complete.
+     *
+     * Filtering is by top level value, so it suits streams whose messages are each a single map or array.
+     *
+     * @param messageFilter
+     * @return
+     */
+    public Unpacker<T> filter(MessageFilter messageFilter) {
+        return new Unpacker<>(engine.filter(messageFilter));
+    }
 
-                if (numberOfBytesInFrame == WireFormat.UNKNOWN_FRAME_LENGTH || input.remaining() < numberOfBytesInFrame) {
-                    splitFrameBuffer = ByteBuffer.allocate(numberOfBytesInFrame == WireFormat.UNKNOWN_FRAME_LENGTH ? MAX_UNKNOWN_FRAME_LENGTH : numberOfBytesInFrame);
-                    splitFrameBuffer.put(copyBuffer(input));
-                    logger.trace("split frame detected - splitFrameBuffer = {}", splitFrameBuffer);
-                    break;
+    /**
+     * Decodes {@code input} as the next buffer in a single stream shared by every call to this method, the
+     * whole buffer is decoded before any messages are emitted. Decoding is serialised on this instance, the messages
+     * are emitted after its lock is released. Prefer
+     * {@link Unpacker#unpack(Publisher)} which honours downstream demand and holds its state per subscription.
+     *
+     * @param input
+     * @return
+     */
+    public Publisher<T> unpack(ByteBuffer input) {
+        return Flux.create(sink -> {
+            // JL decode under the lock but emit after releasing it, so downstream never runs while holding it.
+            List<T> outputs;
+            synchronized (this) {
+                if (streamDecoder == null) {
+                    Queue<T> queue = new ArrayDeque<>();
+                    outputQueue = queue;
+                    streamDecoder = engine.newStream(output -> {
+                        queue.offer(output);
+                        if (engine.listener != null) {
+                            engine.listener.onMessage(queue.size());
+                        }
+                    });
                 }
 
-                elementParser = parseElement(input, startOfFrame);
-                input.position(startOfFrame + numberOfBytesInFrame);
-            }
+                logger.debug("received input = {}, streamDecoder = {}", input, streamDecoder);
+                streamDecoder.decode(input);
+                logger.debug("consumed input = {}, streamDecoder = {}, outputQueue = {}", input, streamDecoder, outputQueue.size());
 
-            logger.debug("consumed input = {}, splitFrameBuffer = {}, outputQueue = {}", input, splitFrameBuffer, outputQueue.size());
+                outputs = new ArrayList<>(outputQueue);
+                outputQueue.clear();
+            }
 
-            T output;
-            while ((output = outputQueue.poll()) != null) {
+            for (T output : outputs) {
                 sink.next(output);
             }
-
             sink.complete();
         });
     }
 
     /**
-     * @param sourceBuffer
+     * Decodes the stream of buffers published by {@code input}. Buffers are requested one at a time as
+     * downstream demand allows and messages are emitted as soon as they are decoded. Each subscription
+     * decodes its own stream using a new chain of {@link ElementParser}s.
+     *
+     * @param input
      * @return
      */
-    private ByteBuffer copyBuffer(ByteBuffer sourceBuffer) {
-        ByteBuffer slice = sourceBuffer.slice();
-        ByteBuffer copyBuffer = ByteBuffer.allocate(slice.limit()).put(slice.asReadOnlyBuffer());
-
-        copyBuffer.flip();
-        return copyBuffer;
+    public Flux<T> unpack(Publisher<ByteBuffer> input) {
+        return unpack(input, InputAdapter.byteBuffers());
     }
 
     /**
-     * @param inputBuffer
+     * Decodes the stream of inputs published by {@code input}, as {@link Unpacker#unpack(Publisher)} does, reading
+     * each input in place through the views returned by {@code inputAdapter}. Each input is released by
+     * {@code inputAdapter} as soon as it has been decoded, or when the stream is cancelled or fails.
+     *
+     * @param input
+     * @param inputAdapter
+     * @param <I>
+     * @return
      */
-    private void completeSplitFrame(ByteBuffer inputBuffer) {
-        if (attemptToDetermineSplitFrameLength(inputBuffer)) {
-            logger.trace("splitFrameBuffer = {}", splitFrameBuffer);
+    public <I> Flux<T> unpack(Publisher<I> input, InputAdapter<? super I> inputAdapter) {
+        return Flux.from(subscriber -> input.subscribe(new UnpackSubscriber<I, T>(subscriber, engine, inputAdapter, null)));
+    }
 
-            while (splitFrameBuffer.hasRemaining() && inputBuffer.hasRemaining()) {
-                splitFrameBuffer.put(inputBuffer.get());
-            }
+    /**
+     * Decodes the stream of buffers published by {@code input} on a worker of {@code scheduler}, e.g.
+     * {@link Schedulers#newSingle(String)} for a dedicated decode thread, see
+     * {@link Unpacker#unpackOn(Publisher, InputAdapter, Scheduler)}.
+     *
+     * @param input
+     * @param scheduler
+     * @return
+     */
+    public Flux<T> unpackOn(Publisher<ByteBuffer> input, Scheduler scheduler) {
+        return unpackOn(input, InputAdapter.byteBuffers(), scheduler);
+    }
 
-            if (!splitFrameBuffer.hasRemaining()) {
-                logger.trace("split frame complete - splitFrameBuffer = {}", splitFrameBuffer);
-                elementParser = parseElement(splitFrameBuffer, 0);
-                splitFrameBuffer = null;
-            }
-        }
+    /**
+     * Decodes the stream of inputs published by {@code input}, as {@link Unpacker#unpack(Publisher, InputAdapter)}
+     * does, but on a worker of {@code scheduler} rather than on the thread that publishes the inputs. The publishing
+     * thread only hands each input over through a bounded single-producer/single-consumer queue, so reading and
+     * decoding overlap. Up to {@link UnpackerOptions#pipelineCapacity(int)} inputs are read ahead of the decoder, more
+     * are only requested as the decoder catches up, and messages are emitted on the worker. Inputs must therefore
+     * stay valid until they are released by {@code inputAdapter}.
+     *
+     * @param input
+     * @param inputAdapter
+     * @param scheduler
+     * @param <I>
+     * @return
+     */
+    public <I> Flux<T> unpackOn(Publisher<I> input, InputAdapter<? super I> inputAdapter, Scheduler scheduler) {
+        return Flux.from(subscriber -> input.subscribe(new UnpackSubscriber<I, T>(subscriber, engine, inputAdapter, scheduler)));
     }
 
     /**
-     * Attempts to determine the length of the current split frame.
+     * Decodes the file at {@code path}, which is mapped into memory a window at a time by {@link MappedFileSource}
+     * as downstream demand allows.
      *
-     * @param inputBuffer
+     * @param path
      * @return
      */
-    private boolean attemptToDetermineSplitFrameLength(ByteBuffer inputBuffer) {
-        int numberOfBytesInFrame = determineNumberOfBytesInFrame(splitFrameBuffer, 0, splitFrameBuffer.position());
+    public Flux<T> unpack(Path path) {
+        return unpack(MappedFileSource.map(path));
+    }
 
-        if (numberOfBytesInFrame != WireFormat.UNKNOWN_FRAME_LENGTH) {
-            return true;
+    /**
+     * Decodes the remaining bytes of {@code input} on {@link Schedulers#parallel()}. Message boundaries are
+     * found by a structural scan, every {@code valuesPerMessage} top level values being one message, and
+     * batches of whole messages are then decoded concurrently, each by a new chain of {@link ElementParser}s.
+     * The chain must therefore return to its first state after each message. Messages are emitted in input
+     * order unless {@link UnpackerOptions#preserveOrder(boolean)} is disabled.
+     *
+     * @param input
+     * @param valuesPerMessage
+     * @return
+     */
+    public Flux<T> unpackParallel(ByteBuffer input, int valuesPerMessage) {
+        if (valuesPerMessage < 1) {
+            throw new IllegalArgumentException("valuesPerMessage must be positive - valuesPerMessage = " + valuesPerMessage);
         }
 
-        while (inputBuffer.hasRemaining()) {
-            splitFrameBuffer.put(inputBuffer.get());
-            numberOfBytesInFrame = determineNumberOfBytesInFrame(splitFrameBuffer, 0, splitFrameBuffer.position());
-            logger.trace("attempting to determine split frame length - numberOfBytesInFrame = {}, splitFrameBuffer = {}", numberOfBytesInFrame, splitFrameBuffer);
+        Scheduler scheduler = Schedulers.parallel();
+        int parallelism = Runtime.getRuntime().availableProcessors();
 
-            if (numberOfBytesInFrame != WireFormat.UNKNOWN_FRAME_LENGTH) {
-                ByteBuffer copy = splitFrameBuffer;
-                copy.flip();
+        return Flux.defer(() -> {
+            List<ByteBuffer> batches = FrameScanner.batches(input.duplicate(), valuesPerMessage, engine.parallelBatchSize);
+            logger.debug("indexed input = {}, batches = {}", input, batches.size());
 
-                splitFrameBuffer = ByteBuffer.allocate(numberOfBytesInFrame).put(copy);
-                logger.trace("expanding split frame inputBuffer - numberOfBytesInFrame = {}, splitFrameBuffer = {}", numberOfBytesInFrame, splitFrameBuffer);
-                return true;
+            if (engine.preserveOrder) {
+                return Flux.fromIterable(batches)
+                        .flatMapSequential(batch -> Mono.fromCallable(() -> decodeBatch(batch)).subscribeOn(scheduler), parallelism)
+                        .flatMapIterable(Function.identity());
+            } else {
+                return Flux.fromIterable(batches)
+                        .parallel(parallelism)
+                        .runOn(scheduler)
+                        .map(this::decodeBatch)
+                        .sequential()
+                        .flatMapIterable(Function.identity());
             }
-        }
-
-        return false;
+        });
     }
 
     /**
-     * Attempts to determine the number of bytes in the next frame.
+     * Decodes a batch of whole messages with a new chain of {@link ElementParser}s.
      *
-     * @param buffer
-     * @param startOffset
-     * @param limit
+     * @param batch
      * @return
      */
-    private int determineNumberOfBytesInFrame(ByteBuffer buffer, int startOffset, int limit) {
-        return wireFormat(buffer.get(startOffset)).numberOfBytesInFrame(buffer, startOffset, limit);
-    }
+    private List<T> decodeBatch(ByteBuffer batch) {
+        List<T> outputs = new ArrayList<>();
+        StreamDecoder<T> batchDecoder = engine.newStream(output -> {
+            outputs.add(output);
+            if (engine.listener != null) {
+                engine.listener.onMessage(outputs.size());
+            }
+        });
+        batchDecoder.decode(batch);
 
-    /**
-     * Parses the "element" starting at {@code startOffset} in {@code buffer} and returns
-     * an {@link ElementParser} for the next element.
-     *
-     * @param buffer
-     * @param startOffset
-     * @return
-     */
-    private ElementParser<T> parseElement(ByteBuffer buffer, int startOffset) {
-        return wireFormat(buffer.get(startOffset)).parseElement(buffer, startOffset, elementParser);
+        if (batchDecoder.hasSplitFrame()) {
+            logger.debug("batch ended with incomplete frame - streamDecoder = {}", batchDecoder);
+        }
+        return outputs;
     }
 
     /**
@@ -162,7 +251,7 @@ public class Unpacker<T> {
      * @param head
      * @return
      */
-    private WireFormat wireFormat(byte head) {
+    static WireFormat wireFormat(byte head) {
         return wireFormats[head & 0xff];
     }
 }
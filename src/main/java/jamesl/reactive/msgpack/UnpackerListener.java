@@ -0,0 +1,62 @@
+package jamesl.reactive.msgpack;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Receives instrumentation events from {@link Unpacker}, see {@link UnpackerOptions#listener(UnpackerListener)}.
+ * Events are raised on the decoding thread of each stream, so a listener shared by several streams must be
+ * thread safe and should be cheap. {@link UnpackerMetrics} is a ready made implementation.
+ */
+public interface UnpackerListener {
+    /**
+     * Invoked for each frame that is decoded, streamed or skipped.
+     *
+     * @param head the first byte of the frame, which identifies its {@link WireFormat}.
+     */
+    default void onElement(byte head) {
+    }
+
+    /**
+     * Invoked when a frame that was split across input buffers has been reassembled.
+     *
+     * @param numberOfBytesBuffered
+     */
+    default void onSplitFrame(int numberOfBytesBuffered) {
+    }
+
+    /**
+     * Invoked once every byte of an input has been decoded.
+     *
+     * @param numberOfBytes
+     * @param decodeNanos the time spent decoding the input, excluding any time spent waiting for demand.
+     */
+    default void onInput(int numberOfBytes, long decodeNanos) {
+    }
+
+    /**
+     * Invoked when a message has been produced.
+     *
+     * @param outputQueueSize the number of messages waiting to be emitted, including this one.
+     */
+    default void onMessage(int outputQueueSize) {
+    }
+
+    /**
+     * Invoked when a frame exceeds a decoding limit and the stream resyncs, see
+     * {@link UnpackerOptions#resyncOnLimitExceeded(boolean)}.
+     *
+     * @param e
+     */
+    default void onLimitExceeded(LimitExceededException e) {
+    }
+
+    /**
+     * Invoked when a top level value that does not match the {@link MessageFilter} of the stream is passed over,
+     * see {@link Unpacker#filter(MessageFilter)}.
+     *
+     * @param numberOfBytes the number of bytes in the value.
+     */
+    default void onMessageFiltered(int numberOfBytes) {
+    }
+}
@@ -0,0 +1,175 @@
+package jamesl.reactive.msgpack;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Thread safe {@link UnpackerListener} that counts what the {@link Unpacker} does, so that it can be shared by
+ * every stream of an {@link Unpacker} and periodically read by a metrics reporter.
+ */
+public class UnpackerMetrics implements UnpackerListener {
+    private static final String[] wireFormatNames = new String[256];
+
+    static {
+        WireFormatFactory wireFormatFactory = new WireFormatFactory();
+        for (int i = 0; i < wireFormatNames.length; i++) {
+            wireFormatNames[i] = wireFormatFactory.newWireFormat((byte) i).getClass().getSimpleName();
+        }
+    }
+
+    private final AtomicLongArray elements = new AtomicLongArray(256);
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder inputs = new LongAdder();
+    private final LongAdder splitFrames = new LongAdder();
+    private final LongAdder splitFrameBytes = new LongAdder();
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder limitsExceeded = new LongAdder();
+    private final LongAdder messagesFiltered = new LongAdder();
+    private final AtomicInteger outputQueueHighWaterMark = new AtomicInteger();
+    private final LatencyHistogram inputDecodeNanos = new LatencyHistogram();
+
+    @Override
+    public void onElement(byte head) {
+        elements.incrementAndGet(head & 0xff);
+    }
+
+    @Override
+    public void onSplitFrame(int numberOfBytesBuffered) {
+        splitFrames.increment();
+        splitFrameBytes.add(numberOfBytesBuffered);
+    }
+
+    @Override
+    public void onInput(int numberOfBytes, long decodeNanos) {
+        inputs.increment();
+        bytes.add(numberOfBytes);
+        inputDecodeNanos.record(decodeNanos);
+    }
+
+    @Override
+    public void onMessage(int outputQueueSize) {
+        messages.increment();
+        if (outputQueueSize > outputQueueHighWaterMark.get()) {
+            outputQueueHighWaterMark.accumulateAndGet(outputQueueSize, Math::max);
+        }
+    }
+
+    @Override
+    public void onLimitExceeded(LimitExceededException e) {
+        limitsExceeded.increment();
+    }
+
+    @Override
+    public void onMessageFiltered(int numberOfBytes) {
+        messagesFiltered.increment();
+    }
+
+    /**
+     * Returns the number of elements decoded for each {@link WireFormat}, keyed by its name, e.g. "FixStr".
+     *
+     * @return
+     */
+    public Map<String, Long> elementsByWireFormat() {
+        Map<String, Long> elementsByWireFormat = new TreeMap<>();
+        for (int head = 0; head < 256; head++) {
+            long count = elements.get(head);
+            if (count > 0) {
+                elementsByWireFormat.merge(wireFormatNames[head], count, Long::sum);
+            }
+        }
+        return elementsByWireFormat;
+    }
+
+    /**
+     * Returns the number of elements decoded.
+     *
+     * @return
+     */
+    public long elements() {
+        long count = 0;
+        for (int head = 0; head < 256; head++) {
+            count += elements.get(head);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of bytes in inputs that have been fully decoded.
+     *
+     * @return
+     */
+    public long bytes() {
+        return bytes.sum();
+    }
+
+    public long inputs() {
+        return inputs.sum();
+    }
+
+    public long splitFrames() {
+        return splitFrames.sum();
+    }
+
+    /**
+     * Returns the total number of bytes buffered to reassemble split frames.
+     *
+     * @return
+     */
+    public long splitFrameBytes() {
+        return splitFrameBytes.sum();
+    }
+
+    public long messages() {
+        return messages.sum();
+    }
+
+    /**
+     * Returns the number of times a stream resynced after a frame exceeded a decoding limit.
+     *
+     * @return
+     */
+    public long limitsExceeded() {
+        return limitsExceeded.sum();
+    }
+
+    /**
+     * Returns the number of top level values that were passed over because they did not match a
+     * {@link MessageFilter}.
+     *
+     * @return
+     */
+    public long messagesFiltered() {
+        return messagesFiltered.sum();
+    }
+
+    /**
+     * Returns the largest number of messages that have been waiting to be emitted by any one stream.
+     *
+     * @return
+     */
+    public int outputQueueHighWaterMark() {
+        return outputQueueHighWaterMark.get();
+    }
+
+    /**
+     * Returns the distribution of the time, in nanoseconds, spent decoding each input.
+     *
+     * @return
+     */
+    public LatencyHistogram inputDecodeNanos() {
+        return inputDecodeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "UnpackerMetrics{elements=" + elements() + ", bytes=" + bytes() + ", inputs=" + inputs() + ", splitFrames=" + splitFrames()
+                + ", splitFrameBytes=" + splitFrameBytes() + ", messages=" + messages() + ", limitsExceeded=" + limitsExceeded() + ", messagesFiltered=" + messagesFiltered() + ", outputQueueHighWaterMark=" + outputQueueHighWaterMark()
+                + ", inputDecodeNanos=" + inputDecodeNanos + "}";
+    }
+}
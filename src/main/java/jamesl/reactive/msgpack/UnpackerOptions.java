@@ -0,0 +1,307 @@
+package jamesl.reactive.msgpack;
+
+import java.nio.ByteBuffer;
+import java.util.function.Supplier;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Tuning options for {@link Unpacker}. Options are read once, when the {@link Unpacker} is constructed, and
+ * are then shared by every stream it decodes, so changing an instance afterwards has no effect on that
+ * {@link Unpacker}.
+ */
+public class UnpackerOptions {
+    public static final int DEFAULT_SPLIT_FRAME_THRESHOLD = 64 * 1024;
+    public static final int DEFAULT_PARALLEL_BATCH_SIZE = 64 * 1024;
+    public static final int DEFAULT_PIPELINE_CAPACITY = 32;
+    private int splitFrameThreshold = DEFAULT_SPLIT_FRAME_THRESHOLD;
+    private boolean tableDispatch = true;
+    private Supplier<StringCache> stringCache;
+    private int parallelBatchSize = DEFAULT_PARALLEL_BATCH_SIZE;
+    private boolean preserveOrder = true;
+    private int pipelineCapacity = DEFAULT_PIPELINE_CAPACITY;
+    private UnpackerListener listener;
+    private int maxPayloadLength = Integer.MAX_VALUE;
+    private int maxContainerSize = Integer.MAX_VALUE;
+    private int maxDepth = Integer.MAX_VALUE;
+    private int maxBufferedBytes = Integer.MAX_VALUE;
+    private boolean resyncOnLimitExceeded;
+    private MessageFilter messageFilter;
+    private final ExtensionDecoder[] extensionDecoders = new ExtensionDecoder[256];
+
+    public UnpackerOptions() {
+        extensionDecoders[ExtensionDecoder.TIMESTAMP_TYPE & 0xff] = ExtensionDecoder.timestamps();
+    }
+
+    /**
+     * Split frames of up to {@code splitFrameThreshold} bytes are reassembled in a buffer that is reused for
+     * the lifetime of the stream, larger split frames are reassembled in a buffer allocated for that frame.
+     *
+     * @param splitFrameThreshold
+     * @return
+     */
+    public UnpackerOptions splitFrameThreshold(int splitFrameThreshold) {
+        if (splitFrameThreshold < 0) {
+            throw new IllegalArgumentException("splitFrameThreshold must not be negative - splitFrameThreshold = " + splitFrameThreshold);
+        }
+
+        this.splitFrameThreshold = splitFrameThreshold;
+        return this;
+    }
+
+    public int splitFrameThreshold() {
+        return splitFrameThreshold;
+    }
+
+    /**
+     * Frames are dispatched through a table of precomputed frame lengths and a single {@code switch} when
+     * {@code tableDispatch} is {@code true} (the default), or through the {@link WireFormat} for each head byte
+     * when it is {@code false}. Both produce identical calls on the {@link ElementParser}.
+     *
+     * @param tableDispatch
+     * @return
+     */
+    public UnpackerOptions tableDispatch(boolean tableDispatch) {
+        this.tableDispatch = tableDispatch;
+        return this;
+    }
+
+    public boolean tableDispatch() {
+        return tableDispatch;
+    }
+
+    /**
+     * Short str payloads are looked up in a {@link StringCache} created by {@code stringCache} for each stream,
+     * so that repeated map keys decode to the same {@link String} without allocating. Disabled ({@code null})
+     * by default. Parsers that enable zero copy still receive views.
+     *
+     * @param stringCache
+     * @return
+     */
+    public UnpackerOptions stringCache(Supplier<StringCache> stringCache) {
+        this.stringCache = stringCache;
+        return this;
+    }
+
+    public Supplier<StringCache> stringCache() {
+        return stringCache;
+    }
+
+    /**
+     * {@link Unpacker#unpackParallel(ByteBuffer, int)} decodes batches of whole messages of at least
+     * {@code parallelBatchSize} bytes as independent tasks.
+     *
+     * @param parallelBatchSize
+     * @return
+     */
+    public UnpackerOptions parallelBatchSize(int parallelBatchSize) {
+        if (parallelBatchSize < 1) {
+            throw new IllegalArgumentException("parallelBatchSize must be positive - parallelBatchSize = " + parallelBatchSize);
+        }
+
+        this.parallelBatchSize = parallelBatchSize;
+        return this;
+    }
+
+    public int parallelBatchSize() {
+        return parallelBatchSize;
+    }
+
+    /**
+     * {@link Unpacker#unpackParallel(ByteBuffer, int)} emits messages in input order when {@code preserveOrder}
+     * is {@code true} (the default), or as soon as each batch is decoded when it is {@code false}.
+     *
+     * @param preserveOrder
+     * @return
+     */
+    public UnpackerOptions preserveOrder(boolean preserveOrder) {
+        this.preserveOrder = preserveOrder;
+        return this;
+    }
+
+    public boolean preserveOrder() {
+        return preserveOrder;
+    }
+
+    /**
+     * {@link Unpacker#unpackOn(org.reactivestreams.Publisher, reactor.core.scheduler.Scheduler)} reads up to
+     * {@code pipelineCapacity} inputs ahead of the decode worker before it stops requesting more.
+     *
+     * @param pipelineCapacity
+     * @return
+     */
+    public UnpackerOptions pipelineCapacity(int pipelineCapacity) {
+        if (pipelineCapacity < 1) {
+            throw new IllegalArgumentException("pipelineCapacity must be positive - pipelineCapacity = " + pipelineCapacity);
+        }
+
+        this.pipelineCapacity = pipelineCapacity;
+        return this;
+    }
+
+    public int pipelineCapacity() {
+        return pipelineCapacity;
+    }
+
+    /**
+     * Every stream reports what it decodes to {@code listener}, e.g. an {@link UnpackerMetrics}. Disabled
+     * ({@code null}) by default, in which case no instrumentation is performed.
+     *
+     * @param listener
+     * @return
+     */
+    public UnpackerOptions listener(UnpackerListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    public UnpackerListener listener() {
+        return listener;
+    }
+
+    /**
+     * str, bin and ext payloads longer than {@code maxPayloadLength} bytes fail the stream with a
+     * {@link LimitExceededException}, see {@link UnpackerOptions#resyncOnLimitExceeded(boolean)}. Unlimited by
+     * default, although payloads too long for a {@link ByteBuffer} are always rejected.
+     *
+     * @param maxPayloadLength
+     * @return
+     */
+    public UnpackerOptions maxPayloadLength(int maxPayloadLength) {
+        if (maxPayloadLength < 0) {
+            throw new IllegalArgumentException("maxPayloadLength must not be negative - maxPayloadLength = " + maxPayloadLength);
+        }
+
+        this.maxPayloadLength = maxPayloadLength;
+        return this;
+    }
+
+    public int maxPayloadLength() {
+        return maxPayloadLength;
+    }
+
+    /**
+     * Arrays of more than {@code maxContainerSize} elements and maps of more than {@code maxContainerSize} entries
+     * fail the stream with a {@link LimitExceededException}. Unlimited by default, although array32 and map32
+     * headers whose unsigned count does not fit in an {@code int} are always rejected.
+     *
+     * @param maxContainerSize
+     * @return
+     */
+    public UnpackerOptions maxContainerSize(int maxContainerSize) {
+        if (maxContainerSize < 0) {
+            throw new IllegalArgumentException("maxContainerSize must not be negative - maxContainerSize = " + maxContainerSize);
+        }
+
+        this.maxContainerSize = maxContainerSize;
+        return this;
+    }
+
+    public int maxContainerSize() {
+        return maxContainerSize;
+    }
+
+    /**
+     * Containers nested more than {@code maxDepth} deep, a top level container being at depth 1, fail the stream
+     * with a {@link LimitExceededException}. Unlimited by default, in which case nesting is not tracked.
+     *
+     * @param maxDepth
+     * @return
+     */
+    public UnpackerOptions maxDepth(int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("maxDepth must not be negative - maxDepth = " + maxDepth);
+        }
+
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    public int maxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Frames of more than {@code maxBufferedBytes} bytes that are split across input buffers, and so would have to
+     * be reassembled, fail the stream with a {@link LimitExceededException}. A stream reassembles one frame at a
+     * time, so this bounds the bytes each stream holds on to. Payloads that are streamed or skipped are never
+     * reassembled. Unlimited by default.
+     *
+     * @param maxBufferedBytes
+     * @return
+     */
+    public UnpackerOptions maxBufferedBytes(int maxBufferedBytes) {
+        if (maxBufferedBytes < 0) {
+            throw new IllegalArgumentException("maxBufferedBytes must not be negative - maxBufferedBytes = " + maxBufferedBytes);
+        }
+
+        this.maxBufferedBytes = maxBufferedBytes;
+        return this;
+    }
+
+    public int maxBufferedBytes() {
+        return maxBufferedBytes;
+    }
+
+    /**
+     * When {@code resyncOnLimitExceeded} is {@code true} a frame that exceeds a limit does not fail the stream.
+     * Instead the rest of the top level value it belongs to is skipped, without buffering, any partly parsed
+     * message is discarded and decoding resumes with a new chain of {@link ElementParser}s. Each resync is reported
+     * to {@link UnpackerListener#onLimitExceeded(LimitExceededException)}. Disabled by default.
+     *
+     * @param resyncOnLimitExceeded
+     * @return
+     */
+    public UnpackerOptions resyncOnLimitExceeded(boolean resyncOnLimitExceeded) {
+        this.resyncOnLimitExceeded = resyncOnLimitExceeded;
+        return this;
+    }
+
+    public boolean resyncOnLimitExceeded() {
+        return resyncOnLimitExceeded;
+    }
+
+    /**
+     * Only top level values that match {@code messageFilter} are decoded, the others are passed over by their length
+     * without reaching the {@link ElementParser}, see {@link Unpacker#filter(MessageFilter)}. Unfiltered by default.
+     *
+     * @param messageFilter
+     * @return
+     */
+    public UnpackerOptions messageFilter(MessageFilter messageFilter) {
+        this.messageFilter = messageFilter;
+        return this;
+    }
+
+    public MessageFilter messageFilter() {
+        return messageFilter;
+    }
+
+    /**
+     * ext values of extension type {@code type} are decoded by {@code extensionDecoder}, or passed to
+     * {@link ElementParser#onExtension(byte, ByteBuffer)} if it is {@code null}. Only
+     * {@link ExtensionDecoder#TIMESTAMP_TYPE} has a decoder by default.
+     *
+     * @param type
+     * @param extensionDecoder
+     * @return
+     */
+    public UnpackerOptions extensionDecoder(byte type, ExtensionDecoder extensionDecoder) {
+        extensionDecoders[type & 0xff] = extensionDecoder;
+        return this;
+    }
+
+    public ExtensionDecoder extensionDecoder(byte type) {
+        return extensionDecoders[type & 0xff];
+    }
+
+    /**
+     * Returns a copy of the decoder for each extension type, indexed by the unsigned value of the type.
+     *
+     * @return
+     */
+    ExtensionDecoder[] extensionDecoders() {
+        return extensionDecoders.clone();
+    }
+}
@@ -8,6 +8,8 @@ import java.nio.ByteBuffer;
  */
 interface WireFormat {
     int UNKNOWN_FRAME_LENGTH = -1;
+    // JL reported for frames whose 32 bit length field describes more bytes than a ByteBuffer can hold.
+    int OVERSIZED_FRAME_LENGTH = Integer.MAX_VALUE;
 
     /**
      * Returns the number of bytes in the current message frame.
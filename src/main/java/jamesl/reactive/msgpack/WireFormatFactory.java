@@ -1,6 +1,5 @@
 package jamesl.reactive.msgpack;
 
-import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
@@ -42,6 +41,12 @@ public class WireFormatFactory {
                     return new Bin16();
                 case 0xc6:
                     return new Bin32();
+                case 0xc7:
+                    return new Ext8();
+                case 0xc8:
+                    return new Ext16();
+                case 0xc9:
+                    return new Ext32();
                 case 0xca:
                     return new Float32();
                 case 0xcb:
@@ -62,6 +67,16 @@ public class WireFormatFactory {
                     return new Int32();
                 case 0xd3:
                     return new Int64();
+                case 0xd4:
+                    return new FixExt(1);
+                case 0xd5:
+                    return new FixExt(2);
+                case 0xd6:
+                    return new FixExt(4);
+                case 0xd7:
+                    return new FixExt(8);
+                case 0xd8:
+                    return new FixExt(16);
                 case 0xd9:
                     return new Str8();
                 case 0xda:
@@ -82,6 +97,18 @@ public class WireFormatFactory {
         }
     }
 
+    /**
+     * Returns the number of bytes in a frame whose 32 bit length field holds {@code length}, which is unsigned,
+     * or {@link WireFormat#OVERSIZED_FRAME_LENGTH} if the frame is too long to be held in a {@link ByteBuffer}.
+     *
+     * @param numberOfBytesInHeader
+     * @param length
+     * @return
+     */
+    static int numberOfBytesInFrame(int numberOfBytesInHeader, int length) {
+        long numberOfBytesInFrame = numberOfBytesInHeader + (length & 0xffffffffL);
+        return numberOfBytesInFrame < WireFormat.OVERSIZED_FRAME_LENGTH ? (int) numberOfBytesInFrame : WireFormat.OVERSIZED_FRAME_LENGTH;
+    }
 
     /**
      * "simple" implementation with fixed message size.
@@ -107,23 +134,68 @@ public class WireFormatFactory {
      * "raw" implementation with variable message size.
      */
     static abstract class RawWireFormat implements WireFormat {
+        private final int numberOfBytesInHeader;
+        private final boolean string;
+
+        RawWireFormat(int numberOfBytesInHeader, boolean string) {
+            this.numberOfBytesInHeader = numberOfBytesInHeader;
+            this.string = string;
+        }
+
+        /**
+         * Returns the number of bytes preceding the payload.
+         *
+         * @return
+         */
+        int numberOfBytesInHeader() {
+            return numberOfBytesInHeader;
+        }
+
+        /**
+         * Indicates whether the payload is a UTF-8 str rather than bin.
+         *
+         * @return
+         */
+        boolean isString() {
+            return string;
+        }
+
         /**
-         * Reads raw bytes from the {@code buffer}.
+         * Reads raw bytes from the {@code buffer} using a bulk copy.
          *
          * @param buffer
          * @param startOffset
          * @param length
          * @return
          */
-        byte[] raw(ByteBuffer buffer, int startOffset, int length) {
+        static byte[] raw(ByteBuffer buffer, int startOffset, int length) {
             byte[] raw = new byte[length];
-            for (int i = 0; i < length; i++) {
-                raw[i] = buffer.get(startOffset + i);
+            if (buffer.hasArray()) {
+                System.arraycopy(buffer.array(), buffer.arrayOffset() + startOffset, raw, 0, length);
+            } else {
+                ByteBuffer duplicate = buffer.duplicate();
+                duplicate.position(startOffset);
+                duplicate.get(raw);
             }
 
             return raw;
         }
 
+        /**
+         * Returns a read-only view over {@code length} bytes of the {@code buffer} without copying them.
+         *
+         * @param buffer
+         * @param startOffset
+         * @param length
+         * @return
+         */
+        static ByteBuffer slice(ByteBuffer buffer, int startOffset, int length) {
+            ByteBuffer view = buffer.asReadOnlyBuffer();
+            view.limit(startOffset + length);
+            view.position(startOffset);
+            return view.slice();
+        }
+
         /**
          * Reads {@code length} bytes from the {@code buffer} and converts them into a UTF-8 {@link String}.
          *
@@ -132,8 +204,94 @@ public class WireFormatFactory {
          * @param length
          * @return
          */
-        String str(ByteBuffer buffer, int startOffset, int length) {
-            return new String(raw(buffer, startOffset, length), StandardCharsets.UTF_8);
+        static String str(ByteBuffer buffer, int startOffset, int length) {
+            if (StringDecoder.isAscii(buffer, startOffset, length)) {
+                if (buffer.hasArray()) {
+                    return StringDecoder.ascii(buffer.array(), buffer.arrayOffset() + startOffset, length);
+                }
+                return StringDecoder.ascii(raw(buffer, startOffset, length), 0, length);
+            } else if (buffer.hasArray()) {
+                return new String(buffer.array(), buffer.arrayOffset() + startOffset, length, StandardCharsets.UTF_8);
+            } else {
+                return new String(raw(buffer, startOffset, length), StandardCharsets.UTF_8);
+            }
+        }
+
+        /**
+         * Passes a bin payload to {@code elementParser}, either as a view or as a copy.
+         *
+         * @param buffer
+         * @param startOffset
+         * @param length
+         * @param elementParser
+         * @param <T>
+         * @return
+         */
+        static <T> ElementParser<T> onRaw(ByteBuffer buffer, int startOffset, int length, ElementParser<T> elementParser) {
+            if (elementParser.isZeroCopyEnabled()) {
+                return elementParser.onRawSlice(slice(buffer, startOffset, length));
+            } else {
+                return elementParser.onRaw(raw(buffer, startOffset, length));
+            }
+        }
+
+        /**
+         * Passes a str payload to {@code elementParser}, either as a view or as a {@link String}.
+         *
+         * @param buffer
+         * @param startOffset
+         * @param length
+         * @param elementParser
+         * @param <T>
+         * @return
+         */
+        static <T> ElementParser<T> onString(ByteBuffer buffer, int startOffset, int length, ElementParser<T> elementParser) {
+            if (elementParser.isZeroCopyEnabled()) {
+                return elementParser.onStringSlice(slice(buffer, startOffset, length));
+            } else {
+                return elementParser.onString(str(buffer, startOffset, length));
+            }
+        }
+    }
+
+    /**
+     * "ext" implementation, an extension type followed by a payload.
+     */
+    static abstract class ExtWireFormat implements WireFormat {
+        private final int numberOfBytesInHeader;
+
+        ExtWireFormat(int numberOfBytesInHeader) {
+            this.numberOfBytesInHeader = numberOfBytesInHeader;
+        }
+
+        /**
+         * Returns the number of bytes preceding the payload, including the extension type.
+         *
+         * @return
+         */
+        int numberOfBytesInHeader() {
+            return numberOfBytesInHeader;
+        }
+
+        @Override
+        public <T> ElementParser<T> parseElement(ByteBuffer buffer, int startOffset, ElementParser<T> elementParser) {
+            int length = numberOfBytesInFrame(buffer, startOffset, buffer.limit()) - numberOfBytesInHeader;
+            return onExtension(buffer, startOffset + numberOfBytesInHeader, length, elementParser);
+        }
+
+        /**
+         * Passes an ext payload, whose extension type is the byte that precedes it, to {@code elementParser}
+         * as a view.
+         *
+         * @param buffer
+         * @param startOffset
+         * @param length
+         * @param elementParser
+         * @param <T>
+         * @return
+         */
+        static <T> ElementParser<T> onExtension(ByteBuffer buffer, int startOffset, int length, ElementParser<T> elementParser) {
+            return elementParser.onExtension(buffer.get(startOffset - 1), RawWireFormat.slice(buffer, startOffset, length));
         }
     }
 
@@ -144,7 +302,7 @@ public class WireFormatFactory {
 
         @Override
         public <T> ElementParser<T> parseElement(ByteBuffer buffer, int startOffset, ElementParser<T> elementParser) {
-            return elementParser.onArrayHeader(buffer.getShort(startOffset + 1));
+            return elementParser.onArrayHeader(buffer.getShort(startOffset + 1) & 0xffff);
         }
     }
 
@@ -160,10 +318,14 @@ public class WireFormatFactory {
     }
 
     static class Bin8 extends RawWireFormat {
+        Bin8() {
+            super(2, false);
+        }
+
         @Override
         public int numberOfBytesInFrame(ByteBuffer buffer, int startOffset, int limit) {
             if (startOffset + 2 <= limit) {
-                return buffer.get(startOffset + 1) + 2;
+                return (buffer.get(startOffset + 1) & 0xff) + 2;
             } else {
                 return UNKNOWN_FRAME_LENGTH;
             }
@@ -171,15 +333,19 @@ public class WireFormatFactory {
 
         @Override
         public <T> ElementParser<T> parseElement(ByteBuffer buffer, int startOffset, ElementParser<T> elementParser) {
-            return elementParser.onRaw(raw(buffer, startOffset + 2, buffer.get(startOffset + 1)));
+            return onRaw(buffer, startOffset + 2, buffer.get(startOffset + 1) & 0xff, elementParser);
         }
     }
 
     static class Bin16 extends RawWireFormat {
+        Bin16() {
+            super(3, false);
+        }
+
         @Override
         public int numberOfBytesInFrame(ByteBuffer buffer, int startOffset, int limit) {
             if (startOffset + 3 <= limit) {
-                return buffer.getShort(startOffset + 1) + 3;
+                return (buffer.getShort(startOffset + 1) & 0xffff) + 3;
             } else {
                 return UNKNOWN_FRAME_LENGTH;
             }
@@ -187,15 +353,19 @@ public class WireFormatFactory {
 
         @Override
         public <T> ElementParser<T> parseElement(ByteBuffer buffer, int startOffset, ElementParser<T> elementParser) {
-            return elementParser.onRaw(raw(buffer, startOffset + 3, buffer.getShort(startOffset + 1)));
+            return onRaw(buffer, startOffset + 3, buffer.getShort(startOffset + 1) & 0xffff, elementParser);
         }
     }
 
     static class Bin32 extends RawWireFormat {
+        Bin32() {
+            super(5, false);
+        }
+
         @Override
         public int numberOfBytesInFrame(ByteBuffer buffer, int startOffset, int limit) {
             if (startOffset + 5 <= limit) {
-                return buffer.getInt(startOffset + 1) + 5;
+                return WireFormatFactory.numberOfBytesInFrame(5, buffer.getInt(startOffset + 1));
             } else {
                 return UNKNOWN_FRAME_LENGTH;
             }
@@ -203,7 +373,52 @@ public class WireFormatFactory {
 
         @Override
         public <T> ElementParser<T> parseElement(ByteBuffer buffer, int startOffset, ElementParser<T> elementParser) {
-            return elementParser.onRaw(raw(buffer, startOffset + 5, buffer.getInt(startOffset + 1)));
+            return onRaw(buffer, startOffset + 5, buffer.getInt(startOffset + 1), elementParser);
+        }
+    }
+
+    static class Ext8 extends ExtWireFormat {
+        Ext8() {
+            super(3);
+        }
+
+        @Override
+        public int numberOfBytesInFrame(ByteBuffer buffer, int startOffset, int limit) {
+            if (startOffset + 2 <= limit) {
+                return (buffer.get(startOffset + 1) & 0xff) + 3;
+            } else {
+                return UNKNOWN_FRAME_LENGTH;
+            }
+        }
+    }
+
+    static class Ext16 extends ExtWireFormat {
+        Ext16() {
+            super(4);
+        }
+
+        @Override
+        public int numberOfBytesInFrame(ByteBuffer buffer, int startOffset, int limit) {
+            if (startOffset + 3 <= limit) {
+                return (buffer.getShort(startOffset + 1) & 0xffff) + 4;
+            } else {
+                return UNKNOWN_FRAME_LENGTH;
+            }
+        }
+    }
+
+    static class Ext32 extends ExtWireFormat {
+        Ext32() {
+            super(6);
+        }
+
+        @Override
+        public int numberOfBytesInFrame(ByteBuffer buffer, int startOffset, int limit) {
+            if (startOffset + 5 <= limit) {
+                return WireFormatFactory.numberOfBytesInFrame(6, buffer.getInt(startOffset + 1));
+            } else {
+                return UNKNOWN_FRAME_LENGTH;
+            }
         }
     }
 
@@ -221,6 +436,20 @@ public class WireFormatFactory {
         }
     }
 
+    static class FixExt extends ExtWireFormat {
+        private final int numberOfBytesInFrame;
+
+        FixExt(int length) {
+            super(2);
+            this.numberOfBytesInFrame = 2 + length;
+        }
+
+        @Override
+        public int numberOfBytesInFrame(ByteBuffer buffer, int startOffset, int limit) {
+            return numberOfBytesInFrame;
+        }
+    }
+
     static class FixMap extends SimpleWireFormat {
         @Override
         public <T> ElementParser<T> parseElement(ByteBuffer buffer, int startOffset, ElementParser<T> elementParser) {
@@ -229,6 +458,10 @@ public class WireFormatFactory {
     }
 
     static class FixStr extends RawWireFormat {
+        FixStr() {
+            super(1, true);
+        }
+
         @Override
         public int numberOfBytesInFrame(ByteBuffer buffer, int startOffset, int limit) {
             return (buffer.get(startOffset) & 0x1f) + 1;
@@ -236,7 +469,7 @@ public class WireFormatFactory {
 
         @Override
         public <T> ElementParser<T> parseElement(ByteBuffer buffer, int startOffset, ElementParser<T> elementParser) {
-            return elementParser.onString(str(buffer, startOffset + 1, buffer.get(startOffset) & 0x1f));
+            return onString(buffer, startOffset + 1, buffer.get(startOffset) & 0x1f, elementParser);
         }
     }
 
@@ -247,7 +480,7 @@ public class WireFormatFactory {
 
         @Override
         public <T> ElementParser<T> parseElement(ByteBuffer buffer, int startOffset, ElementParser<T> elementParser) {
-            return elementParser.onDouble(buffer.getFloat(startOffset + 1));
+            return elementParser.onFloat(buffer.getFloat(startOffset + 1));
         }
     }
 
@@ -313,7 +546,7 @@ public class WireFormatFactory {
 
         @Override
         public <T> ElementParser<T> parseElement(ByteBuffer buffer, int startOffset, ElementParser<T> elementParser) {
-            return elementParser.onMapHeader(buffer.getShort(startOffset + 1));
+            return elementParser.onMapHeader(buffer.getShort(startOffset + 1) & 0xffff);
         }
     }
 
@@ -361,10 +594,14 @@ public class WireFormatFactory {
     }
 
     static class Str8 extends RawWireFormat {
+        Str8() {
+            super(2, true);
+        }
+
         @Override
         public int numberOfBytesInFrame(ByteBuffer buffer, int startOffset, int limit) {
             if (startOffset + 2 <= limit) {
-                return buffer.get(startOffset + 1) + 2;
+                return (buffer.get(startOffset + 1) & 0xff) + 2;
             } else {
                 return UNKNOWN_FRAME_LENGTH;
             }
@@ -372,15 +609,19 @@ public class WireFormatFactory {
 
         @Override
         public <T> ElementParser<T> parseElement(ByteBuffer buffer, int startOffset, ElementParser<T> elementParser) {
-            return elementParser.onString(str(buffer, startOffset + 2, buffer.get(startOffset + 1)));
+            return onString(buffer, startOffset + 2, buffer.get(startOffset + 1) & 0xff, elementParser);
         }
     }
 
     static class Str16 extends RawWireFormat {
+        Str16() {
+            super(3, true);
+        }
+
         @Override
         public int numberOfBytesInFrame(ByteBuffer buffer, int startOffset, int limit) {
             if (startOffset + 3 <= limit) {
-                return buffer.getShort(startOffset + 1) + 3;
+                return (buffer.getShort(startOffset + 1) & 0xffff) + 3;
             } else {
                 return UNKNOWN_FRAME_LENGTH;
             }
@@ -388,15 +629,19 @@ public class WireFormatFactory {
 
         @Override
         public <T> ElementParser<T> parseElement(ByteBuffer buffer, int startOffset, ElementParser<T> elementParser) {
-            return elementParser.onString(str(buffer, startOffset + 3, buffer.getShort(startOffset + 1)));
+            return onString(buffer, startOffset + 3, buffer.getShort(startOffset + 1) & 0xffff, elementParser);
         }
     }
 
     static class Str32 extends RawWireFormat {
+        Str32() {
+            super(5, true);
+        }
+
         @Override
         public int numberOfBytesInFrame(ByteBuffer buffer, int startOffset, int limit) {
             if (startOffset + 5 <= limit) {
-                return buffer.getInt(startOffset + 1) + 5;
+                return WireFormatFactory.numberOfBytesInFrame(5, buffer.getInt(startOffset + 1));
             } else {
                 return UNKNOWN_FRAME_LENGTH;
             }
@@ -404,7 +649,7 @@ public class WireFormatFactory {
 
         @Override
         public <T> ElementParser<T> parseElement(ByteBuffer buffer, int startOffset, ElementParser<T> elementParser) {
-            return elementParser.onString(str(buffer, startOffset + 5, buffer.getInt(startOffset + 1)));
+            return onString(buffer, startOffset + 5, buffer.getInt(startOffset + 1), elementParser);
         }
     }
 
@@ -444,12 +689,7 @@ public class WireFormatFactory {
 
         @Override
         public <T> ElementParser<T> parseElement(ByteBuffer buffer, int startOffset, ElementParser<T> elementParser) {
-            int tmp = buffer.getInt(startOffset + 1);
-            if (tmp < 0) {
-                return elementParser.onLong((tmp & 0x7fffffff) + 0x80000000L);
-            } else {
-                return elementParser.onLong(tmp);
-            }
+            return elementParser.onUnsignedInt(buffer.getInt(startOffset + 1) & 0xffffffffL);
         }
     }
 
@@ -460,12 +700,7 @@ public class WireFormatFactory {
 
         @Override
         public <T> ElementParser<T> parseElement(ByteBuffer buffer, int startOffset, ElementParser<T> elementParser) {
-            long tmp2 = buffer.getLong(startOffset + 1);
-            if (tmp2 < 0) {
-                return elementParser.onBigInteger(BigInteger.valueOf(tmp2 + Long.MAX_VALUE + 1L).setBit(63));
-            } else {
-                return elementParser.onBigInteger(BigInteger.valueOf(tmp2));
-            }
+            return elementParser.onUnsignedLong(buffer.getLong(startOffset + 1));
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,554 @@
+package jamesl.reactive.msgpack.bind;
+
+import jamesl.reactive.msgpack.ElementParser;
+import jamesl.reactive.msgpack.SymbolTable;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * @param <T>
+ * @author jamesl
+ * @since 1.0
+ *
+ * {@link ElementParser} that binds each top level map to a new instance of a class described by an
+ * {@link ObjectBinding}. A single instance handles the whole stream: nested maps and arrays are tracked on a stack
+ * of {@link Frame}s that are reused from one message to the next, so the only allocations are the bound objects,
+ * their strings and collections. Keys are matched against the field that followed the previous key before
+ * falling back to a lookup, and the values of unknown keys are skipped without being decoded. The keys of bound
+ * objects are matched against a {@link SymbolTable} of their field names in the input buffer, so known keys are never
+ * decoded. The keys of bound maps are delivered as {@link String}s, pair this parser with
+ * {@code UnpackerOptions#stringCache} to avoid allocating them.
+ */
+final class BoundElementParser<T> implements ElementParser<T> {
+    private static final int OBJECT = 0;
+    private static final int LIST = 1;
+    private static final int MAP = 2;
+    private static final int MAX_PRESIZED_LIST = 1024;
+    private final ValueBinding root;
+    private final Consumer<T> consumer;
+    private Frame[] frames = new Frame[8];
+    private int depth;
+
+    BoundElementParser(ObjectBinding root, Consumer<T> consumer) {
+        this.root = new ValueBinding(ValueBinding.Kind.OBJECT, root, null);
+        this.consumer = consumer;
+    }
+
+    @Override
+    public boolean isRoutingNullsViaOnStringEnabled() {
+        return false;
+    }
+
+    @Override
+    public SymbolTable symbolTable() {
+        if (depth == 0) {
+            return null;
+        }
+
+        Frame frame = frames[depth - 1];
+        return frame.expectingKey && frame.type == OBJECT ? frame.binding.object.symbols : null;
+    }
+
+    @Override
+    public ElementParser<T> onKey(int symbolId) {
+        Frame frame = frames[depth - 1];
+        return onField(frame, frame.binding.object.fieldsBySymbol[symbolId]);
+    }
+
+    @Override
+    public ElementParser<T> onSkipped() {
+        return completeValue();
+    }
+
+    @Override
+    public ElementParser<T> onArrayHeader(int numberOfElements) {
+        // JL array32 counts are unsigned.
+        long numberOfValues = numberOfElements & 0xffffffffL;
+        if (isExpectingKey()) {
+            return skipEntry(numberOfValues);
+        }
+
+        ValueBinding slot = slot();
+        if (slot.kind != ValueBinding.Kind.LIST) {
+            return skipValue(numberOfValues);
+        }
+
+        return push(LIST, slot, new ArrayList<>((int) Math.min(numberOfValues, MAX_PRESIZED_LIST)), numberOfValues);
+    }
+
+    @Override
+    public ElementParser<T> onMapHeader(int numberOfElements) {
+        // JL map32 counts are unsigned, and a map holds a key and a value per element.
+        long numberOfValues = 2L * (numberOfElements & 0xffffffffL);
+        if (isExpectingKey()) {
+            return skipEntry(numberOfValues);
+        }
+
+        ValueBinding slot = slot();
+        if (slot.kind == ValueBinding.Kind.OBJECT) {
+            return push(OBJECT, slot, slot.object.newInstance(), numberOfValues);
+        } else if (slot.kind == ValueBinding.Kind.MAP) {
+            return push(MAP, slot, new HashMap<>(), numberOfValues);
+        } else {
+            return skipValue(numberOfValues);
+        }
+    }
+
+    @Override
+    public ElementParser<T> onString(String value) {
+        if (isExpectingKey()) {
+            return onKey(value);
+        }
+
+        if (slot().kind == ValueBinding.Kind.STRING) {
+            assign(value);
+        }
+        return completeValue();
+    }
+
+    @Override
+    public ElementParser<T> onByte(byte value) {
+        return onIntegral(value);
+    }
+
+    @Override
+    public ElementParser<T> onInt(int value) {
+        return onIntegral(value);
+    }
+
+    @Override
+    public ElementParser<T> onLong(long value) {
+        return onIntegral(value);
+    }
+
+    @Override
+    public ElementParser<T> onBigInteger(BigInteger value) {
+        if (isExpectingKey()) {
+            return skipEntry(0);
+        }
+
+        if (slot().kind == ValueBinding.Kind.BIG_INTEGER) {
+            assign(value);
+            return completeValue();
+        }
+        return onIntegral(value.longValue());
+    }
+
+    @Override
+    public ElementParser<T> onUnsignedLong(long bits) {
+        if (bits >= 0 || isExpectingKey() || slot().kind != ValueBinding.Kind.BIG_INTEGER) {
+            // JL only a BigInteger can hold a uint64 of 2^63 or more, anything else takes the bits as onBigInteger would.
+            return onIntegral(bits);
+        }
+        return ElementParser.super.onUnsignedLong(bits);
+    }
+
+    @Override
+    public ElementParser<T> onDouble(double value) {
+        if (isExpectingKey()) {
+            return skipEntry(0);
+        }
+
+        ValueBinding slot = slot();
+        switch (slot.kind) {
+            case FLOAT:
+                set((float) value);
+                break;
+            case DOUBLE:
+                set(value);
+                break;
+            case BOXED_FLOAT:
+                assign((float) value);
+                break;
+            case BOXED_DOUBLE:
+                assign(value);
+                break;
+            default:
+                break;
+        }
+        return completeValue();
+    }
+
+    @Override
+    public ElementParser<T> onBoolean(boolean value) {
+        if (isExpectingKey()) {
+            return skipEntry(0);
+        }
+
+        ValueBinding slot = slot();
+        if (slot.kind == ValueBinding.Kind.BOOLEAN) {
+            set(value);
+        } else if (slot.kind == ValueBinding.Kind.BOXED_BOOLEAN) {
+            assign(value);
+        }
+        return completeValue();
+    }
+
+    @Override
+    public ElementParser<T> onNull() {
+        if (isExpectingKey()) {
+            return skipEntry(0);
+        }
+
+        if (!slot().kind.isPrimitive()) {
+            assign(null);
+        }
+        return completeValue();
+    }
+
+    @Override
+    public ElementParser<T> onRaw(byte[] value) {
+        if (isExpectingKey()) {
+            return skipEntry(0);
+        }
+
+        if (slot().kind == ValueBinding.Kind.BYTES) {
+            assign(value);
+        }
+        return completeValue();
+    }
+
+    @Override
+    public ElementParser<T> onExtension(byte type, ByteBuffer payload) {
+        // JL ext values are not bound to fields, but still complete the entry they are the key or value of.
+        return isExpectingKey() ? skipEntry(0) : completeValue();
+    }
+
+    @Override
+    public ElementParser<T> onTimestamp(long seconds, int nanos) {
+        return isExpectingKey() ? skipEntry(0) : completeValue();
+    }
+
+    @Override
+    public String toString() {
+        return "BoundElementParser{type=" + root.object.type.getName() + ", depth=" + depth + "}";
+    }
+
+    private ElementParser<T> onIntegral(long value) {
+        if (isExpectingKey()) {
+            return skipEntry(0);
+        }
+
+        ValueBinding slot = slot();
+        switch (slot.kind) {
+            case BYTE:
+                set((byte) value);
+                break;
+            case SHORT:
+                set((short) value);
+                break;
+            case INT:
+                set((int) value);
+                break;
+            case LONG:
+                set(value);
+                break;
+            case FLOAT:
+                set((float) value);
+                break;
+            case DOUBLE:
+                set((double) value);
+                break;
+            case BOXED_BYTE:
+                assign((byte) value);
+                break;
+            case BOXED_SHORT:
+                assign((short) value);
+                break;
+            case BOXED_INT:
+                assign((int) value);
+                break;
+            case BOXED_LONG:
+                assign(value);
+                break;
+            case BOXED_FLOAT:
+                assign((float) value);
+                break;
+            case BOXED_DOUBLE:
+                assign((double) value);
+                break;
+            case BIG_INTEGER:
+                assign(BigInteger.valueOf(value));
+                break;
+            default:
+                break;
+        }
+        return completeValue();
+    }
+
+    /**
+     * Handles a key of the current object or map.
+     *
+     * @param key
+     * @return
+     */
+    private ElementParser<T> onKey(String key) {
+        Frame frame = frames[depth - 1];
+        if (frame.type == MAP) {
+            frame.expectingKey = false;
+            frame.remaining--;
+            frame.key = key;
+            return this;
+        }
+
+        ObjectBinding.FieldBinding[] fields = frame.binding.object.fields;
+        int next = frame.nextField;
+        ObjectBinding.FieldBinding field = next < fields.length && fields[next].name.equals(key) ? fields[next] : frame.binding.object.field(key);
+        if (field == null) {
+            return skipEntry(0);
+        }
+
+        return onField(frame, field);
+    }
+
+    private ElementParser<T> onField(Frame frame, ObjectBinding.FieldBinding field) {
+        frame.expectingKey = false;
+        frame.remaining--;
+        frame.field = field;
+        frame.nextField = field.index + 1;
+        return this;
+    }
+
+    /**
+     * Skips the value of the current entry, whose key was unknown, not a string, or is a container with
+     * {@code numberOfNestedValues} values.
+     *
+     * @param numberOfNestedValues
+     * @return
+     */
+    private ElementParser<T> skipEntry(long numberOfNestedValues) {
+        Frame frame = frames[depth - 1];
+        if (frame.expectingKey) {
+            // JL the key itself was not a string, skip anything nested in it as well as the value.
+            frame.expectingKey = false;
+            frame.remaining--;
+        }
+
+        frame.field = null;
+        return skip(numberOfNestedValues + 1);
+    }
+
+    /**
+     * Skips the values nested in a container whose type does not match the value it is bound to, including a
+     * top level container that is not a map.
+     *
+     * @param numberOfNestedValues
+     * @return
+     */
+    private ElementParser<T> skipValue(long numberOfNestedValues) {
+        return skip(numberOfNestedValues);
+    }
+
+    /**
+     * Skips {@code numberOfValues} values, the value being skipped is only complete, see
+     * {@link BoundElementParser#onSkipped()}, once all of them have been passed over.
+     *
+     * @param numberOfValues
+     * @return
+     */
+    private ElementParser<T> skip(long numberOfValues) {
+        ElementParser<T> next = this;
+        // JL msgpack limits containers to 2^32 - 1 elements, so a map can hold more values than an int allows.
+        while (numberOfValues > Integer.MAX_VALUE) {
+            next = ElementParser.skip(Integer.MAX_VALUE, next);
+            numberOfValues -= Integer.MAX_VALUE;
+        }
+        return ElementParser.skip((int) numberOfValues, next);
+    }
+
+    private boolean isExpectingKey() {
+        return depth > 0 && frames[depth - 1].expectingKey;
+    }
+
+    /**
+     * Returns the binding of the next value.
+     *
+     * @return
+     */
+    private ValueBinding slot() {
+        if (depth == 0) {
+            return root;
+        }
+
+        Frame frame = frames[depth - 1];
+        return frame.type == OBJECT ? frame.field.value : frame.binding.element;
+    }
+
+    private ElementParser<T> push(int type, ValueBinding binding, Object target, long numberOfValues) {
+        if (depth == frames.length) {
+            Frame[] expanded = new Frame[frames.length * 2];
+            System.arraycopy(frames, 0, expanded, 0, frames.length);
+            frames = expanded;
+        }
+
+        Frame frame = frames[depth];
+        if (frame == null) {
+            frame = frames[depth] = new Frame();
+        }
+
+        frame.type = type;
+        frame.binding = binding;
+        frame.target = target;
+        frame.expectingKey = type != LIST && numberOfValues > 0;
+        frame.field = null;
+        frame.key = null;
+        frame.nextField = 0;
+        depth++;
+
+        if (numberOfValues == 0) {
+            // JL an empty container is complete as soon as it starts.
+            frame.remaining = 1;
+            return completeValue();
+        }
+
+        frame.remaining = numberOfValues;
+        return this;
+    }
+
+    /**
+     * Accounts for a complete value, finishing every container that it completes and emitting the top level
+     * object once it is complete.
+     *
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private ElementParser<T> completeValue() {
+        while (depth > 0) {
+            Frame frame = frames[depth - 1];
+            frame.remaining--;
+            frame.expectingKey = frame.type != LIST;
+            if (frame.remaining > 0) {
+                return this;
+            }
+
+            Object value = frame.target;
+            frame.target = null;
+            frame.key = null;
+            depth--;
+
+            if (depth == 0) {
+                consumer.accept((T) value);
+                return this;
+            }
+            assign(value);
+        }
+
+        return this;
+    }
+
+    /**
+     * Assigns an object to the current field, list or map entry.
+     *
+     * @param value
+     */
+    @SuppressWarnings("unchecked")
+    private void assign(Object value) {
+        Frame frame = frames[depth - 1];
+        switch (frame.type) {
+            case OBJECT:
+                invoke(frame, value);
+                break;
+            case LIST:
+                ((List<Object>) frame.target).add(value);
+                break;
+            default:
+                ((Map<String, Object>) frame.target).put(frame.key, value);
+                break;
+        }
+    }
+
+    private void invoke(Frame frame, Object value) {
+        try {
+            frame.field.setter.invokeExact(frame.target, value);
+        } catch (Throwable t) {
+            throw failed(frame, t);
+        }
+    }
+
+    private void set(boolean value) {
+        Frame frame = frames[depth - 1];
+        try {
+            frame.field.setter.invokeExact(frame.target, value);
+        } catch (Throwable t) {
+            throw failed(frame, t);
+        }
+    }
+
+    private void set(byte value) {
+        Frame frame = frames[depth - 1];
+        try {
+            frame.field.setter.invokeExact(frame.target, value);
+        } catch (Throwable t) {
+            throw failed(frame, t);
+        }
+    }
+
+    private void set(short value) {
+        Frame frame = frames[depth - 1];
+        try {
+            frame.field.setter.invokeExact(frame.target, value);
+        } catch (Throwable t) {
+            throw failed(frame, t);
+        }
+    }
+
+    private void set(int value) {
+        Frame frame = frames[depth - 1];
+        try {
+            frame.field.setter.invokeExact(frame.target, value);
+        } catch (Throwable t) {
+            throw failed(frame, t);
+        }
+    }
+
+    private void set(long value) {
+        Frame frame = frames[depth - 1];
+        try {
+            frame.field.setter.invokeExact(frame.target, value);
+        } catch (Throwable t) {
+            throw failed(frame, t);
+        }
+    }
+
+    private void set(float value) {
+        Frame frame = frames[depth - 1];
+        try {
+            frame.field.setter.invokeExact(frame.target, value);
+        } catch (Throwable t) {
+            throw failed(frame, t);
+        }
+    }
+
+    private void set(double value) {
+        Frame frame = frames[depth - 1];
+        try {
+            frame.field.setter.invokeExact(frame.target, value);
+        } catch (Throwable t) {
+            throw failed(frame, t);
+        }
+    }
+
+    private static IllegalStateException failed(Frame frame, Throwable t) {
+        return new IllegalStateException("failed to set field - field = " + frame.field, t);
+    }
+
+    /**
+     * The state of a map or array that is being bound.
+     */
+    private static final class Frame {
+        int type;
+        ValueBinding binding;
+        Object target;
+        long remaining;
+        boolean expectingKey;
+        ObjectBinding.FieldBinding field;
+        int nextField;
+        String key;
+    }
+}
@@ -0,0 +1,46 @@
+package jamesl.reactive.msgpack.bind;
+
+import jamesl.reactive.msgpack.ElementParser;
+import jamesl.reactive.msgpack.ElementParserFactory;
+
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+/**
+ * @param <T>
+ * @author jamesl
+ * @since 1.0
+ *
+ * {@link ElementParserFactory} that binds each top level msgpack map to a new instance of a class, as an
+ * alternative to writing a chain of {@link ElementParser}s by hand. Map keys are bound to fields of the same
+ * name, see {@link MsgpackField}, and keys without a field are skipped. Fields may be primitives or their boxes,
+ * {@link String}, {@code byte[]}, {@link java.math.BigInteger}, another bound class, or a {@link java.util.List}
+ * or {@link java.util.Map} with {@link String} keys of any of those. Values whose msgpack type does not fit
+ * the field are ignored, as are top level values that are not maps.
+ *
+ * The class is inspected once, when the factory is created, and fields are set through {@link java.lang.invoke.MethodHandle}s
+ * adapted so that primitives are never boxed. Bound classes need a no-arg constructor, which may be private.
+ */
+public final class BoundElementParserFactory<T> implements ElementParserFactory<T> {
+    private final ObjectBinding binding;
+
+    private BoundElementParserFactory(Class<T> type) {
+        this.binding = ObjectBinding.of(type, new HashMap<>());
+    }
+
+    /**
+     * Returns a factory that binds {@code type}.
+     *
+     * @param type
+     * @param <T>
+     * @return
+     */
+    public static <T> BoundElementParserFactory<T> of(Class<T> type) {
+        return new BoundElementParserFactory<>(type);
+    }
+
+    @Override
+    public ElementParser<T> firstElementParser(Consumer<T> consumer) {
+        return new BoundElementParser<>(binding, consumer);
+    }
+}
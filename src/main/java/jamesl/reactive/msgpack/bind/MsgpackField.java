@@ -0,0 +1,31 @@
+package jamesl.reactive.msgpack.bind;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Customises how a field is bound by {@link BoundElementParserFactory}. Fields do not need to be annotated,
+ * every non-static, non-transient field is bound using its Java name unless {@link MsgpackField#ignore()} is set.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface MsgpackField {
+    /**
+     * The map key of the field, defaults to the name of the field.
+     *
+     * @return
+     */
+    String value() default "";
+
+    /**
+     * Indicates that the field should not be bound.
+     *
+     * @return
+     */
+    boolean ignore() default false;
+}
@@ -0,0 +1,154 @@
+package jamesl.reactive.msgpack.bind;
+
+import jamesl.reactive.msgpack.SymbolTable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * The binding of a class, built once by reflection: a constructor and a setter for each bound field, adapted
+ * to {@code (Object)Object} and {@code (Object, primitive)void} so that they can be invoked exactly without
+ * boxing, and a lookup from map key to field, both by {@link String} and by the id of the key in a
+ * {@link SymbolTable} of the field names.
+ */
+final class ObjectBinding {
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+    final Class<?> type;
+    final FieldBinding[] fields;
+    private final Map<String, FieldBinding> fieldsByName = new HashMap<>();
+    SymbolTable symbols;
+    FieldBinding[] fieldsBySymbol;
+    private MethodHandle constructor;
+
+    private ObjectBinding(Class<?> type) {
+        this.type = type;
+        this.fields = fields(type).toArray(new FieldBinding[0]);
+    }
+
+    /**
+     * Returns the binding for {@code type}, reusing the binding in {@code bindings} if it has already been built
+     * so that recursive types are supported.
+     *
+     * @param type
+     * @param bindings
+     * @return
+     */
+    static ObjectBinding of(Class<?> type, Map<Class<?>, ObjectBinding> bindings) {
+        ObjectBinding binding = bindings.get(type);
+        if (binding == null) {
+            binding = new ObjectBinding(type);
+            bindings.put(type, binding);
+            binding.bind(bindings);
+        }
+        return binding;
+    }
+
+    /**
+     * Returns a new instance of the bound class.
+     *
+     * @return
+     */
+    Object newInstance() {
+        try {
+            return (Object) constructor.invokeExact();
+        } catch (Throwable t) {
+            throw new IllegalStateException("failed to create instance - type = " + type.getName(), t);
+        }
+    }
+
+    /**
+     * Returns the field bound to the key {@code name}, or {@code null}.
+     *
+     * @param name
+     * @return
+     */
+    FieldBinding field(String name) {
+        return fieldsByName.get(name);
+    }
+
+    private void bind(Map<Class<?>, ObjectBinding> bindings) {
+        try {
+            Constructor<?> c = type.getDeclaredConstructor();
+            c.setAccessible(true);
+            constructor = lookup.unreflectConstructor(c).asType(CONSTRUCTOR_TYPE);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("bound classes must have a no-arg constructor - type = " + type.getName(), e);
+        }
+
+        for (FieldBinding field : fields) {
+            field.bind(bindings);
+            fieldsByName.putIfAbsent(field.name, field);
+        }
+
+        // JL names are collected from the map as a subclass may bind a name that a superclass also binds, fields are
+        // listed from the subclass up so the subclass field hides the superclass field as it does in Java.
+        List<String> names = new ArrayList<>(fieldsByName.keySet());
+        symbols = SymbolTable.of(names);
+        fieldsBySymbol = new FieldBinding[names.size()];
+        for (int i = 0; i < fieldsBySymbol.length; i++) {
+            fieldsBySymbol[i] = fieldsByName.get(names.get(i));
+        }
+    }
+
+    private static List<FieldBinding> fields(Class<?> type) {
+        List<FieldBinding> fields = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                MsgpackField annotation = field.getAnnotation(MsgpackField.class);
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic() || (annotation != null && annotation.ignore())) {
+                    continue;
+                }
+
+                String name = annotation == null || annotation.value().isEmpty() ? field.getName() : annotation.value();
+                fields.add(new FieldBinding(name, fields.size(), field));
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * The binding of a single field.
+     */
+    static final class FieldBinding {
+        final String name;
+        final int index;
+        private final Field field;
+        ValueBinding value;
+        MethodHandle setter;
+
+        FieldBinding(String name, int index, Field field) {
+            this.name = name;
+            this.index = index;
+            this.field = field;
+        }
+
+        private void bind(Map<Class<?>, ObjectBinding> bindings) {
+            value = ValueBinding.of(field.getGenericType(), bindings);
+            try {
+                field.setAccessible(true);
+                Class<?> parameterType = value.kind.isPrimitive() ? field.getType() : Object.class;
+                setter = lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, parameterType));
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("failed to bind field - field = " + field, e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "FieldBinding{name=" + name + ", kind=" + value.kind + "}";
+        }
+    }
+}
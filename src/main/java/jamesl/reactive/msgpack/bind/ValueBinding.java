@@ -0,0 +1,91 @@
+package jamesl.reactive.msgpack.bind;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Describes the Java type that a value is bound to, a field, a list element or a map value.
+ */
+class ValueBinding {
+    final Kind kind;
+    // JL set for OBJECT values.
+    final ObjectBinding object;
+    // JL set for LIST elements and MAP values.
+    final ValueBinding element;
+
+    ValueBinding(Kind kind, ObjectBinding object, ValueBinding element) {
+        this.kind = kind;
+        this.object = object;
+        this.element = element;
+    }
+
+    /**
+     * Returns the binding for {@code type}, binding any class it refers to using {@code bindings}.
+     *
+     * @param type
+     * @param bindings
+     * @return
+     */
+    static ValueBinding of(Type type, Map<Class<?>, ObjectBinding> bindings) {
+        Class<?> raw = type instanceof ParameterizedType ? (Class<?>) ((ParameterizedType) type).getRawType() : (Class<?>) type;
+
+        if (raw == List.class) {
+            return new ValueBinding(Kind.LIST, null, of(typeArgument(type, 0), bindings));
+        }
+
+        if (raw == Map.class) {
+            if (typeArgument(type, 0) != String.class) {
+                throw new IllegalArgumentException("only maps with String keys can be bound - type = " + type);
+            }
+            return new ValueBinding(Kind.MAP, null, of(typeArgument(type, 1), bindings));
+        }
+
+        Kind kind = Kind.of(raw);
+        if (kind == Kind.OBJECT) {
+            return new ValueBinding(kind, ObjectBinding.of(raw, bindings), null);
+        }
+        return new ValueBinding(kind, null, null);
+    }
+
+    private static Type typeArgument(Type type, int index) {
+        if (!(type instanceof ParameterizedType)) {
+            throw new IllegalArgumentException("collection types must be parameterised - type = " + type);
+        }
+        return ((ParameterizedType) type).getActualTypeArguments()[index];
+    }
+
+    /**
+     * The Java types that values can be bound to.
+     */
+    enum Kind {
+        BOOLEAN(boolean.class), BYTE(byte.class), SHORT(short.class), INT(int.class), LONG(long.class), FLOAT(float.class), DOUBLE(double.class),
+        BOXED_BOOLEAN(Boolean.class), BOXED_BYTE(Byte.class), BOXED_SHORT(Short.class), BOXED_INT(Integer.class), BOXED_LONG(Long.class),
+        BOXED_FLOAT(Float.class), BOXED_DOUBLE(Double.class),
+        BIG_INTEGER(BigInteger.class), STRING(String.class), BYTES(byte[].class), LIST(List.class), MAP(Map.class), OBJECT(Object.class);
+
+        final Class<?> type;
+
+        Kind(Class<?> type) {
+            this.type = type;
+        }
+
+        boolean isPrimitive() {
+            return type.isPrimitive();
+        }
+
+        static Kind of(Class<?> type) {
+            for (Kind kind : values()) {
+                if (kind.type == type && kind != OBJECT) {
+                    return kind;
+                }
+            }
+            return OBJECT;
+        }
+    }
+}
@@ -0,0 +1,579 @@
+package jamesl.reactive.msgpack.json;
+
+import jamesl.reactive.msgpack.BufferPool;
+import jamesl.reactive.msgpack.ElementParser;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * {@link ElementParser} that writes every element it receives as JSON to the current output buffer, see
+ * {@link JsonTranscoder}. A single instance handles the whole stream: the number of values left in each open
+ * container, and whether it is a map, are tracked on a stack so that commas, colons and closing brackets are
+ * written without looking ahead. A top level value is complete, and its buffer passed on, once its last nested
+ * value has been written.
+ */
+final class JsonElementParser implements ElementParser<ByteBuffer> {
+    private static final byte[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final long MIN_INSTANT_SECONDS = Instant.MIN.getEpochSecond();
+    private static final long MAX_INSTANT_SECONDS = Instant.MAX.getEpochSecond();
+    private final BufferPool bufferPool;
+    private final Consumer<ByteBuffer> consumer;
+    private final byte[] digits = new byte[20];
+    private ByteBuffer output;
+    // JL the number of values in, and still to come in, each open container, innermost last. Maps count keys and values.
+    private long[] sizes = new long[8];
+    private long[] remaining = new long[8];
+    private boolean[] maps = new boolean[8];
+    private int depth;
+    // JL a streamed payload, and the bytes of a base64 quantum that have not been written yet.
+    private boolean streamingString;
+    private int carry;
+    private int carryLength;
+
+    JsonElementParser(BufferPool bufferPool, Consumer<ByteBuffer> consumer) {
+        this.bufferPool = bufferPool;
+        this.consumer = consumer;
+    }
+
+    @Override
+    public boolean isRoutingNullsViaOnStringEnabled() {
+        return false;
+    }
+
+    @Override
+    public boolean isZeroCopyEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean isRawStreamingEnabled() {
+        return true;
+    }
+
+    @Override
+    public ElementParser<ByteBuffer> onArrayHeader(int numberOfElements) {
+        return onContainer(numberOfElements & 0xffffffffL, false);
+    }
+
+    @Override
+    public ElementParser<ByteBuffer> onMapHeader(int numberOfElements) {
+        return onContainer(2L * (numberOfElements & 0xffffffffL), true);
+    }
+
+    @Override
+    public ElementParser<ByteBuffer> onNull() {
+        boolean key = startScalar();
+        writeAscii("null");
+        return endScalar(key);
+    }
+
+    @Override
+    public ElementParser<ByteBuffer> onBoolean(boolean value) {
+        boolean key = startScalar();
+        writeAscii(value ? "true" : "false");
+        return endScalar(key);
+    }
+
+    @Override
+    public ElementParser<ByteBuffer> onByte(byte value) {
+        return onLong(value);
+    }
+
+    @Override
+    public ElementParser<ByteBuffer> onInt(int value) {
+        return onLong(value);
+    }
+
+    @Override
+    public ElementParser<ByteBuffer> onLong(long value) {
+        boolean key = startScalar();
+        writeLong(value);
+        return endScalar(key);
+    }
+
+    @Override
+    public ElementParser<ByteBuffer> onUnsignedLong(long bits) {
+        if (bits >= 0) {
+            return onLong(bits);
+        }
+
+        boolean key = startScalar();
+        writeAscii(Long.toUnsignedString(bits));
+        return endScalar(key);
+    }
+
+    @Override
+    public ElementParser<ByteBuffer> onBigInteger(BigInteger value) {
+        boolean key = startScalar();
+        writeAscii(value.toString());
+        return endScalar(key);
+    }
+
+    @Override
+    public ElementParser<ByteBuffer> onFloat(float value) {
+        boolean key = startScalar();
+        writeAscii(Float.isNaN(value) || Float.isInfinite(value) ? "null" : Float.toString(value));
+        return endScalar(key);
+    }
+
+    @Override
+    public ElementParser<ByteBuffer> onDouble(double value) {
+        boolean key = startScalar();
+        writeAscii(Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value));
+        return endScalar(key);
+    }
+
+    @Override
+    public ElementParser<ByteBuffer> onString(String value) {
+        return onStringSlice(ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public ElementParser<ByteBuffer> onStringSlice(ByteBuffer value) {
+        beforeValue();
+        put('"');
+        writeEscaped(value);
+        put('"');
+        return afterValue();
+    }
+
+    @Override
+    public ElementParser<ByteBuffer> onRaw(byte[] value) {
+        return onRawSlice(ByteBuffer.wrap(value));
+    }
+
+    @Override
+    public ElementParser<ByteBuffer> onRawSlice(ByteBuffer value) {
+        beforeValue();
+        put('"');
+        writeBase64(value);
+        flushBase64();
+        put('"');
+        return afterValue();
+    }
+
+    @Override
+    public ElementParser<ByteBuffer> onRawStart(int length, boolean string) {
+        beforeValue();
+        put('"');
+        streamingString = string;
+        return this;
+    }
+
+    @Override
+    public ElementParser<ByteBuffer> onRawChunk(ByteBuffer chunk) {
+        if (streamingString) {
+            writeEscaped(chunk);
+        } else {
+            writeBase64(chunk);
+        }
+        return this;
+    }
+
+    @Override
+    public ElementParser<ByteBuffer> onRawEnd() {
+        if (!streamingString) {
+            flushBase64();
+        }
+        put('"');
+        return afterValue();
+    }
+
+    @Override
+    public ElementParser<ByteBuffer> onExtension(byte type, ByteBuffer payload) {
+        if (beforeValue()) {
+            throw new IllegalStateException("ext map keys cannot be written as JSON - type = " + type);
+        }
+
+        writeAscii("{\"type\":");
+        writeLong(type);
+        writeAscii(",\"data\":\"");
+        writeBase64(payload);
+        flushBase64();
+        writeAscii("\"}");
+        return afterValue();
+    }
+
+    @Override
+    public ElementParser<ByteBuffer> onTimestamp(long seconds, int nanos) {
+        if (beforeValue()) {
+            throw new IllegalStateException("timestamp map keys cannot be written as JSON - seconds = " + seconds);
+        }
+
+        put('"');
+        if (seconds >= MIN_INSTANT_SECONDS && seconds <= MAX_INSTANT_SECONDS) {
+            writeInstant(seconds, nanos);
+        } else {
+            // JL beyond what Instant can represent, fall back to decimal seconds.
+            if (seconds < 0 && nanos != 0) {
+                // JL nanos count forwards from seconds, so -2s + 5ns is -1.999999995 rather than -2.000000005.
+                ensure(30);
+                output.put((byte) '-');
+                writeDigits(-(seconds + 1), 1);
+                output.put((byte) '.');
+                writeDigits(1_000_000_000 - nanos, 9);
+            } else {
+                writeLong(seconds);
+                ensure(10);
+                output.put((byte) '.');
+                writeDigits(nanos, 9);
+            }
+        }
+        put('"');
+        return afterValue();
+    }
+
+    @Override
+    public ElementParser<ByteBuffer> reset() {
+        if (output != null) {
+            bufferPool.release(output);
+            output = null;
+        }
+        depth = 0;
+        carryLength = 0;
+        return this;
+    }
+
+    private ElementParser<ByteBuffer> onContainer(long size, boolean map) {
+        if (beforeValue()) {
+            throw new IllegalStateException("container map keys cannot be written as JSON - depth = " + depth);
+        }
+
+        if (size == 0) {
+            put(map ? '{' : '[');
+            put(map ? '}' : ']');
+            return afterValue();
+        }
+
+        if (depth == sizes.length) {
+            sizes = Arrays.copyOf(sizes, depth * 2);
+            remaining = Arrays.copyOf(remaining, depth * 2);
+            maps = Arrays.copyOf(maps, depth * 2);
+        }
+
+        put(map ? '{' : '[');
+        sizes[depth] = size;
+        remaining[depth] = size;
+        maps[depth] = map;
+        depth++;
+        return this;
+    }
+
+    /**
+     * Writes whatever separates the next value from the one before it, acquiring an output buffer for a new top level
+     * value.
+     *
+     * @return {@code true} if the next value is a map key.
+     */
+    private boolean beforeValue() {
+        if (depth == 0) {
+            if (output == null) {
+                output = bufferPool.acquire();
+            }
+            return false;
+        }
+
+        long written = sizes[depth - 1] - remaining[depth - 1];
+        if (!maps[depth - 1]) {
+            if (written > 0) {
+                put(',');
+            }
+            return false;
+        }
+
+        if ((written & 1) == 1) {
+            put(':');
+            return false;
+        }
+
+        if (written > 0) {
+            put(',');
+        }
+        return true;
+    }
+
+    /**
+     * Closes every container that the value just written completes, and passes on the output buffer once the top
+     * level value is complete.
+     *
+     * @return
+     */
+    private ElementParser<ByteBuffer> afterValue() {
+        while (depth > 0) {
+            if (--remaining[depth - 1] > 0) {
+                return this;
+            }
+
+            put(maps[depth - 1] ? '}' : ']');
+            depth--;
+        }
+
+        ByteBuffer json = output;
+        output = null;
+        json.flip();
+        consumer.accept(json);
+        return this;
+    }
+
+    /**
+     * Starts a scalar value, which is quoted when it is a map key as JSON only has string keys.
+     *
+     * @return
+     */
+    private boolean startScalar() {
+        boolean key = beforeValue();
+        if (key) {
+            put('"');
+        }
+        return key;
+    }
+
+    private ElementParser<ByteBuffer> endScalar(boolean key) {
+        if (key) {
+            put('"');
+        }
+        return afterValue();
+    }
+
+    /**
+     * Writes the UTF-8 bytes of {@code value} as the content of a JSON string, copying runs of bytes that need no
+     * escaping in bulk.
+     *
+     * @param value
+     */
+    private void writeEscaped(ByteBuffer value) {
+        int limit = value.limit();
+        int start = value.position();
+        for (int i = start; i < limit; i++) {
+            int b = value.get(i) & 0xff;
+            if (b >= 0x20 && b != '"' && b != '\\') {
+                continue;
+            }
+
+            copy(value, start, i, limit);
+            writeEscape(b);
+            start = i + 1;
+        }
+        copy(value, start, limit, limit);
+    }
+
+    private void writeEscape(int b) {
+        ensure(6);
+        output.put((byte) '\\');
+        switch (b) {
+            case '"':
+            case '\\':
+                output.put((byte) b);
+                break;
+            case '\b':
+                output.put((byte) 'b');
+                break;
+            case '\f':
+                output.put((byte) 'f');
+                break;
+            case '\n':
+                output.put((byte) 'n');
+                break;
+            case '\r':
+                output.put((byte) 'r');
+                break;
+            case '\t':
+                output.put((byte) 't');
+                break;
+            default:
+                output.put((byte) 'u').put((byte) '0').put((byte) '0').put(HEX[b >>> 4]).put(HEX[b & 0xf]);
+                break;
+        }
+    }
+
+    /**
+     * Copies the bytes from {@code from} to {@code to} in {@code value} to the output and then restores the limit
+     * of {@code value} to {@code limit}.
+     *
+     * @param value
+     * @param from
+     * @param to
+     * @param limit
+     */
+    private void copy(ByteBuffer value, int from, int to, int limit) {
+        if (to > from) {
+            ensure(to - from);
+            value.limit(to).position(from);
+            output.put(value);
+            value.limit(limit);
+        }
+    }
+
+    /**
+     * Writes the remaining bytes of {@code value} as base64, after any bytes carried over from the previous chunk of
+     * a streamed payload. Bytes that do not make up a whole quantum are carried over to the next call.
+     *
+     * @param value
+     */
+    private void writeBase64(ByteBuffer value) {
+        int offset = value.position();
+        int limit = value.limit();
+        while (carryLength > 0 && carryLength < 3 && offset < limit) {
+            carry = carry << 8 | value.get(offset++) & 0xff;
+            carryLength++;
+        }
+        if (carryLength == 3) {
+            ensure(4);
+            writeQuantum(carry, 4);
+            carryLength = 0;
+        }
+
+        ensure((limit - offset) / 3 * 4);
+        for (; offset + 3 <= limit; offset += 3) {
+            writeQuantum((value.get(offset) & 0xff) << 16 | (value.get(offset + 1) & 0xff) << 8 | value.get(offset + 2) & 0xff, 4);
+        }
+
+        for (; offset < limit; offset++) {
+            carry = (carryLength == 0 ? 0 : carry << 8) | value.get(offset) & 0xff;
+            carryLength++;
+        }
+    }
+
+    /**
+     * Writes the bytes carried over by {@link JsonElementParser#writeBase64(ByteBuffer)} as a final, padded quantum.
+     */
+    private void flushBase64() {
+        ensure(4);
+        if (carryLength == 1) {
+            writeQuantum(carry << 16, 2);
+            output.put((byte) '=').put((byte) '=');
+        } else if (carryLength == 2) {
+            writeQuantum(carry << 8, 3);
+            output.put((byte) '=');
+        }
+        carryLength = 0;
+    }
+
+    private void writeQuantum(int bits, int numberOfChars) {
+        for (int i = 0; i < numberOfChars; i++) {
+            output.put(BASE64[bits >>> (18 - 6 * i) & 0x3f]);
+        }
+    }
+
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+
+        ensure(20);
+        if (value < 0) {
+            output.put((byte) '-');
+        }
+        writeDigits(Math.abs(value), 1);
+    }
+
+    /**
+     * Writes {@code seconds} and {@code nanos} since the epoch in the format of {@link Instant#toString()}, converting
+     * days to a date in the proleptic Gregorian calendar without going through {@code java.time}.
+     *
+     * @param seconds
+     * @param nanos
+     */
+    private void writeInstant(long seconds, int nanos) {
+        long days = Math.floorDiv(seconds, 86400L);
+        int secondOfDay = (int) Math.floorMod(seconds, 86400L);
+
+        // JL civil date from days since 1970-01-01, counted in 400 year eras that start on March 1st.
+        long z = days + 719468L;
+        long era = Math.floorDiv(z, 146097L);
+        long dayOfEra = z - era * 146097L;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        ensure(40);
+        if (year > 9999) {
+            output.put((byte) '+');
+        } else if (year < 0) {
+            output.put((byte) '-');
+        }
+        writeDigits(Math.abs(year), 4);
+        output.put((byte) '-');
+        writeDigits(month, 2);
+        output.put((byte) '-');
+        writeDigits(day, 2);
+        output.put((byte) 'T');
+        writeDigits(secondOfDay / 3600, 2);
+        output.put((byte) ':');
+        writeDigits(secondOfDay / 60 % 60, 2);
+        output.put((byte) ':');
+        writeDigits(secondOfDay % 60, 2);
+        if (nanos != 0) {
+            // JL as many digits as needed in groups of three, as DateTimeFormatter.ISO_INSTANT does.
+            output.put((byte) '.');
+            if (nanos % 1000000 == 0) {
+                writeDigits(nanos / 1000000, 3);
+            } else if (nanos % 1000 == 0) {
+                writeDigits(nanos / 1000, 6);
+            } else {
+                writeDigits(nanos, 9);
+            }
+        }
+        output.put((byte) 'Z');
+    }
+
+    /**
+     * Writes the non-negative {@code value} padded with leading zeros to at least {@code width} digits. The caller
+     * must have made room for the digits.
+     *
+     * @param value
+     * @param width
+     */
+    private void writeDigits(long value, int width) {
+        int offset = digits.length;
+        long v = value;
+        do {
+            digits[--offset] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        while (digits.length - offset < width) {
+            digits[--offset] = '0';
+        }
+        output.put(digits, offset, digits.length - offset);
+    }
+
+    private void writeAscii(String s) {
+        ensure(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            output.put((byte) s.charAt(i));
+        }
+    }
+
+    private void put(char c) {
+        ensure(1);
+        output.put((byte) c);
+    }
+
+    /**
+     * Makes room for {@code numberOfBytes} more bytes, moving the value written so far to a larger buffer if needed.
+     *
+     * @param numberOfBytes
+     */
+    private void ensure(int numberOfBytes) {
+        if (output.remaining() < numberOfBytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(output.capacity() * 2, output.position() + numberOfBytes));
+            output.flip();
+            larger.put(output);
+            bufferPool.release(output);
+            output = larger;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package jamesl.reactive.msgpack.json;
+
+import jamesl.reactive.msgpack.BufferPool;
+import jamesl.reactive.msgpack.ElementParser;
+import jamesl.reactive.msgpack.ElementParserFactory;
+import jamesl.reactive.msgpack.Unpacker;
+import jamesl.reactive.msgpack.UnpackerOptions;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * Transcodes msgpack to JSON without materialising any values: each top level value is written as UTF-8 JSON
+ * straight into an output buffer as its elements are decoded, and the buffer is emitted once the value is complete.
+ * str payloads are escaped from the input bytes, bin payloads are written as base64 strings, and payloads that span
+ * input buffers are transcoded chunk by chunk as they arrive.
+ *
+ * JSON has no equivalent for some msgpack values, so map keys that are not strings are written as the string of
+ * their JSON value, NaN and infinite floats are written as {@code null}, timestamps as ISO-8601 strings and other
+ * ext values as {@code {"type":n,"data":"<base64>"}}. Maps with container or ext keys, timestamps included, fail the
+ * stream with an {@link IllegalStateException}.
+ *
+ * Output buffers come from a {@link BufferPool}, a value that does not fit is written to a larger buffer of its own,
+ * and should be handed back via {@link JsonTranscoder#release(ByteBuffer)} once they have been written. An instance
+ * is also an {@link ElementParserFactory} for use with an {@link Unpacker} of your own, whose options must leave
+ * zero copy and raw streaming to the parser.
+ */
+public final class JsonTranscoder implements ElementParserFactory<ByteBuffer> {
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final int DEFAULT_MAX_POOLED_BUFFERS = 64;
+    private final BufferPool bufferPool;
+    private final Unpacker<ByteBuffer> unpacker;
+
+    public JsonTranscoder() {
+        this(new BufferPool(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED_BUFFERS));
+    }
+
+    public JsonTranscoder(BufferPool bufferPool) {
+        this(bufferPool, new UnpackerOptions());
+    }
+
+    public JsonTranscoder(BufferPool bufferPool, UnpackerOptions options) {
+        this.bufferPool = bufferPool;
+        this.unpacker = new Unpacker<>(this, options);
+    }
+
+    /**
+     * Transcodes the stream of buffers published by {@code input}. Each emitted buffer is ready to read and holds
+     * the JSON of exactly one top level value.
+     *
+     * @param input
+     * @return
+     */
+    public Flux<ByteBuffer> transcode(Publisher<ByteBuffer> input) {
+        return unpacker.unpack(input);
+    }
+
+    /**
+     * Returns a buffer emitted by {@link JsonTranscoder#transcode(Publisher)} to the pool.
+     *
+     * @param buffer
+     */
+    public void release(ByteBuffer buffer) {
+        bufferPool.release(buffer);
+    }
+
+    @Override
+    public ElementParser<ByteBuffer> firstElementParser(Consumer<ByteBuffer> consumer) {
+        return new JsonElementParser(bufferPool, consumer);
+    }
+}
@@ -0,0 +1,50 @@
+package jamesl.reactive.msgpack.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import jamesl.reactive.msgpack.InputAdapter;
+import jamesl.reactive.msgpack.Unpacker;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author jamesl
+ * @since 1.0
+ *
+ * {@link InputAdapter} that lets {@link Unpacker} decode Netty {@link ByteBuf}s in place. The readable bytes,
+ * from the reader index to the writer index, are exposed through {@link ByteBuf#nioBuffers(int, int)}, so a
+ * {@link CompositeByteBuf} is read component by component without being consolidated and a pooled direct
+ * buffer is read without being copied onto the heap. Frames that span components are reassembled like any
+ * other split frame.
+ *
+ * The {@link Unpacker} takes ownership of every buffer it is given, once a buffer has been decoded, or the stream
+ * is cancelled or fails, its reader index is moved to its writer index and it is released.
+ *
+ * Netty is an optional dependency, it must be on the classpath to use this class.
+ */
+public final class ByteBufInputAdapter implements InputAdapter<ByteBuf> {
+    private static final ByteBufInputAdapter INSTANCE = new ByteBufInputAdapter();
+
+    private ByteBufInputAdapter() {
+    }
+
+    /**
+     * Returns the shared, stateless adapter.
+     *
+     * @return
+     */
+    public static ByteBufInputAdapter byteBufs() {
+        return INSTANCE;
+    }
+
+    @Override
+    public ByteBuffer[] nioBuffers(ByteBuf input) {
+        return input.nioBuffers(input.readerIndex(), input.readableBytes());
+    }
+
+    @Override
+    public void release(ByteBuf input) {
+        input.readerIndex(input.writerIndex());
+        input.release();
+    }
+}
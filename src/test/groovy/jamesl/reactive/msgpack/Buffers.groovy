@@ -0,0 +1,55 @@
+package jamesl.reactive.msgpack
+
+import java.nio.ByteBuffer
+import java.util.function.Function
+
+/**
+ * @author jamesl
+ * @since 1.0
+ */
+class Buffers {
+    /**
+     * Generates a {@link ByteBuffer} and applies {@code mapper} to it.
+     *
+     * @param mapper
+     * @return
+     */
+    static ByteBuffer gen(Function<ByteBuffer, ?> mapper) {
+        return fill(ByteBuffer.allocate(200), mapper)
+    }
+
+    /**
+     * Generates a direct {@link ByteBuffer} and applies {@code mapper} to it.
+     *
+     * @param mapper
+     * @return
+     */
+    static ByteBuffer direct(Function<ByteBuffer, ?> mapper) {
+        return fill(ByteBuffer.allocateDirect(200), mapper)
+    }
+
+    /**
+     * Splits the remaining bytes of {@code buffer} into slices with max length of {@code max}, leaving its position
+     * untouched.
+     *
+     * @param max
+     * @param buffer
+     * @return
+     */
+    static List<ByteBuffer> split(int max, ByteBuffer buffer) {
+        List<ByteBuffer> result = []
+        for (int offset = buffer.position(); offset < buffer.limit(); offset += max) {
+            def slice = buffer.duplicate()
+            slice.limit(Math.min(offset + max, buffer.limit())).position(offset)
+            result << slice.slice()
+        }
+        return result
+    }
+
+    // JL the mapper's result is ignored so closures can end with any statement.
+    private static ByteBuffer fill(ByteBuffer buffer, Function<ByteBuffer, ?> mapper) {
+        mapper.apply(buffer)
+        buffer.flip()
+        return buffer
+    }
+}
@@ -1,5 +1,6 @@
 package jamesl.reactive.msgpack
 
+import java.nio.ByteBuffer
 import java.util.function.Consumer
 
 /**
@@ -8,18 +9,34 @@ import java.util.function.Consumer
  */
 class DebugElementParserFactory implements ElementParserFactory<String> {
     boolean routeNullsViaOnString
+    boolean zeroCopy
+    boolean rawStreaming
+    boolean charSequence
+    boolean primitives
+    Set<String> skippedKeys = []
+    SymbolTable symbolTable
 
     DebugElementParserFactory() {
         this(false)
     }
 
     DebugElementParserFactory(boolean routeNullsViaOnString) {
+        this(routeNullsViaOnString, false)
+    }
+
+    DebugElementParserFactory(boolean routeNullsViaOnString, boolean zeroCopy) {
         this.routeNullsViaOnString = routeNullsViaOnString
+        this.zeroCopy = zeroCopy
     }
 
     @Override
     ElementParser<String> firstElementParser(Consumer<String> consumer) {
-        return new DebugElementParser(consumer, routeNullsViaOnString)
+        def elementParser = primitives ? new PrimitiveDebugElementParser(consumer, routeNullsViaOnString, zeroCopy) : new DebugElementParser(consumer, routeNullsViaOnString, zeroCopy)
+        elementParser.rawStreaming = rawStreaming
+        elementParser.charSequence = charSequence
+        elementParser.skippedKeys = skippedKeys
+        elementParser.symbolTable = symbolTable
+        return elementParser
     }
 
     /**
@@ -28,10 +45,16 @@ class DebugElementParserFactory implements ElementParserFactory<String> {
     static class DebugElementParser implements ElementParser<String> {
         Consumer<String> consumer
         boolean routeNullsViaOnString
+        boolean zeroCopy
+        boolean rawStreaming
+        boolean charSequence
+        Set<String> skippedKeys = []
+        SymbolTable symbolTable
 
-        DebugElementParser(Consumer<String> consumer, boolean routeNullsViaOnString) {
+        DebugElementParser(Consumer<String> consumer, boolean routeNullsViaOnString, boolean zeroCopy) {
             this.consumer = consumer
             this.routeNullsViaOnString = routeNullsViaOnString
+            this.zeroCopy = zeroCopy
         }
 
         @Override
@@ -39,6 +62,26 @@ class DebugElementParserFactory implements ElementParserFactory<String> {
             routeNullsViaOnString
         }
 
+        @Override
+        boolean isZeroCopyEnabled() {
+            zeroCopy
+        }
+
+        @Override
+        boolean isRawStreamingEnabled() {
+            rawStreaming
+        }
+
+        @Override
+        boolean isCharSequenceEnabled() {
+            charSequence
+        }
+
+        @Override
+        SymbolTable symbolTable() {
+            symbolTable
+        }
+
         @Override
         ElementParser<String> onArrayHeader(int numberOfElements) {
             dispatchEvent("onArrayHeader|${numberOfElements}")
@@ -93,6 +136,60 @@ class DebugElementParserFactory implements ElementParserFactory<String> {
         @Override
         ElementParser<String> onString(String value) {
             dispatchEvent("onString|${value}")
+            skippedKeys.contains(value) ? ElementParser.skip(1, this) : this
+        }
+
+        @Override
+        ElementParser<String> onKey(int symbolId) {
+            dispatchEvent("onKey|${symbolId}|${symbolTable.name(symbolId)}")
+        }
+
+        @Override
+        ElementParser<String> onRawSlice(ByteBuffer value) {
+            def raw = new byte[value.remaining()]
+            value.get(raw)
+            dispatchEvent("onRawSlice|${Arrays.toString(raw)}|${value.isReadOnly()}")
+        }
+
+        @Override
+        ElementParser<String> onStringSlice(ByteBuffer value) {
+            def raw = new byte[value.remaining()]
+            value.get(raw)
+            dispatchEvent("onStringSlice|${new String(raw, 'UTF-8')}|${value.isReadOnly()}")
+        }
+
+        @Override
+        ElementParser<String> onCharSequence(CharSequence value) {
+            dispatchEvent("onCharSequence|${value}|${value instanceof String}")
+        }
+
+        @Override
+        ElementParser<String> onRawStart(int length, boolean string) {
+            dispatchEvent("onRawStart|${length}|${string}")
+        }
+
+        @Override
+        ElementParser<String> onRawChunk(ByteBuffer chunk) {
+            def raw = new byte[chunk.remaining()]
+            chunk.get(raw)
+            dispatchEvent("onRawChunk|${Arrays.toString(raw)}")
+        }
+
+        @Override
+        ElementParser<String> onRawEnd() {
+            dispatchEvent("onRawEnd")
+        }
+
+        @Override
+        ElementParser<String> onExtension(byte type, ByteBuffer payload) {
+            def raw = new byte[payload.remaining()]
+            payload.get(raw)
+            dispatchEvent("onExtension|${type}|${Arrays.toString(raw)}|${payload.isReadOnly()}")
+        }
+
+        @Override
+        ElementParser<String> onTimestamp(long seconds, int nanos) {
+            dispatchEvent("onTimestamp|${seconds}|${nanos}")
         }
 
         ElementParser<String> dispatchEvent(String s) {
@@ -100,4 +197,28 @@ class DebugElementParserFactory implements ElementParserFactory<String> {
             this
         }
     }
+
+    /**
+     * Records the exact primitive callbacks instead of relying on their defaults.
+     */
+    static class PrimitiveDebugElementParser extends DebugElementParser {
+        PrimitiveDebugElementParser(Consumer<String> consumer, boolean routeNullsViaOnString, boolean zeroCopy) {
+            super(consumer, routeNullsViaOnString, zeroCopy)
+        }
+
+        @Override
+        ElementParser<String> onFloat(float value) {
+            dispatchEvent("onFloat|${value}")
+        }
+
+        @Override
+        ElementParser<String> onUnsignedInt(long value) {
+            dispatchEvent("onUnsignedInt|${value}")
+        }
+
+        @Override
+        ElementParser<String> onUnsignedLong(long bits) {
+            dispatchEvent("onUnsignedLong|${Long.toUnsignedString(bits)}")
+        }
+    }
 }
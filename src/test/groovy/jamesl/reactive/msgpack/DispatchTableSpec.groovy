@@ -0,0 +1,100 @@
+package jamesl.reactive.msgpack
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+
+/**
+ * @author jamesl
+ * @since 1.0
+ */
+class DispatchTableSpec extends Specification {
+    WireFormatFactory wireFormatFactory
+
+    def setup() {
+        wireFormatFactory = new WireFormatFactory()
+    }
+
+    @Unroll
+    def "table dispatch should match wire format dispatch for head #head"(int head, boolean nullsViaOnString) {
+        given:
+        def frame = frame(head)
+        def wireFormat = wireFormatFactory.newWireFormat(head as byte)
+        def expected = []
+        def actual = []
+
+        expect:
+        DispatchTable.numberOfBytesInFrame(head, frame, 0, frame.limit()) == wireFormat.numberOfBytesInFrame(frame, 0, frame.limit())
+
+        when:
+        wireFormat.parseElement(frame, 0, new DebugElementParserFactory(nullsViaOnString).firstElementParser({ expected << it }))
+        DispatchTable.parseElement(head, frame, 0, new DebugElementParserFactory(nullsViaOnString).firstElementParser({ actual << it }))
+
+        then:
+        actual == expected
+
+        where:
+        [head, nullsViaOnString] << [(0x00..0xff), [false, true]].combinations()
+    }
+
+    @Unroll
+    def "table dispatch should not determine frame length for head #head until the length field is available"(int head) {
+        given:
+        def frame = frame(head)
+        def wireFormat = wireFormatFactory.newWireFormat(head as byte)
+
+        expect:
+        (1..<(wireFormat as WireFormatFactory.RawWireFormat).numberOfBytesInHeader()).every {
+            DispatchTable.numberOfBytesInFrame(head, frame, 0, it) == WireFormat.UNKNOWN_FRAME_LENGTH
+        }
+
+        where:
+        head << [0xc4, 0xc5, 0xc6, 0xd9, 0xda, 0xdb]
+    }
+
+    @Unroll
+    def "table dispatch should not determine frame length for ext head #head until the length field is available"(int head) {
+        given:
+        def frame = frame(head)
+        def wireFormat = wireFormatFactory.newWireFormat(head as byte)
+
+        expect:
+        // JL the header of an ext frame ends with the type byte, which the frame length does not depend on.
+        (1..<(wireFormat as WireFormatFactory.ExtWireFormat).numberOfBytesInHeader() - 1).every {
+            DispatchTable.numberOfBytesInFrame(head, frame, 0, it) == WireFormat.UNKNOWN_FRAME_LENGTH
+        }
+        DispatchTable.numberOfBytesInFrame(head, frame, 0, wireFormat.numberOfBytesInHeader() - 1) == wireFormat.numberOfBytesInHeader() + 3
+
+        where:
+        head << [0xc7, 0xc8, 0xc9]
+    }
+
+    /**
+     * Returns a frame starting with {@code head} whose length fields describe a 3 byte payload.
+     *
+     * @param head
+     * @return
+     */
+    private static ByteBuffer frame(int head) {
+        def buffer = ByteBuffer.allocate(32)
+        buffer.put(head as byte)
+        switch (head) {
+            case [0xc4, 0xc7, 0xd9]:
+                buffer.put(3 as byte)
+                break
+            case [0xc5, 0xc8, 0xda]:
+                buffer.putShort(3 as short)
+                break
+            case [0xc6, 0xc9, 0xdb]:
+                buffer.putInt(3)
+                break
+        }
+        // JL payload bytes that exercise sign handling of every fixed size format.
+        while (buffer.hasRemaining()) {
+            buffer.put(0xa1 as byte)
+        }
+        buffer.flip()
+        return buffer
+    }
+}
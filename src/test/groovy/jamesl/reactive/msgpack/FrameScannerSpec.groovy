@@ -0,0 +1,46 @@
+package jamesl.reactive.msgpack
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+
+import static jamesl.reactive.msgpack.Buffers.gen
+
+/**
+ * @author jamesl
+ * @since 1.0
+ */
+class FrameScannerSpec extends Specification {
+    @Unroll
+    def "find the end of #description"(String description, ByteBuffer buffer, int end) {
+        expect:
+        FrameScanner.endOfValue(buffer, 0, buffer.limit()) == end
+
+        where:
+        description              | buffer                                                                                                    | end
+        "a positive fixint"      | gen { x -> x.put(0x01 as byte).put(0x02 as byte) }                                                         | 1
+        "a str8"                 | gen { x -> x.put(0xd9 as byte).put(3 as byte).put("abc".bytes).put(0x01 as byte) }                         | 5
+        "an empty fixmap"        | gen { x -> x.put(0x80 as byte).put(0x01 as byte) }                                                         | 1
+        "a nested map"           | gen { x -> x.put(0x81 as byte).put(0xa1 as byte).put("k".bytes).put(0x92 as byte).put(0xc0 as byte).put(0xcb as byte).putDouble(1d).put(0x01 as byte) } | 14
+        "an array16 of bin8"     | gen { x -> x.put(0xdc as byte).putShort(2 as short).put(0xc4 as byte).put(1 as byte).put(7 as byte).put(0xc4 as byte).put(0 as byte) } | 8
+        "an incomplete array"    | gen { x -> x.put(0x92 as byte).put(0x01 as byte) }                                                         | FrameScanner.INCOMPLETE
+        "an incomplete str32"    | gen { x -> x.put(0xdb as byte).putInt(10).put("abc".bytes) }                                               | FrameScanner.INCOMPLETE
+        "a split str32 header"   | gen { x -> x.put(0xdb as byte).putShort(0 as short) }                                                       | FrameScanner.INCOMPLETE
+    }
+
+    def "split input into batches of whole messages"() {
+        def message = new Message(checksum: 200, name: "james", interests: ["reactive", "msgpack"], ratings: [pizza: 100, beer: 100, gerkins: 0])
+        def length = message.msgpack().remaining()
+        def input = ByteBuffer.allocate(length * 5 + 3)
+        5.times { input.put(message.msgpack()) }
+        input.put(0xdb as byte).putShort(0 as short).flip()
+
+        when:
+        def batches = FrameScanner.batches(input, 4, length * 2)
+
+        then:
+        batches*.remaining() == [length * 2, length * 2, length + 3]
+        input.position() == 0
+    }
+}
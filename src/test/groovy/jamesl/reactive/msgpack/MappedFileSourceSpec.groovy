@@ -0,0 +1,92 @@
+package jamesl.reactive.msgpack
+
+import reactor.core.publisher.Flux
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.NoSuchFileException
+import java.nio.file.Path
+
+/**
+ * @author jamesl
+ * @since 1.0
+ */
+class MappedFileSourceSpec extends Specification {
+    Path path
+    List<Message> messages
+
+    def setup() {
+        path = Files.createTempFile("msgpack", ".bin")
+        messages = (0..<100).collect { i -> new Message(checksum: i, name: "name${i}", interests: ["reactive", "msgpack"], ratings: [pizza: i, beer: 100]) }
+
+        def out = new ByteArrayOutputStream()
+        messages.each { message ->
+            def buffer = message.msgpack()
+            out.write(buffer.array(), 0, buffer.limit())
+        }
+        Files.write(path, out.toByteArray())
+    }
+
+    def cleanup() {
+        Files.deleteIfExists(path)
+    }
+
+    @Unroll
+    def "replay a file mapped in windows of #windowSize bytes"(int windowSize) {
+        def unpacker = new Unpacker<>(new MessageElementParserFactory())
+
+        when:
+        def m = unpacker.unpack(MappedFileSource.map(path, windowSize)).collectList().block()
+
+        then:
+        m == messages
+
+        where:
+        windowSize << [1, 7, 100, 4096, MappedFileSource.DEFAULT_WINDOW_SIZE]
+    }
+
+    def "map read-only windows covering the whole file"() {
+        when:
+        def windows = MappedFileSource.map(path, 1000).collectList().block()
+
+        then:
+        windows.every { it.isReadOnly() && it.isDirect() }
+        windows.sum { it.remaining() } == Files.size(path)
+        windows.size() == Math.ceil(Files.size(path) / 1000d) as int
+    }
+
+    def "map windows only as they are requested"() {
+        def requests = []
+
+        when:
+        def m = new Unpacker<>(new MessageElementParserFactory())
+                .unpack(MappedFileSource.map(path, 64).doOnRequest { requests << it } as Flux<ByteBuffer>)
+                .take(2)
+                .collectList()
+                .block()
+
+        then:
+        m == messages.take(2)
+        requests.sum() < Files.size(path) / 64
+    }
+
+    def "complete immediately for an empty file"() {
+        Files.write(path, new byte[0])
+
+        expect:
+        new Unpacker<>(new MessageElementParserFactory()).unpack(path).collectList().block() == []
+    }
+
+    def "signal an error for a missing file"() {
+        Files.delete(path)
+
+        when:
+        new Unpacker<>(new MessageElementParserFactory()).unpack(path).blockLast()
+
+        then:
+        def e = thrown(Exception)
+        e instanceof NoSuchFileException || e.cause instanceof NoSuchFileException
+    }
+}
@@ -44,7 +44,7 @@ class MessageElementParserFactory implements ElementParserFactory<Message> {
         @Override
         ElementParser<Message> onArrayHeader(int numberOfElements) {
             this.numberOfElements = numberOfElements
-            this
+            numberOfElements > 0 ? this : new RatingsParser(consumer, message)
         }
 
         @Override
@@ -74,6 +74,11 @@ class MessageElementParserFactory implements ElementParserFactory<Message> {
             this.message = message
         }
 
+        @Override
+        ElementParser<Message> onByte(byte value) {
+            onInt(value)
+        }
+
         @Override
         ElementParser<Message> onInt(int value) {
             message.ratings[name] = value
@@ -89,7 +94,7 @@ class MessageElementParserFactory implements ElementParserFactory<Message> {
         @Override
         ElementParser<Message> onMapHeader(int numberOfElements) {
             this.numberOfElements = numberOfElements
-            this
+            numberOfElements > 0 ? this : new ChecksumParser(consumer, message)
         }
 
         @Override
@@ -111,11 +116,21 @@ class MessageElementParserFactory implements ElementParserFactory<Message> {
             this.message = message
         }
 
+        @Override
+        ElementParser onByte(byte value) {
+            onLong(value)
+        }
+
+        @Override
+        ElementParser onInt(int value) {
+            onLong(value)
+        }
+
         @Override
         ElementParser onLong(long value) {
             message.checksum = value
             consumer.accept(message)
-            super.onLong(value)
+            new NameParser(consumer)
         }
     }
 }
@@ -0,0 +1,25 @@
+package jamesl.reactive.msgpack
+
+/**
+ * @author jamesl
+ * @since 1.0
+ */
+class MessageElementWriter implements ElementWriter<Message> {
+    @Override
+    void write(Message value, ElementOutput output) {
+        output.packString(value.name)
+
+        output.packArrayHeader(value.interests.size())
+        value.interests.forEach { x ->
+            output.packString(x)
+        }
+
+        output.packMapHeader(value.ratings.size())
+        value.ratings.forEach { k, v ->
+            output.packString(k)
+            output.packInt(v)
+        }
+
+        output.packLong(value.checksum)
+    }
+}
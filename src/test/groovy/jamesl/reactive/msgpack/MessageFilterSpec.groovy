@@ -0,0 +1,147 @@
+package jamesl.reactive.msgpack
+
+import reactor.core.publisher.Flux
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+
+import static jamesl.reactive.msgpack.Buffers.gen
+import static jamesl.reactive.msgpack.Buffers.split
+
+/**
+ * @author jamesl
+ * @since 1.0
+ */
+class MessageFilterSpec extends Specification {
+    @Unroll
+    def "match #description"(String description, MessageFilter filter, boolean expected) {
+        def buffer = event("trade", 500, "buy")
+
+        expect:
+        filter.test(buffer, 0, buffer.limit()) == expected
+        buffer.position() == 0
+
+        where:
+        description                    | filter                                                                         | expected
+        "an equal str"                 | KeyPath.of("type").equalTo("trade")                                            | true
+        "an unequal str"               | KeyPath.of("type").equalTo("trades")                                           | false
+        "a str prefix"                 | KeyPath.of("type").startsWith("tr")                                            | true
+        "a longer str prefix"          | KeyPath.of("type").startsWith("trades")                                        | false
+        "an int in range"              | KeyPath.of("qty").between(500, 1000)                                           | true
+        "an int out of range"          | KeyPath.of("qty").between(-10, 499)                                            | false
+        "a str as an int"              | KeyPath.of("type").between(Long.MIN_VALUE, Long.MAX_VALUE)                     | false
+        "an int as a str"              | KeyPath.of("qty").equalTo("500")                                               | false
+        "a nested key"                 | KeyPath.of("order", "side").equalTo("buy")                                     | true
+        "a missing key"                | KeyPath.of("venue").exists()                                                   | false
+        "a key within a scalar"        | KeyPath.of("type", "side").exists()                                            | false
+        "both filters"                 | KeyPath.of("type").equalTo("trade").and(KeyPath.of("qty").between(0, 100))     | false
+        "either filter"                | KeyPath.of("type").equalTo("quote").or(KeyPath.of("qty").between(0, 1000))     | true
+        "a negated filter"             | KeyPath.of("type").equalTo("trade").negate()                                   | false
+    }
+
+    def "match ints of every width"() {
+        def filter = KeyPath.of("n").between(-70000, 70000)
+
+        expect:
+        [70000L, 200L, -5L, -200L, -70000L, 5L].every { n -> test(filter, n) }
+        ![70001L, -70001L, 1L << 40, -(1L << 40)].any { n -> test(filter, n) }
+    }
+
+    @Unroll
+    def "only decode the values that match split into #max byte buffers"(int max) {
+        def metrics = new UnpackerMetrics()
+        def unpacker = new Unpacker<>(new DebugElementParserFactory(), new UnpackerOptions().listener(metrics))
+                .filter(KeyPath.of("type").equalTo("trade"))
+        def buffer = concat(event("quote", 1, "buy"), event("trade", 2, "sell"), event("quote", 3, "buy"), event("trade", 4, "buy"))
+
+        when:
+        def s = unpacker.unpack(Flux.fromIterable(split(max, buffer))).collectList().block()
+
+        then:
+        s.findAll { it.startsWith("onByte") } == ["onByte|2", "onByte|4"]
+        s.count { it == "onString|type" } == 2
+        metrics.messagesFiltered() == 2
+
+        where:
+        max << [1, 2, 3, 7, 200]
+    }
+
+    def "compose filters by filtering a filtered unpacker"() {
+        def unpacker = new Unpacker<>(new DebugElementParserFactory())
+                .filter(KeyPath.of("type").equalTo("trade"))
+                .filter(KeyPath.of("order", "side").equalTo("buy"))
+        def buffer = concat(event("trade", 1, "sell"), event("quote", 2, "buy"), event("trade", 3, "buy"))
+
+        when:
+        def s = unpacker.unpack(Flux.just(buffer)).collectList().block()
+
+        then:
+        s.findAll { it.startsWith("onByte") } == ["onByte|3"]
+    }
+
+    def "fail the stream when a value that spans input buffers exceeds the buffered bytes limit"() {
+        def unpacker = new Unpacker<>(new DebugElementParserFactory(), new UnpackerOptions().maxBufferedBytes(16))
+                .filter(KeyPath.of("type").equalTo("trade"))
+
+        when:
+        unpacker.unpack(Flux.fromIterable(split(8, event("trade", 1, "buy")))).blockLast()
+
+        then:
+        def e = thrown(LimitExceededException)
+        e.limit == LimitExceededException.Limit.BUFFERED_BYTES
+    }
+
+    def "skip a value that exceeds the buffered bytes limit and resync with the next one"() {
+        def metrics = new UnpackerMetrics()
+        def options = new UnpackerOptions().maxBufferedBytes(16).resyncOnLimitExceeded(true).listener(metrics)
+        def unpacker = new Unpacker<>(new DebugElementParserFactory(), options).filter(KeyPath.of("type").equalTo("trade"))
+        def buffer = concat(event("trade", 1, "buy"), gen { x -> x.put(0x81 as byte).put(0xa4 as byte).put("type".bytes).put(0xa5 as byte).put("trade".bytes) })
+
+        when:
+        def s = unpacker.unpack(Flux.fromIterable(split(8, buffer))).collectList().block()
+
+        then:
+        s == ["onMapHeader|1", "onString|type", "onString|trade"]
+        metrics.limitsExceeded() == 1
+    }
+
+    /**
+     * Returns {@code {"type": type, "qty": qty, "order": {"side": side}}}.
+     *
+     * @param type
+     * @param qty
+     * @param side
+     * @return
+     */
+    private static ByteBuffer event(String type, int qty, String side) {
+        gen { x ->
+            x.put(0x83 as byte)
+            str(x, "type")
+            str(x, type)
+            str(x, "qty")
+            qty < 128 ? x.put(qty as byte) : x.put(0xcd as byte).putShort(qty as short)
+            str(x, "order")
+            x.put(0x81 as byte)
+            str(x, "side")
+            str(x, side)
+        }
+    }
+
+    private static boolean test(MessageFilter filter, long n) {
+        def buffer = gen { x ->
+            x.put(0x81 as byte)
+            str(x, "n")
+            new Packer<Long>({ v, output -> output.packLong(v) } as ElementWriter).pack(Flux.just(n)).blockFirst().with { b -> x.put(b) }
+        }
+        filter.test(buffer, 0, buffer.limit())
+    }
+
+    private static void str(ByteBuffer buffer, String s) {
+        buffer.put((0xa0 | s.length()) as byte).put(s.bytes)
+    }
+
+    private static ByteBuffer concat(ByteBuffer... buffers) {
+        gen { x -> buffers.each { b -> x.put(b) } }
+    }
+}
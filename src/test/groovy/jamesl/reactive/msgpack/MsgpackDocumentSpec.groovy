@@ -0,0 +1,118 @@
+package jamesl.reactive.msgpack
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+
+import static jamesl.reactive.msgpack.Buffers.gen
+
+/**
+ * @author jamesl
+ * @since 1.0
+ */
+class MsgpackDocumentSpec extends Specification {
+    def "navigate a message without materialising it"() {
+        def message = new Message(checksum: 200, name: "james", interests: ["reactive", "msgpack"], ratings: [pizza: 100, beer: 90, gerkins: -1])
+        def input = gen { x ->
+            x.put(0x84 as byte)
+            str(x, "checksum").put(0xcc as byte).put(message.checksum as byte)
+            str(x, "name"); str(x, message.name)
+            str(x, "interests").put(0x92 as byte); message.interests.each { str(x, it) }
+            str(x, "ratings").put(0x83 as byte); message.ratings.each { k, v -> str(x, k).put(0xd0 as byte).put(v as byte) }
+        }
+
+        when:
+        def document = MsgpackDocument.parse(input)
+        def root = document.root()
+
+        then:
+        !input.hasRemaining()
+        document.numberOfElements() == 17
+        root.type() == MsgpackValue.Type.MAP
+        root.size() == 4
+        root.get("checksum").asLong() == 200
+        root.get("name").asString() == "james"
+        root.get("name").contentEquals("james")
+        !root.get("name").contentEquals("jame")
+        root.get("interests").size() == 2
+        root.get("interests").get(1).asString() == "msgpack"
+        root.get("ratings").get("beer").asLong() == 90
+        root.get("ratings").get("gerkins").asDouble() == -1d
+        root.get("missing") == null
+        root.keyAt(3).asString() == "ratings"
+        root.valueAt(1) == root.get("name")
+    }
+
+    def "parse consecutive values and leave trailing bytes"() {
+        def input = gen { x -> x.put(0x92 as byte).put(0x01 as byte).put(0x90 as byte).put(0xc3 as byte).put(0x93 as byte) }
+        def parser = new MsgpackDocument.Parser()
+
+        when:
+        def first = parser.parse(input)
+        def second = parser.parse(input)
+        parser.parse(input)
+
+        then:
+        thrown(IllegalArgumentException)
+        first.root().size() == 2
+        first.root().get(0).asLong() == 1
+        first.root().get(1).size() == 0
+        second.root().asBoolean()
+        input.position() == 4
+    }
+
+    @Unroll
+    def "read #description"(String description, ByteBuffer input, Closure read, Object expected) {
+        expect:
+        read(MsgpackDocument.parse(input).root()) == expected
+
+        where:
+        description           | input                                                                              | read                          | expected
+        "nil"                 | gen { x -> x.put(0xc0 as byte) }                                                   | { it.isNil() }                | true
+        "a negative fixint"   | gen { x -> x.put(0xe0 as byte) }                                                   | { it.asLong() }               | -32
+        "a uint32"            | gen { x -> x.put(0xce as byte).putInt(-1) }                                        | { it.asLong() }               | 0xffffffffL
+        "a uint64"            | gen { x -> x.put(0xcf as byte).putLong(-1L) }                                      | { it.asBigInteger() }         | BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE)
+        "a float32"           | gen { x -> x.put(0xca as byte).putFloat(1.5f) }                                    | { it.asDouble() }             | 1.5d
+        "a str16"             | gen { x -> x.put(0xda as byte).putShort(3 as short).put("abc".bytes) }             | { it.asString() }             | "abc"
+        "a non-ASCII str8"    | gen { x -> str(x, "über") }                                                        | { it.contentEquals("über") }  | true
+        "a bin8"              | gen { x -> x.put(0xc4 as byte).put(2 as byte).put(7 as byte).put(8 as byte) }      | { it.asBytes() as List }      | [7, 8]
+        "a fixext2 type"      | gen { x -> x.put(0xd5 as byte).put(-1 as byte).putShort(7 as short) }            | { it.extensionType() }        | -1
+        "an ext8 payload"     | gen { x -> x.put(0xc7 as byte).put(2 as byte).put(3 as byte).put(7 as byte).put(8 as byte) } | { it.asBytes() as List } | [7, 8]
+        "a map16"             | gen { x -> x.put(0xde as byte).putShort(1 as short).put(0x01 as byte).put(0x02 as byte) } | { it.valueAt(0).asLong() } | 2
+    }
+
+    def "reject mismatched types, bad indices and unrecognised frames"() {
+        def root = MsgpackDocument.parse(gen { x -> x.put(0x91 as byte).put(0xa1 as byte).put("a".bytes) }).root()
+
+        when:
+        root.get(0).asLong()
+
+        then:
+        thrown(IllegalStateException)
+
+        when:
+        root.get(1)
+
+        then:
+        thrown(IndexOutOfBoundsException)
+
+        when:
+        MsgpackDocument.parse(gen { x -> x.put(0x91 as byte).put(0xc1 as byte) })
+
+        then:
+        thrown(UnsupportedWireFormatException)
+    }
+
+    /**
+     * Writes {@code value} as a str8 frame.
+     *
+     * @param buffer
+     * @param value
+     * @return
+     */
+    private static ByteBuffer str(ByteBuffer buffer, String value) {
+        def utf8 = value.getBytes("UTF-8")
+        buffer.put(0xd9 as byte).put(utf8.length as byte).put(utf8)
+    }
+}
@@ -0,0 +1,173 @@
+package jamesl.reactive.msgpack
+
+import reactor.core.publisher.Flux
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+
+/**
+ * @author jamesl
+ * @since 1.0
+ */
+class PackerSpec extends Specification {
+    @Unroll
+    def "pack #description using the smallest wire format"(String description, Closure pack, String expected) {
+        def packer = new Packer<String>({ x, output -> pack(output) } as ElementWriter)
+
+        when:
+        def buffer = packer.pack(Flux.just(description)).blockFirst()
+
+        then:
+        hex(buffer) == expected
+
+        where:
+        description   | pack                                                                  | expected
+        "20"          | { ElementOutput x -> x.packLong(20) }                                 | "14"
+        "-5"          | { ElementOutput x -> x.packLong(-5) }                                 | "fb"
+        "200"         | { ElementOutput x -> x.packLong(200) }                                | "ccc8"
+        "60000"       | { ElementOutput x -> x.packLong(60000) }                              | "cdea60"
+        "70000"       | { ElementOutput x -> x.packLong(70000) }                              | "ce00011170"
+        "1L << 40"    | { ElementOutput x -> x.packLong(1L << 40) }                           | "cf0000010000000000"
+        "-100"        | { ElementOutput x -> x.packLong(-100) }                               | "d09c"
+        "-200"        | { ElementOutput x -> x.packLong(-200) }                               | "d1ff38"
+        "-70000"      | { ElementOutput x -> x.packLong(-70000) }                             | "d2fffeee90"
+        "-(1L << 40)" | { ElementOutput x -> x.packLong(-(1L << 40)) }                        | "d3ffffff0000000000"
+        "uint64"      | { ElementOutput x -> x.packBigInteger(BigInteger.ONE.shiftLeft(63)) } | "cf8000000000000000"
+        "nil"         | { ElementOutput x -> x.packNull() }                                   | "c0"
+        "true"        | { ElementOutput x -> x.packBoolean(true) }                            | "c3"
+        "2.5d"        | { ElementOutput x -> x.packDouble(2.5) }                              | "cb4004000000000000"
+        "2.5f"        | { ElementOutput x -> x.packFloat(2.5f) }                              | "ca40200000"
+        "james"       | { ElementOutput x -> x.packString("james") }                          | "a56a616d6573"
+        "é"           | { ElementOutput x -> x.packString("é") }                              | "a2c3a9"
+        "str8"        | { ElementOutput x -> x.packString("x" * 40) }                         | "d928" + "78" * 40
+        "bin8"        | { ElementOutput x -> x.packRaw([1, 2] as byte[]) }                    | "c4020102"
+        "fixarray"    | { ElementOutput x -> x.packArrayHeader(3) }                           | "93"
+        "array16"     | { ElementOutput x -> x.packArrayHeader(20) }                          | "dc0014"
+        "fixmap"      | { ElementOutput x -> x.packMapHeader(3) }                             | "83"
+        "map32"       | { ElementOutput x -> x.packMapHeader(70000) }                         | "df00011170"
+    }
+
+    def "batch small messages into a single buffer"() {
+        def packer = new Packer<>(new MessageElementWriter())
+        def messages = (0..<3).collect { i -> new Message(checksum: i, name: "james", interests: ["reactive", "msgpack"], ratings: [pizza: 100, beer: 100, gerkins: i]) }
+
+        when:
+        def buffers = packer.pack(Flux.fromIterable(messages)).collectList().block()
+
+        then:
+        buffers.size() == 1
+
+        and:
+        unpack(buffers) == messages
+    }
+
+    def "start a new buffer when the current buffer is full"() {
+        def packer = new Packer<>(new MessageElementWriter(), 64)
+        def messages = (0..<10).collect { i -> new Message(checksum: i * 1000, name: "james", interests: ["reactive", "msgpack"], ratings: [pizza: 100, beer: 200, gerkins: i]) }
+
+        when:
+        def buffers = packer.pack(Flux.fromIterable(messages)).collectList().block()
+
+        then:
+        buffers.size() == 10
+        buffers.every { x -> x.limit() <= 64 }
+
+        and: "each buffer holds complete messages"
+        buffers.collect { x -> unpack([x]) }.flatten() == messages
+    }
+
+    def "write messages larger than the buffer size to a larger buffer"() {
+        def packer = new Packer<>(new MessageElementWriter(), 16)
+        def message = new Message(checksum: 200, name: "j" * 100, interests: ["reactive", "msgpack"], ratings: [pizza: 100, beer: 100, gerkins: 0])
+
+        when:
+        def buffers = packer.pack(Flux.just(message)).collectList().block()
+
+        then:
+        buffers.size() == 1
+        unpack(buffers) == [message]
+    }
+
+    @Unroll
+    def "reject a negative #description count"(String description, Closure pack) {
+        def packer = new Packer<String>({ x, output -> pack(output) } as ElementWriter)
+
+        when:
+        packer.pack(Flux.just(description)).blockFirst()
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        description | pack
+        "array"     | { ElementOutput x -> x.packArrayHeader(-1) }
+        "map"       | { ElementOutput x -> x.packMapHeader(Integer.MIN_VALUE) }
+    }
+
+    def "move a message that outgrows a buffer holding earlier messages"() {
+        def packer = new Packer<>(new MessageElementWriter(), 64)
+        def small = new Message(checksum: 1, name: "james", interests: [], ratings: [:])
+        def large = new Message(checksum: 2, name: "j" * 70, interests: ["reactive"], ratings: [pizza: 100])
+
+        when:
+        def buffers = packer.pack(Flux.just(small, large, small)).collectList().block()
+
+        then:
+        buffers.size() == 2
+        buffers[0].limit() <= 64
+        unpack([buffers[0]]) == [small]
+        unpack([buffers[1]]) == [large, small]
+    }
+
+    def "reuse released buffers"() {
+        def bufferPool = new BufferPool(64, 4)
+        def packer = new Packer<>(new MessageElementWriter(), bufferPool)
+        def message = new Message(checksum: 200, name: "james", interests: [], ratings: [:])
+
+        when:
+        def first = packer.pack(Flux.just(message)).blockFirst()
+        packer.release(first)
+        def second = packer.pack(Flux.just(message)).blockFirst()
+
+        then:
+        first.is(second)
+    }
+
+    def "round trip through the unpacker"() {
+        def packer = new Packer<>(new MessageElementWriter(), 128)
+        def unpacker = new Unpacker<>(new MessageElementParserFactory())
+        def messages = (0..<100).collect { i -> new Message(checksum: i * 100000L, name: "james", interests: ["reactive", "msgpack"], ratings: [pizza: 100, beer: -100000, gerkins: i]) }
+
+        when:
+        def result = unpacker.unpack(packer.pack(Flux.fromIterable(messages))).collectList().block()
+
+        then:
+        result == messages
+    }
+
+    /**
+     * Decodes {@code buffers} into messages.
+     *
+     * @param buffers
+     * @return
+     */
+    private static List<Message> unpack(List<ByteBuffer> buffers) {
+        new Unpacker<>(new MessageElementParserFactory()).unpack(Flux.fromIterable(buffers).map { x -> x.duplicate() }).collectList().block()
+    }
+
+    /**
+     * Returns the remaining bytes of {@code buffer} as hex.
+     *
+     * @param buffer
+     * @return
+     */
+    private static String hex(ByteBuffer buffer) {
+        def sb = new StringBuilder()
+        def duplicate = buffer.duplicate()
+        while (duplicate.hasRemaining()) {
+            sb.append(String.format("%02x", duplicate.get()))
+        }
+        sb.toString()
+    }
+}
@@ -0,0 +1,88 @@
+package jamesl.reactive.msgpack
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+
+/**
+ * @author jamesl
+ * @since 1.0
+ */
+class StringCacheSpec extends Specification {
+    @Unroll
+    def "return the cached instance for repeated #description payloads"(String description, ByteBuffer buffer) {
+        def stringCache = new StringCache()
+
+        when:
+        def first = stringCache.get(buffer, 1, 5)
+        def second = stringCache.get(buffer, 7, 5)
+
+        then:
+        first == "pizza"
+        second.is(first)
+        stringCache.hits() == 1
+        stringCache.misses() == 1
+
+        where:
+        description | buffer
+        "heap"      | fill(ByteBuffer.allocate(12))
+        "direct"    | fill(ByteBuffer.allocateDirect(12))
+    }
+
+    def "distinguish payloads with equal hashes"() {
+        def stringCache = new StringCache(1, 8, StringCache.Eviction.REPLACE)
+        def buffer = ByteBuffer.wrap("AaBB".bytes)
+
+        expect: "'Aa' and 'BB' have the same hash"
+        stringCache.get(buffer, 0, 2) == "Aa"
+        stringCache.get(buffer, 2, 2) == "BB"
+        stringCache.hits() == 0
+    }
+
+    @Unroll
+    def "#eviction the resident entry when a miss collides with it"(StringCache.Eviction eviction, String cached) {
+        def stringCache = new StringCache(1, 8, eviction)
+        def buffer = ByteBuffer.wrap("beerwine".bytes)
+
+        when:
+        stringCache.get(buffer, 0, 4)
+        stringCache.get(buffer, 4, 4)
+        def hits = stringCache.hits()
+        stringCache.get(buffer, cached == "beer" ? 0 : 4, 4)
+
+        then:
+        stringCache.hits() == hits + 1
+
+        where:
+        eviction                    | cached
+        StringCache.Eviction.REPLACE | "wine"
+        StringCache.Eviction.RETAIN  | "beer"
+    }
+
+    def "round the size up to a power of two"() {
+        expect:
+        new StringCache(1000, 8, StringCache.Eviction.REPLACE).size() == 1024
+        new StringCache(1, 8, StringCache.Eviction.REPLACE).size() == 1
+    }
+
+    def "only cache payloads up to the max length"() {
+        def stringCache = new StringCache(16, 4, StringCache.Eviction.REPLACE)
+
+        expect:
+        stringCache.isCacheable(4)
+        !stringCache.isCacheable(5)
+    }
+
+    /**
+     * Fills {@code buffer} with two fixstr "pizza" elements.
+     *
+     * @param buffer
+     * @return
+     */
+    private static ByteBuffer fill(ByteBuffer buffer) {
+        buffer.put(0xa5 as byte).put("pizza".bytes).put(0xa5 as byte).put("pizza".bytes)
+        buffer.flip()
+        return buffer
+    }
+}
@@ -0,0 +1,68 @@
+package jamesl.reactive.msgpack
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+
+/**
+ * @author jamesl
+ * @since 1.0
+ */
+class StringDecoderSpec extends Specification {
+    @Unroll
+    def "decode #description from a #bufferType buffer"(String description, byte[] bytes, String bufferType) {
+        def buffer = buffer(bufferType, bytes)
+        def stringDecoder = new StringDecoder()
+
+        expect:
+        stringDecoder.decode(buffer, 3, bytes.length) == new String(bytes, StandardCharsets.UTF_8)
+        stringDecoder.charSequence(buffer, 3, bytes.length).toString() == new String(bytes, StandardCharsets.UTF_8)
+        WireFormatFactory.RawWireFormat.str(buffer, 3, bytes.length) == new String(bytes, StandardCharsets.UTF_8)
+
+        where:
+        [description, bytes, bufferType] << [
+                [
+                        ["an empty string", "".bytes],
+                        ["a short ASCII string", "abc".bytes],
+                        ["a long ASCII string", ("reactive-msgpack" * 5).bytes],
+                        ["a non-ASCII byte after eight ASCII bytes", "abcdefghé".getBytes(StandardCharsets.UTF_8)],
+                        ["a non-ASCII string", "über café ☕".getBytes(StandardCharsets.UTF_8)],
+                        ["malformed UTF-8", [0x61, 0xc3, 0x28, 0xff] as byte[]]
+                ],
+                ["heap", "direct"]
+        ].combinations().collect { pair, type -> [pair[0], pair[1], type] }
+    }
+
+    def "reuse an ASCII view that hashes and compares like a string"() {
+        def buffer = buffer("direct", "namechecksum".bytes)
+        def stringDecoder = new StringDecoder()
+        def fields = [name: 1, checksum: 2]
+
+        when:
+        def name = stringDecoder.charSequence(buffer, 3, 4)
+
+        then:
+        name.hashCode() == "name".hashCode()
+        name == "name"
+        fields[name] == 1
+
+        when:
+        def checksum = stringDecoder.charSequence(buffer, 7, 8)
+
+        then:
+        checksum.is(name)
+        fields[checksum] == 2
+        checksum.charAt(7) == 'm' as char
+        checksum.subSequence(0, 5) == "check"
+    }
+
+    private static ByteBuffer buffer(String type, byte[] bytes) {
+        def buffer = type == "heap" ? ByteBuffer.allocate(bytes.length + 6) : ByteBuffer.allocateDirect(bytes.length + 6)
+        buffer.position(3)
+        buffer.put(bytes)
+        buffer.clear()
+        return buffer
+    }
+}
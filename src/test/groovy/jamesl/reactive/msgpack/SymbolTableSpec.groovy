@@ -0,0 +1,63 @@
+package jamesl.reactive.msgpack
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+
+/**
+ * @author jamesl
+ * @since 1.0
+ */
+class SymbolTableSpec extends Specification {
+    @Unroll
+    def "look up names in place in #description buffers"(String description, ByteBuffer buffer) {
+        def symbolTable = SymbolTable.of("pizza", "beer", "gerkins", "café")
+
+        expect:
+        symbolTable.lookup(buffer, 1, 4) == 1
+        symbolTable.lookup(buffer, 5, 7) == 2
+        symbolTable.lookup(buffer, 12, 5) == 3
+        symbolTable.lookup(buffer, 1, 3) == SymbolTable.NOT_FOUND
+        symbolTable.lookup(buffer, 0, 17) == SymbolTable.NOT_FOUND
+        symbolTable.name(2) == "gerkins"
+        symbolTable.size() == 4
+
+        where:
+        description | buffer
+        "heap"      | fill(ByteBuffer.allocate(17))
+        "direct"    | fill(ByteBuffer.allocateDirect(17))
+    }
+
+    def "place every name of a large table in its own slot"() {
+        def names = (0..<2000).collect { "field" + it }
+        names << "Aa" << "BB"
+
+        when: "'Aa' and 'BB' have the same String hash"
+        def symbolTable = SymbolTable.of(names)
+
+        then:
+        names.withIndex().every { name, i -> symbolTable.id(name) == i }
+        symbolTable.id("field2000") == SymbolTable.NOT_FOUND
+    }
+
+    def "build an empty table"() {
+        expect:
+        SymbolTable.of().id("") == SymbolTable.NOT_FOUND
+        SymbolTable.of("").id("") == 0
+    }
+
+    def "reject duplicate names"() {
+        when:
+        SymbolTable.of("beer", "pizza", "beer")
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private static ByteBuffer fill(ByteBuffer buffer) {
+        buffer.put(0 as byte).put("beer".bytes).put("gerkins".bytes).put("café".getBytes("UTF-8"))
+        buffer.flip()
+        return buffer
+    }
+}
@@ -0,0 +1,127 @@
+package jamesl.reactive.msgpack
+
+import reactor.core.publisher.Flux
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+
+import static jamesl.reactive.msgpack.Buffers.gen
+import static jamesl.reactive.msgpack.Buffers.split
+
+/**
+ * @author jamesl
+ * @since 1.0
+ */
+class UnpackerLimitsSpec extends Specification {
+    @Unroll
+    def "fail with #limit when split into #max byte buffers"(LimitExceededException.Limit limit, UnpackerOptions options, ByteBuffer buffer, long value, int max) {
+        def unpacker = new Unpacker<>(new DebugElementParserFactory(), options)
+
+        when:
+        unpacker.unpack(Flux.fromIterable(split(max, buffer))).collectList().block()
+
+        then:
+        def e = thrown(LimitExceededException)
+        e.limit == limit
+        e.value == value
+
+        where:
+        [limit, options, buffer, value, max] << [
+                [LimitExceededException.Limit.PAYLOAD_LENGTH, new UnpackerOptions().maxPayloadLength(4), gen { x -> x.put(0xc4 as byte).put(5 as byte).put(new byte[5]) }, 5L],
+                [LimitExceededException.Limit.PAYLOAD_LENGTH, new UnpackerOptions().maxPayloadLength(4), gen { x -> x.put(0xc9 as byte).putInt(5).put(1 as byte).put(new byte[5]) }, 5L],
+                [LimitExceededException.Limit.CONTAINER_SIZE, new UnpackerOptions().maxContainerSize(2), gen { x -> x.put(0x93 as byte).put(1 as byte).put(2 as byte).put(3 as byte) }, 3L],
+                [LimitExceededException.Limit.CONTAINER_SIZE, new UnpackerOptions().maxContainerSize(2), gen { x -> x.put(0xde as byte).putShort(3 as short).put(new byte[6]) }, 3L],
+                [LimitExceededException.Limit.DEPTH, new UnpackerOptions().maxDepth(2), gen { x -> x.put(0x91 as byte).put(0xdc as byte).putShort(1 as short).put(0x91 as byte).put(1 as byte) }, 3L],
+                [LimitExceededException.Limit.BUFFERED_BYTES, new UnpackerOptions().maxBufferedBytes(32), gen { x -> x.put(0xc6 as byte).putInt(40).put(new byte[40]) }, 45L],
+        ].collectMany { row -> [1, 3, 20].collect { row + it } }
+    }
+
+    def "decode frames within the limits"() {
+        def options = new UnpackerOptions().maxPayloadLength(4).maxContainerSize(2).maxDepth(2).maxBufferedBytes(9)
+        def unpacker = new Unpacker<>(new DebugElementParserFactory(), options)
+        def buffer = gen { x ->
+            x.put(0x92 as byte).put(0x91 as byte).put(0xa4 as byte).put("abcd".bytes).put(0x81 as byte).put(1 as byte).put(2 as byte)
+            x.put(0xcb as byte).putDouble(1.5d)
+        }
+
+        when:
+        def s = unpacker.unpack(Flux.fromIterable(split(1, buffer))).collectList().block()
+
+        then:
+        s == ["onArrayHeader|2", "onArrayHeader|1", "onString|abcd", "onMapHeader|1", "onByte|1", "onByte|2", "onDouble|1.5"]
+    }
+
+    def "stream payloads larger than the buffered bytes limit when raw streaming is enabled"() {
+        def unpacker = new Unpacker<>(new DebugElementParserFactory(rawStreaming: true), new UnpackerOptions().maxBufferedBytes(4))
+        def buffer = gen { x -> x.put(0xc4 as byte).put(6 as byte).put([1, 2, 3, 4, 5, 6] as byte[]) }
+
+        when:
+        def s = unpacker.unpack(Flux.fromIterable(split(4, buffer))).collectList().block()
+
+        then:
+        s.first() == "onRawStart|6|false"
+        s.last() == "onRawEnd"
+    }
+
+    @Unroll
+    def "reject a #description without allocating for it"(String description, ByteBuffer header, LimitExceededException.Limit limit, long value) {
+        def unpacker = new Unpacker<>(new DebugElementParserFactory())
+
+        when:
+        unpacker.unpack(Flux.just(header)).collectList().block()
+
+        then:
+        def e = thrown(LimitExceededException)
+        e.limit == limit
+        e.value == value
+
+        where:
+        description                | header                                                   | limit                                          | value
+        "bin32 of 4 GB"            | gen { x -> x.put(0xc6 as byte).putInt(-1) }              | LimitExceededException.Limit.PAYLOAD_LENGTH    | 0xffffffffL
+        "str32 of 2 GB"            | gen { x -> x.put(0xdb as byte).putInt(Integer.MIN_VALUE) } | LimitExceededException.Limit.PAYLOAD_LENGTH  | 0x80000000L
+        "ext32 of 4 GB"            | gen { x -> x.put(0xc9 as byte).putInt(-1).put(1 as byte) } | LimitExceededException.Limit.PAYLOAD_LENGTH  | 0xffffffffL
+        "array32 of 2^32-1 values" | gen { x -> x.put(0xdd as byte).putInt(-1) }              | LimitExceededException.Limit.CONTAINER_SIZE    | 0xffffffffL
+        "map32 of 2^31 entries"    | gen { x -> x.put(0xdf as byte).putInt(Integer.MIN_VALUE) } | LimitExceededException.Limit.CONTAINER_SIZE  | 0x80000000L
+    }
+
+    @Unroll
+    def "resync after #description split into #max byte buffers"(String description, UnpackerOptions options, Closure corrupt, List<String> events, int max) {
+        def metrics = new UnpackerMetrics()
+        def unpacker = new Unpacker<>(new DebugElementParserFactory(), options.resyncOnLimitExceeded(true).listener(metrics))
+        def buffer = gen { x ->
+            x.put(1 as byte)
+            corrupt(x)
+            x.put(0x92 as byte).put(7 as byte).put(8 as byte)
+        }
+
+        when:
+        def s = unpacker.unpack(Flux.fromIterable(split(max, buffer))).collectList().block()
+
+        then:
+        s == ["onByte|1"] + events + ["onArrayHeader|2", "onByte|7", "onByte|8"]
+        metrics.limitsExceeded() == 1
+
+        where:
+        [description, options, corrupt, events, max] << [
+                ["a long payload", new UnpackerOptions().maxPayloadLength(4),
+                 { x -> x.put(0x93 as byte).put(2 as byte).put(0xc6 as byte).putInt(50).put(new byte[50]).put(3 as byte) }, ["onArrayHeader|3", "onByte|2"]],
+                ["a long nested payload", new UnpackerOptions().maxPayloadLength(4),
+                 { x -> x.put(0x81 as byte).put(0xa1 as byte).put("k".bytes).put(0x91 as byte).put(0xc6 as byte).putInt(10).put(new byte[10]) }, ["onMapHeader|1", "onString|k", "onArrayHeader|1"]],
+                ["a large container", new UnpackerOptions().maxContainerSize(2),
+                 { x -> x.put(0x92 as byte).put(0x93 as byte).put([4, 5, 6] as byte[]).put(0x80 as byte) }, ["onArrayHeader|2"]],
+                ["deep nesting", new UnpackerOptions().maxDepth(2),
+                 { x -> x.put(0x92 as byte).put(0x91 as byte).put(0x91 as byte).put(5 as byte).put(6 as byte) }, ["onArrayHeader|2", "onArrayHeader|1"]],
+                ["a long split frame", new UnpackerOptions().maxBufferedBytes(40),
+                 { x -> x.put(0xc4 as byte).put(60 as byte).put(new byte[60]) }, []],
+        ].collectMany { row -> [1, 7, 30].collect { row + it } }
+    }
+
+    def "validate limits"() {
+        when:
+        new UnpackerOptions().maxDepth(-1)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
@@ -0,0 +1,83 @@
+package jamesl.reactive.msgpack
+
+import reactor.core.publisher.Flux
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+
+/**
+ * @author jamesl
+ * @since 1.0
+ */
+class UnpackerMetricsSpec extends Specification {
+    def message = new Message(checksum: 200, name: "james", interests: ["reactive", "msgpack"], ratings: [pizza: 100, beer: 100, gerkins: 0])
+
+    def "count what is decoded from a stream of buffers"() {
+        def metrics = new UnpackerMetrics()
+        def unpacker = new Unpacker<>(new MessageElementParserFactory(), new UnpackerOptions().listener(metrics))
+        def length = message.msgpack().remaining()
+        // JL the second message is split inside the "reactive" str8 frame.
+        def buffers = [message.msgpack(), slice(message.msgpack(), 0, 12), slice(message.msgpack(), 12, length)]
+
+        when:
+        def m = unpacker.unpack(Flux.fromIterable(buffers)).collectList().block()
+
+        then:
+        m == [message, message]
+        metrics.elementsByWireFormat() == [Array16: 2L, Int32: 6L, Int64: 2L, Map16: 2L, Str8: 12L]
+        metrics.elements() == 24
+        metrics.bytes() == 2 * length
+        metrics.inputs() == 3
+        metrics.splitFrames() == 1
+        metrics.splitFrameBytes() == 10
+        metrics.messages() == 2
+        metrics.outputQueueHighWaterMark() == 1
+        metrics.inputDecodeNanos().count() == 3
+    }
+
+    def "count what is decoded by the legacy unpack method"() {
+        def metrics = new UnpackerMetrics()
+        def unpacker = new Unpacker<>(new DebugElementParserFactory(), new UnpackerOptions().listener(metrics))
+
+        when:
+        def s = Flux.from(unpacker.unpack(message.msgpack())).collectList().block()
+
+        then:
+        s.size() == 12
+        metrics.messages() == 12
+        metrics.outputQueueHighWaterMark() == 12
+        metrics.inputs() == 1
+    }
+
+    def "time each input"() {
+        def histogram = new LatencyHistogram()
+
+        when:
+        (1..1000).each { histogram.record(it * 1000L) }
+
+        then:
+        histogram.count() == 1000
+        Math.abs(histogram.valueAtPercentile(50) - 500_000) < 500_000 * 0.07
+        Math.abs(histogram.valueAtPercentile(99) - 990_000) < 990_000 * 0.07
+        histogram.max() >= 1_000_000
+        histogram.max() < 1_000_000 * 1.07
+    }
+
+    def "record small values exactly"() {
+        def histogram = new LatencyHistogram()
+
+        when:
+        [0, 1, 31, -5].each { histogram.record(it) }
+
+        then:
+        histogram.valueAtPercentile(25) == 0
+        histogram.valueAtPercentile(75) == 1
+        histogram.max() == 31
+        new LatencyHistogram().max() == 0
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int start, int end) {
+        buffer.limit(end).position(start)
+        buffer.slice()
+    }
+}
@@ -3,14 +3,23 @@ package jamesl.reactive.msgpack
 import groovy.util.logging.Slf4j
 import io.netty.buffer.Unpooled
 import org.reactivestreams.Publisher
+import org.reactivestreams.Subscriber
+import org.reactivestreams.Subscription
 import reactor.core.publisher.Flux
+import reactor.core.scheduler.Schedulers
 import spock.lang.Specification
 import spock.lang.Unroll
+import spock.util.concurrent.PollingConditions
 
 import java.nio.ByteBuffer
-import java.util.function.Function
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.Consumer
 import java.util.stream.Collectors
 
+import static jamesl.reactive.msgpack.Buffers.direct
+import static jamesl.reactive.msgpack.Buffers.gen
+
 /**
  * @author jamesl
  * @since 1.0
@@ -112,6 +121,36 @@ onLong|200""".toString()
         m == message
     }
 
+    def "decode repeated keys to the same string instances when a string cache is enabled"() {
+        def stringCaches = []
+        def options = new UnpackerOptions().stringCache({ new StringCache().with { stringCaches << it; it } })
+        def unpacker = new Unpacker<>(new MessageElementParserFactory(), options)
+        def message = new Message(checksum: 200, name: "james", interests: ["reactive", "msgpack"], ratings: [pizza: 100, beer: 100, gerkins: 0])
+
+        when:
+        def m = unpacker.unpack(Flux.fromIterable(randomSplit(4, message.msgpack()) + randomSplit(4, message.msgpack()))).collectList().block()
+
+        then:
+        m == [message, message]
+        [m[0].ratings.keySet().toList(), m[1].ratings.keySet().toList()].transpose().every { x, y -> x.is(y) }
+        stringCaches.sum { it.hits() } == 6
+        stringCaches.sum { it.misses() } == 6
+    }
+
+    @Unroll
+    def "deliver #description with exact primitive callbacks when overridden"(String description, ByteBuffer buffer, String message, String defaultMessage) {
+        expect:
+        unpack(new DebugElementParserFactory(primitives: true), buffer).blockFirst() == message
+        unpack(new DebugElementParserFactory(), buffer.rewind()).blockFirst() == defaultMessage
+
+        where:
+        description     | buffer                                                   | message                               | defaultMessage
+        "a float32"     | gen { x -> x.put(0xca as byte).putFloat(2.345f) }        | "onFloat|2.345"                       | "onDouble|2.3450000286102295"
+        "a uint32"      | gen { x -> x.put(0xce as byte).putInt(-1) }              | "onUnsignedInt|4294967295"            | "onLong|4294967295"
+        "a small uint64"| gen { x -> x.put(0xcf as byte).putLong(20L) }            | "onUnsignedLong|20"                   | "onBigInteger|20"
+        "a large uint64"| gen { x -> x.put(0xcf as byte).putLong(-1L) }            | "onUnsignedLong|18446744073709551615" | "onBigInteger|18446744073709551615"
+    }
+
     def "allow ElementParser to control routing of null values"() {
         def buffer = gen { x -> x.put(0xc0 as byte) }
         ElementParserFactory<String> elementParserFactory = new DebugElementParserFactory(true)
@@ -123,16 +162,428 @@ onLong|200""".toString()
         s == "onString|null"
     }
 
-    /**
-     * Generates a {@link ByteBuffer} and applies {@code mapper} to it.
-     *
-     * @param mapper
-     * @return
-     */
-    ByteBuffer gen(Function<ByteBuffer, ByteBuffer> mapper) {
-        def buffer = ByteBuffer.allocate(200)
-        mapper.andThen { x -> x.flip() }.apply(buffer)
-        return buffer
+    @Unroll
+    def "deliver raw and string payloads as read-only views when zero copy is enabled"(ByteBuffer buffer, String message) {
+        ElementParserFactory<String> elementParserFactory = new DebugElementParserFactory(false, true)
+
+        when:
+        def s = unpack(elementParserFactory, buffer).collect(Collectors.joining()).block()
+
+        then:
+        s == message
+
+        where:
+        buffer                                                                                  | message
+        gen { x -> x.put(0xc4 as byte).put(2 as byte).put(10 as byte).put(12 as byte) }         | "onRawSlice|[10, 12]|true"
+        gen { x -> x.put(0xc6 as byte).putInt(2).put(30 as byte).put(32 as byte) }              | "onRawSlice|[30, 32]|true"
+        gen { x -> x.put(0xa5 as byte).put("james".bytes) }                                     | "onStringSlice|james|true"
+        gen { x -> x.put(0xd9 as byte).put("james".length() as byte).put("james".bytes) }       | "onStringSlice|james|true"
+        direct { x -> x.put(0xda as byte).putShort(5 as short).put("james".bytes) }             | "onStringSlice|james|true"
+    }
+
+    def "copy raw and string payloads out of direct buffers"() {
+        ElementParserFactory<String> elementParserFactory = new DebugElementParserFactory()
+        def buffer = direct { x -> x.put(0xc4 as byte).put(2 as byte).put(10 as byte).put(12 as byte).put(0xa5 as byte).put("james".bytes) }
+
+        when:
+        def s = unpack(elementParserFactory, buffer).collect(Collectors.joining("\n")).block()
+
+        then:
+        s == """onRaw|[10, 12]
+onString|james""".toString()
+    }
+
+    def "deliver strings as char sequences when enabled"() {
+        ElementParserFactory<String> elementParserFactory = new DebugElementParserFactory(charSequence: true)
+        def buffer = direct { x ->
+            x.put(0xa5 as byte).put("james".bytes)
+            x.put(0xdb as byte).putInt(5).put("café".getBytes("UTF-8"))
+            x.put(0xc0 as byte)
+        }
+
+        when:
+        def s = unpack(elementParserFactory, buffer).collect(Collectors.joining("\n")).block()
+
+        then:
+        s == """onCharSequence|james|false
+onCharSequence|café|true
+onNull""".toString()
+    }
+
+    @Unroll
+    def "decode #description and the value that follows it"(String description, ByteBuffer buffer, String message) {
+        when:
+        def s = unpack(new DebugElementParserFactory(), buffer).collect(Collectors.joining("\n")).block()
+
+        then:
+        s == "${message}\nonByte|1".toString()
+
+        where:
+        description               | buffer                                                                                               | message
+        "a fixext1"               | gen { x -> x.put(0xd4 as byte).put(5 as byte).put(9 as byte).put(1 as byte) }                        | "onExtension|5|[9]|true"
+        "a fixext16"              | gen { x -> x.put(0xd8 as byte).put(5 as byte).put(new byte[16]).put(1 as byte) }                     | "onExtension|5|${[0] * 16}|true"
+        "an ext8"                 | gen { x -> x.put(0xc7 as byte).put(3 as byte).put(-2 as byte).put([7, 8, 9] as byte[]).put(1 as byte) } | "onExtension|-2|[7, 8, 9]|true"
+        "an ext16"                | gen { x -> x.put(0xc8 as byte).putShort(2 as short).put(5 as byte).put([7, 8] as byte[]).put(1 as byte) } | "onExtension|5|[7, 8]|true"
+        "an ext32"                | gen { x -> x.put(0xc9 as byte).putInt(0).put(5 as byte).put(1 as byte) }                             | "onExtension|5|[]|true"
+        "a timestamp32"           | gen { x -> x.put(0xd6 as byte).put(-1 as byte).putInt(-1).put(1 as byte) }                           | "onTimestamp|4294967295|0"
+        "a timestamp64"           | gen { x -> x.put(0xd7 as byte).put(-1 as byte).putLong((999999999L << 34) | 0x3ffffffffL).put(1 as byte) } | "onTimestamp|17179869183|999999999"
+        "a timestamp96"           | gen { x -> x.put(0xc7 as byte).put(12 as byte).put(-1 as byte).putInt(5).putLong(-62135596800L).put(1 as byte) } | "onTimestamp|-62135596800|5"
+        "a malformed timestamp"   | gen { x -> x.put(0xc7 as byte).put(3 as byte).put(-1 as byte).put([7, 8, 9] as byte[]).put(1 as byte) } | "onExtension|-1|[7, 8, 9]|true"
+    }
+
+    @Unroll
+    def "deliver known keys by symbol id split into #max byte buffers with zero copy #zeroCopy"(int max, boolean zeroCopy) {
+        def symbolTable = SymbolTable.of("pizza", "beer", "gerkins")
+        def unpacker = new Unpacker<>(new DebugElementParserFactory(symbolTable: symbolTable, zeroCopy: zeroCopy), new UnpackerOptions().splitFrameThreshold(0))
+        def buffer = gen { x ->
+            x.put(0x83 as byte)
+            x.put(0xa4 as byte).put("beer".bytes).put(1 as byte)
+            x.put(0xd9 as byte).put(7 as byte).put("gerkins".bytes).put(2 as byte)
+            x.put(0xa4 as byte).put("wine".bytes).put(3 as byte)
+        }
+
+        when:
+        def s = unpacker.unpack(Flux.fromIterable(randomSplit(max, buffer))).collectList().block()
+
+        then:
+        s == ["onMapHeader|3", "onKey|1|beer", "onByte|1", "onKey|2|gerkins", "onByte|2", zeroCopy ? "onStringSlice|wine|true" : "onString|wine", "onByte|3"]
+
+        where:
+        [max, zeroCopy] << [[1, 3, 200], [false, true]].combinations()
+    }
+
+    def "decode ext values with the extension decoders registered in the options"() {
+        def options = new UnpackerOptions()
+                .extensionDecoder(5 as byte, { type, buffer, offset, length, elementParser -> elementParser.onLong(buffer.getShort(offset)) } as ExtensionDecoder)
+                .extensionDecoder(ExtensionDecoder.TIMESTAMP_TYPE, null)
+        def unpacker = new Unpacker<>(new DebugElementParserFactory(), options)
+        def buffer = gen { x ->
+            x.put(0xd5 as byte).put(5 as byte).putShort(300 as short)
+            x.put(0xd6 as byte).put(-1 as byte).putInt(1)
+        }
+
+        when:
+        def s = unpacker.unpack(buffer).collectList().block()
+
+        then:
+        s == ["onLong|300", "onExtension|-1|[0, 0, 0, 1]|true"]
+        options.extensionDecoder(6 as byte) == null
+    }
+
+    def "pass timestamps as their original payload to parsers that only handle ext values"() {
+        def elementParserFactory = new ElementParserFactory<String>() {
+            @Override
+            ElementParser<String> firstElementParser(Consumer<String> consumer) {
+                return new DefaultElementParser<String>() {
+                    @Override
+                    ElementParser<String> onExtension(byte type, ByteBuffer payload) {
+                        def raw = new byte[payload.remaining()]
+                        payload.get(raw)
+                        consumer.accept("onExtension|${type}|${Arrays.toString(raw)}".toString())
+                        return this
+                    }
+                }
+            }
+        }
+        def unpacker = new Unpacker<>(elementParserFactory)
+        def buffer = gen { x ->
+            x.put(0xd6 as byte).put(-1 as byte).putInt(1)
+            x.put(0xd7 as byte).put(-1 as byte).putLong(2L)
+        }
+
+        when:
+        def s = unpacker.unpack(buffer).collectList().block()
+
+        then:
+        s == ["onExtension|-1|[0, 0, 0, 1]", "onExtension|-1|[0, 0, 0, 0, 0, 0, 0, 2]"]
+    }
+
+    @Unroll
+    def "decode ext values split into #max byte buffers"(int max) {
+        def unpacker = new Unpacker<>(new DebugElementParserFactory(), new UnpackerOptions().splitFrameThreshold(0))
+        def buffer = gen { x ->
+            x.put(0xc9 as byte).putInt(20).put(5 as byte).put(new byte[20])
+            x.put(0xc7 as byte).put(12 as byte).put(-1 as byte).putInt(5).putLong(1000L)
+            x.put(0xd6 as byte).put(-1 as byte).putInt(60)
+        }
+
+        when:
+        def s = unpacker.unpack(Flux.fromIterable(randomSplit(max, buffer))).collectList().block()
+
+        then:
+        s == ["onExtension|5|${[0] * 20}|true".toString(), "onTimestamp|1000|5", "onTimestamp|60|0"]
+
+        where:
+        max << [1, 2, 3, 7, 200]
+    }
+
+    def "unpack a stream of buffers after random split"() {
+        def unpacker = new Unpacker<>(new MessageElementParserFactory())
+        def message = new Message(checksum: 200, name: "james", interests: ["reactive", "msgpack"], ratings: [pizza: 100, beer: 100, gerkins: 0])
+
+        when:
+        def m = unpacker.unpack(Flux.fromIterable(randomSplit(4, message.msgpack()))).blockFirst()
+
+        then:
+        m == message
+    }
+
+    def "request input only as downstream demand allows"() {
+        def unpacker = new Unpacker<>(new DebugElementParserFactory())
+        def requests = []
+        def buffers = Flux.range(0, 10)
+        .map { i -> gen { x -> x.put(1 as byte).put(2 as byte).put(3 as byte) } }
+        .doOnRequest { n -> requests << n }
+
+        def received = []
+        Subscription subscription = null
+        unpacker.unpack(buffers).subscribe(new Subscriber<String>() {
+            @Override
+            void onSubscribe(Subscription s) {
+                subscription = s
+            }
+
+            @Override
+            void onNext(String s) {
+                received << s
+            }
+
+            @Override
+            void onError(Throwable t) {
+            }
+
+            @Override
+            void onComplete() {
+            }
+        })
+
+        when:
+        subscription.request(2)
+
+        then:
+        received == ["onByte|1", "onByte|2"]
+        requests == [1]
+
+        when:
+        subscription.request(2)
+
+        then:
+        received == ["onByte|1", "onByte|2", "onByte|3", "onByte|1"]
+        requests == [1, 1]
+    }
+
+    def "decode on a worker of the scheduler while reading up to the pipeline capacity ahead"() {
+        def scheduler = Schedulers.newSingle("decode")
+        def unpacker = new Unpacker<>(new DebugElementParserFactory(), new UnpackerOptions().pipelineCapacity(4))
+        def requests = []
+        def buffers = Flux.range(0, 10)
+                .map { i -> gen { x -> x.put(1 as byte).put(2 as byte).put(3 as byte) } }
+                .doOnRequest { n -> requests << n }
+        def threads = [] as Set
+
+        when:
+        def s = unpacker.unpackOn(buffers, scheduler).doOnNext { threads << Thread.currentThread().name }.collectList().block()
+
+        then:
+        s == ["onByte|1", "onByte|2", "onByte|3"] * 10
+        threads.size() == 1
+        threads.first().startsWith("decode")
+        requests == [4, 3, 3, 3]
+
+        cleanup:
+        scheduler.shutdown()
+    }
+
+    def "stop reading ahead without demand and release queued inputs when cancelled"() {
+        def scheduler = Schedulers.newSingle("decode")
+        def unpacker = new Unpacker<>(new DebugElementParserFactory(), new UnpackerOptions().pipelineCapacity(4))
+        def requests = []
+        def released = new CopyOnWriteArrayList<ByteBuffer>()
+        def conditions = new PollingConditions(timeout: 5)
+        def buffers = Flux.range(0, 100)
+                .map { i -> gen { x -> x.put(1 as byte) } }
+                .doOnRequest { n -> requests << n }
+        def inputAdapter = new InputAdapter<ByteBuffer>() {
+            @Override
+            ByteBuffer[] nioBuffers(ByteBuffer input) {
+                return [input] as ByteBuffer[]
+            }
+
+            @Override
+            void release(ByteBuffer input) {
+                released << input
+            }
+        }
+
+        Subscription subscription = null
+        unpacker.unpackOn(buffers, inputAdapter, scheduler).subscribe(new Subscriber<String>() {
+            @Override
+            void onSubscribe(Subscription s) {
+                subscription = s
+            }
+
+            @Override
+            void onNext(String s) {
+            }
+
+            @Override
+            void onError(Throwable t) {
+            }
+
+            @Override
+            void onComplete() {
+            }
+        })
+
+        when:
+        subscription.cancel()
+
+        then:
+        requests == [4]
+        conditions.eventually {
+            released.size() == 4
+        }
+
+        cleanup:
+        scheduler.shutdown()
+    }
+
+    def "hold split frame state per subscription"() {
+        def unpacker = new Unpacker<>(new DebugElementParserFactory())
+        def message = new Message(checksum: 200, name: "james", interests: ["reactive", "msgpack"], ratings: [pizza: 100, beer: 100, gerkins: 0])
+
+        when: "two subscriptions are decoded in lock step"
+        def first = unpacker.unpack(Flux.fromIterable(randomSplit(4, message.msgpack())))
+        def second = unpacker.unpack(Flux.fromIterable(randomSplit(3, message.msgpack())))
+        def pairs = Flux.zip(first, second).collectList().block()
+
+        then:
+        pairs.size() == 12
+        pairs.every { x -> x.t1 == x.t2 }
+    }
+
+    def "share one unpacker between concurrent streams that only create their state on first input"() {
+        def chains = new AtomicInteger()
+        def elementParserFactory = { consumer ->
+            chains.incrementAndGet()
+            new MessageElementParserFactory().firstElementParser(consumer)
+        } as ElementParserFactory<Message>
+        def unpacker = new Unpacker<>(elementParserFactory)
+        def messages = (0..<200).collect { i -> new Message(checksum: i, name: "n${i}", interests: ["i${i}"], ratings: [pizza: i]) }
+        def inputs = messages.collect { m -> randomSplit(3, m.msgpack()) }
+
+        when:
+        def idle = unpacker.unpack(Flux.<ByteBuffer> never()).subscribe()
+
+        then:
+        chains.get() == 0
+
+        when:
+        def decoded = Flux.fromIterable(inputs)
+                .flatMap({ buffers -> unpacker.unpack(Flux.fromIterable(buffers).subscribeOn(Schedulers.parallel())) }, 16)
+                .collectList()
+                .block()
+
+        then:
+        decoded.sort { it.checksum } == messages
+        chains.get() == 200
+
+        cleanup:
+        idle?.dispose()
+    }
+
+    @Unroll
+    def "stream #description payloads that span input buffers"(String description, List<ByteBuffer> buffers, String message) {
+        def unpacker = new Unpacker<>(new DebugElementParserFactory(rawStreaming: true))
+
+        when:
+        def s = unpacker.unpack(Flux.fromIterable(buffers)).collect(Collectors.joining("\n")).block()
+
+        then:
+        s == message
+
+        where:
+        description           | buffers                                                                                                                            | message
+        "bin32"               | [gen { x -> x.put(0xc6 as byte).putInt(4).put(1 as byte) }, gen { x -> x.put(2 as byte).put(3 as byte) }, gen { x -> x.put(4 as byte).put(5 as byte) }] | "onRawStart|4|false\nonRawChunk|[1]\nonRawChunk|[2, 3]\nonRawChunk|[4]\nonRawEnd\nonByte|5"
+        "bin32 split header"  | [gen { x -> x.put(0xc6 as byte).putShort(0 as short) }, gen { x -> x.putShort(3 as short).put(1 as byte).put(2 as byte) }, gen { x -> x.put(3 as byte) }] | "onRawStart|3|false\nonRawChunk|[1, 2]\nonRawChunk|[3]\nonRawEnd"
+        "str8 split header"   | [gen { x -> x.put(0xd9 as byte) }, gen { x -> x.put(5 as byte) }, gen { x -> x.put("james".bytes) }]                               | "onRawStart|5|true\nonRawChunk|[106, 97, 109, 101, 115]\nonRawEnd"
+        "fixstr"              | [gen { x -> x.put(0xa5 as byte).put("ja".bytes) }, gen { x -> x.put("mes".bytes) }]                                                  | "onRawStart|5|true\nonRawChunk|[106, 97]\nonRawChunk|[109, 101, 115]\nonRawEnd"
+        "whole"               | [gen { x -> x.put(0xc4 as byte).put(2 as byte).put(10 as byte).put(12 as byte) }]                                                | "onRaw|[10, 12]"
+    }
+
+    @Unroll
+    def "reassemble frames split into #max byte buffers with a split frame threshold of #threshold"(int max, int threshold) {
+        def unpacker = new Unpacker<>(new DebugElementParserFactory(), new UnpackerOptions().splitFrameThreshold(threshold))
+        def message = new Message(checksum: 200, name: "j" * 40, interests: ["reactive", "msgpack"], ratings: [pizza: 100, beer: 100, gerkins: 0])
+        def buffers = randomSplit(max, message.msgpack()) + randomSplit(max, message.msgpack())
+
+        when:
+        def s = unpacker.unpack(Flux.fromIterable(buffers)).collectList().block()
+
+        then:
+        s.size() == 24
+        s[0] == "onString|${"j" * 40}".toString()
+        s[12] == s[0]
+        s[11] == "onLong|200"
+        s[23] == "onLong|200"
+
+        where:
+        max | threshold
+        1   | 0
+        1   | 32
+        2   | 64 * 1024
+        7   | 32
+    }
+
+    @Unroll
+    def "skip the values of uninteresting keys split into #max byte buffers"(int max) {
+        def unpacker = new Unpacker<>(new DebugElementParserFactory(skippedKeys: ["skipped"] as Set), new UnpackerOptions().splitFrameThreshold(0))
+        def buffer = gen { x ->
+            x.put(0x83 as byte)
+            x.put(0xa7 as byte).put("skipped".bytes)
+            // JL {"x": [1, bin32(100), "msgpack", {}], "y": 1.5}
+            x.put(0x82 as byte).put(0xa1 as byte).put("x".bytes).put(0x94 as byte).put(1 as byte)
+            x.put(0xc6 as byte).putInt(100).put(new byte[100]).put(0xd9 as byte).put(7 as byte).put("msgpack".bytes).put(0x80 as byte)
+            x.put(0xa1 as byte).put("y".bytes).put(0xcb as byte).putDouble(1.5d)
+            x.put(0xa4 as byte).put("kept".bytes).put(0xd3 as byte).putLong(-1L)
+            x.put(0xa7 as byte).put("skipped".bytes).put(0xdb as byte).putInt(3).put("abc".bytes)
+        }
+
+        when:
+        def s = unpacker.unpack(Flux.fromIterable(randomSplit(max, buffer))).collectList().block()
+
+        then:
+        s == ["onMapHeader|3", "onString|skipped", "onString|kept", "onLong|-1", "onString|skipped"]
+
+        where:
+        max << [1, 2, 3, 7, 200]
+    }
+
+    def "skip nothing when asked to skip zero values"() {
+        def elementParser = new DebugElementParserFactory().firstElementParser({})
+
+        expect:
+        ElementParser.skip(0, elementParser).is(elementParser)
+    }
+
+    @Unroll
+    def "decode messages in parallel with preserve order #preserveOrder"(boolean preserveOrder) {
+        def options = new UnpackerOptions().parallelBatchSize(100).preserveOrder(preserveOrder)
+        def unpacker = new Unpacker<>(new MessageElementParserFactory(), options)
+        def messages = (0..<500).collect { i -> new Message(checksum: i, name: "name${i}", interests: ["reactive"], ratings: [pizza: i]) }
+        def input = ByteBuffer.allocate(messages.sum { it.msgpack().remaining() } as int)
+        messages.each { input.put(it.msgpack()) }
+        input.flip()
+
+        when:
+        def m = unpacker.unpackParallel(input, 4).collectList().block()
+
+        then:
+        preserveOrder ? m == messages : m.sort { it.checksum } == messages
+        input.position() == 0
+
+        where:
+        preserveOrder << [true, false]
     }
 
     /**
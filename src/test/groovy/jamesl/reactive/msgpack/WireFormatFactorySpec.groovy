@@ -81,6 +81,9 @@ class WireFormatFactorySpec extends Specification {
         0xc4  | WireFormatFactory.Bin8
         0xc5  | WireFormatFactory.Bin16
         0xc6  | WireFormatFactory.Bin32
+        0xc7  | WireFormatFactory.Ext8
+        0xc8  | WireFormatFactory.Ext16
+        0xc9  | WireFormatFactory.Ext32
         0xca  | WireFormatFactory.Float32
         0xcb  | WireFormatFactory.Float64
         0xcc  | WireFormatFactory.UnsignedInt8
@@ -91,6 +94,11 @@ class WireFormatFactorySpec extends Specification {
         0xd1  | WireFormatFactory.Int16
         0xd2  | WireFormatFactory.Int32
         0xd3  | WireFormatFactory.Int64
+        0xd4  | WireFormatFactory.FixExt
+        0xd5  | WireFormatFactory.FixExt
+        0xd6  | WireFormatFactory.FixExt
+        0xd7  | WireFormatFactory.FixExt
+        0xd8  | WireFormatFactory.FixExt
         0xd9  | WireFormatFactory.Str8
         0xda  | WireFormatFactory.Str16
         0xdb  | WireFormatFactory.Str32
@@ -111,24 +119,4 @@ class WireFormatFactorySpec extends Specification {
         where:
         value << (0xe0..0xff)
     }
-
-    @Unroll
-    def "wire format #value is an extension and not supported"(int value) {
-        when:
-        def wireFormat = wireFormatFactory.newWireFormat(value as byte);
-
-        then:
-        wireFormat instanceof WireFormatFactory.NeverUsed
-
-        where:
-        value | _
-        0xc7  | _
-        0xc8  | _
-        0xc9  | _
-        0xd4  | _
-        0xd5  | _
-        0xd6  | _
-        0xd7  | _
-        0xd8  | _
-    }
 }
@@ -0,0 +1,240 @@
+package jamesl.reactive.msgpack.bind
+
+import groovy.transform.EqualsAndHashCode
+import groovy.transform.ToString
+import jamesl.reactive.msgpack.ElementOutput
+import jamesl.reactive.msgpack.ElementWriter
+import jamesl.reactive.msgpack.Packer
+import jamesl.reactive.msgpack.Unpacker
+import reactor.core.publisher.Flux
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+
+import static jamesl.reactive.msgpack.Buffers.split
+
+/**
+ * @author jamesl
+ * @since 1.0
+ */
+class BoundElementParserFactorySpec extends Specification {
+    def "bind every supported field type"() {
+        def profile = new Profile(name: "james", checksum: 1L << 40, age: 40, score: 2.5d, ratio: 0.5f, small: 300 as short, tiny: -3 as byte,
+                active: true, boxed: 7, big: BigInteger.ONE.shiftLeft(63), avatar: [1, 2, 3] as byte[], nickname: "jl",
+                interests: ["reactive", "msgpack"], ratings: [pizza: 100, beer: 100], address: new Address(street: "high st", number: 1),
+                previous: [new Address(street: "low st", number: 2), new Address(street: "mid st", number: 3)])
+
+        when:
+        def bound = unpack(Profile, pack { ElementOutput x -> writeProfile(profile, x) })
+
+        then:
+        bound == [profile]
+    }
+
+    def "bind a stream of objects split across buffers"() {
+        def profiles = (0..<50).collect { i -> new Profile(name: "name${i}", checksum: i, interests: ["a${i}"], ratings: [pizza: i], address: new Address(street: "s${i}", number: i)) }
+        def packed = pack { ElementOutput x -> profiles.each { writeProfile(it, x) } }
+
+        when:
+        def bound = new Unpacker<>(BoundElementParserFactory.of(Profile)).unpack(Flux.fromIterable(split(3, packed))).collectList().block()
+
+        then:
+        bound == profiles
+    }
+
+    @Unroll
+    def "skip #description"(String description, Closure write) {
+        when:
+        def bound = unpack(Address, pack { ElementOutput x ->
+            x.packMapHeader(4)
+            x.packString("street").packString("high st")
+            write(x)
+            x.packString("number").packInt(9)
+            x.packString("other").packString("ignored")
+        })
+
+        then:
+        bound == [new Address(street: "high st", number: 9)]
+
+        where:
+        description                       | write
+        "unknown keys with nested values" | { ElementOutput x -> x.packString("nested").packMapHeader(1).packString("a").packArrayHeader(2).packInt(1).packMapHeader(0) }
+        "values of the wrong type"        | { ElementOutput x -> x.packString("street").packArrayHeader(2).packInt(1).packInt(2) }
+        "keys that are not strings"       | { ElementOutput x -> x.packInt(5).packMapHeader(1).packString("b").packNull() }
+        "ignored fields"                  | { ElementOutput x -> x.packString("ignored").packString("x") }
+    }
+
+    def "skip ext values and timestamps"() {
+        def buffer = ByteBuffer.allocate(64)
+        buffer.put(0x84 as byte)
+        buffer.put(0xa6 as byte).put("street".bytes).put(0xa7 as byte).put("high st".bytes)
+        buffer.put(0xa4 as byte).put("when".bytes).put(0xd6 as byte).put(-1 as byte).putInt(60)
+        buffer.put(0xd4 as byte).put(5 as byte).put(1 as byte).put(0x91 as byte).put(0x01 as byte)
+        buffer.put(0xa6 as byte).put("number".bytes).put(0x09 as byte)
+        buffer.flip()
+
+        expect:
+        unpack(Address, buffer) == [new Address(street: "high st", number: 9)]
+    }
+
+    def "only emit an object once the value of its last unknown key has been skipped"() {
+        def buffer = pack { ElementOutput x ->
+            x.packMapHeader(2).packString("street").packString("high st").packString("other").packArrayHeader(2).packInt(1).packInt(2)
+        }
+
+        when:
+        def complete = unpack(Address, buffer.duplicate())
+        buffer.limit(buffer.limit() - 1)
+        def truncated = unpack(Address, buffer)
+
+        then:
+        complete == [new Address(street: "high st")]
+        truncated == []
+    }
+
+    def "bind keys in any order and leave missing fields unset"() {
+        when:
+        def bound = unpack(Address, pack { ElementOutput x ->
+            x.packMapHeader(1).packString("number").packInt(3)
+            x.packMapHeader(2).packString("number").packInt(4).packString("street").packNull()
+            x.packMapHeader(0)
+        })
+
+        then:
+        bound == [new Address(number: 3), new Address(number: 4), new Address()]
+    }
+
+    def "bind values and map keys that equal field names"() {
+        when:
+        def bound = unpack(Profile, pack { ElementOutput x ->
+            x.packMapHeader(3)
+            x.packString("name").packString("name")
+            x.packString("interests").packArrayHeader(1).packString("ratings")
+            x.packString("ratings").packMapHeader(1).packString("name").packInt(1)
+        })
+
+        then:
+        bound == [new Profile(name: "name", interests: ["ratings"], ratings: [name: 1])]
+    }
+
+    def "skip top level values that are not maps"() {
+        when:
+        def bound = unpack(Address, pack { ElementOutput x ->
+            x.packInt(1)
+            x.packArrayHeader(2).packMapHeader(1).packString("number").packInt(1).packString("x")
+            x.packMapHeader(1).packString("number").packInt(5)
+        })
+
+        then:
+        bound == [new Address(number: 5)]
+    }
+
+    def "bind a name to the subclass field that hides a superclass field"() {
+        def hidden = Address.getDeclaredField("street")
+        hidden.accessible = true
+
+        when:
+        def bound = unpack(HidingAddress, pack { ElementOutput x -> x.packMapHeader(1).packString("street").packString("high st") })
+
+        then:
+        bound.size() == 1
+        bound[0].street == "high st"
+        hidden.get(bound[0]) == null
+    }
+
+    def "reject classes without a no-arg constructor"() {
+        when:
+        BoundElementParserFactory.of(NoDefaultConstructor)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private static void writeProfile(Profile profile, ElementOutput x) {
+        x.packMapHeader(16)
+        x.packString("name").packString(profile.name)
+        x.packString("checksum").packLong(profile.checksum)
+        x.packString("age").packInt(profile.age)
+        x.packString("score").packDouble(profile.score)
+        x.packString("ratio").packFloat(profile.ratio)
+        x.packString("small").packInt(profile.small)
+        x.packString("tiny").packInt(profile.tiny)
+        x.packString("active").packBoolean(profile.active)
+        x.packString("boxed")
+        profile.boxed == null ? x.packNull() : x.packInt(profile.boxed)
+        x.packString("big")
+        profile.big == null ? x.packNull() : x.packBigInteger(profile.big)
+        x.packString("avatar")
+        profile.avatar == null ? x.packNull() : x.packRaw(profile.avatar)
+        x.packString("nick")
+        profile.nickname == null ? x.packNull() : x.packString(profile.nickname)
+        x.packString("interests").packArrayHeader(profile.interests.size())
+        profile.interests.each { x.packString(it) }
+        x.packString("ratings").packMapHeader(profile.ratings.size())
+        profile.ratings.each { k, v -> x.packString(k).packInt(v) }
+        x.packString("address")
+        writeAddress(profile.address, x)
+        x.packString("previous").packArrayHeader(profile.previous.size())
+        profile.previous.each { writeAddress(it, x) }
+    }
+
+    private static void writeAddress(Address address, ElementOutput x) {
+        x.packMapHeader(2).packString("street").packString(address.street).packString("number").packInt(address.number)
+    }
+
+    private static <T> List<T> unpack(Class<T> type, ByteBuffer buffer) {
+        new Unpacker<>(BoundElementParserFactory.of(type)).unpack(Flux.just(buffer)).collectList().block()
+    }
+
+    private static ByteBuffer pack(Closure write) {
+        def buffers = new Packer<Object>({ value, output -> write(output) } as ElementWriter, 4096).pack(Flux.just("x")).collectList().block()
+        assert buffers.size() == 1
+        buffers[0]
+    }
+
+    @EqualsAndHashCode
+    @ToString(includeNames = true)
+    static class Profile {
+        String name
+        long checksum
+        int age
+        double score
+        float ratio
+        short small
+        byte tiny
+        boolean active
+        Integer boxed
+        BigInteger big
+        byte[] avatar
+        @MsgpackField("nick")
+        String nickname
+        @MsgpackField(ignore = true)
+        String ignored
+        List<String> interests = []
+        Map<String, Integer> ratings = [:]
+        Address address
+        List<Address> previous = []
+    }
+
+    @EqualsAndHashCode
+    @ToString(includeNames = true)
+    static class Address {
+        String street
+        int number
+        @MsgpackField(ignore = true)
+        String ignored
+    }
+
+    static class HidingAddress extends Address {
+        String street
+    }
+
+    static class NoDefaultConstructor {
+        String name
+
+        NoDefaultConstructor(String name) {
+            this.name = name
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package jamesl.reactive.msgpack.json
+
+import jamesl.reactive.msgpack.BufferPool
+import jamesl.reactive.msgpack.Message
+import jamesl.reactive.msgpack.UnpackerOptions
+import reactor.core.publisher.Flux
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+
+import static jamesl.reactive.msgpack.Buffers.gen
+import static jamesl.reactive.msgpack.Buffers.split
+
+/**
+ * @author jamesl
+ * @since 1.0
+ */
+class JsonTranscoderSpec extends Specification {
+    def message = new Message(checksum: 200, name: "james", interests: ["reactive", "msgpack"], ratings: [pizza: 100, beer: 100, gerkins: 0])
+    def messageJson = '"james"' + '["reactive","msgpack"]' + '{"pizza":100,"beer":100,"gerkins":0}' + '200'
+
+    @Unroll
+    def "transcode #description"(String description, ByteBuffer buffer, String json) {
+        def transcoder = new JsonTranscoder()
+
+        when:
+        def s = transcoder.transcode(Flux.just(buffer)).map { x -> utf8(x) }.collectList().block()
+
+        then:
+        s == [json]
+
+        where:
+        description          | buffer                                                                                                 | json
+        "nil"                | gen { x -> x.put(0xc0 as byte) }                                                                       | 'null'
+        "booleans"           | gen { x -> x.put(0x92 as byte).put(0xc3 as byte).put(0xc2 as byte) }                                   | '[true,false]'
+        "negative fixint"    | gen { x -> x.put(0xe0 as byte) }                                                                       | '-32'
+        "int64 min"          | gen { x -> x.put(0xd3 as byte).putLong(Long.MIN_VALUE) }                                               | '-9223372036854775808'
+        "uint64 above max"   | gen { x -> x.put(0xcf as byte).putLong(-1L) }                                                          | '18446744073709551615'
+        "float32"            | gen { x -> x.put(0xca as byte).putFloat(2.345f) }                                                      | '2.345'
+        "float64"            | gen { x -> x.put(0xcb as byte).putDouble(-0.5d) }                                                      | '-0.5'
+        "NaN"                | gen { x -> x.put(0xcb as byte).putDouble(Double.NaN) }                                                 | 'null'
+        "escaped string"     | gen { x -> x.put(0xa8 as byte).put('a"b\\c\n\t\u0001'.getBytes(StandardCharsets.UTF_8)) }              | '"a\\"b\\\\c\\n\\t\\u0001"'
+        "utf-8 string"       | gen { x -> x.put(0xa2 as byte).put("\u00e9".getBytes(StandardCharsets.UTF_8)) }                        | '"\u00e9"'
+        "bin"                | gen { x -> x.put(0x93 as byte).put([0xc4, 1, 0xff] as byte[]).put([0xc4, 2, 1, 2] as byte[]).put([0xc4, 3, 1, 2, 3] as byte[]) } | '["/w==","AQI=","AQID"]'
+        "empty containers"   | gen { x -> x.put(0x92 as byte).put(0x90 as byte).put(0x80 as byte) }                                   | '[[],{}]'
+        "nested containers"  | gen { x -> x.put(0x82 as byte).put(0xa1 as byte).put(0x61 as byte).put(0x91 as byte).put(0x81 as byte).put(0xa1 as byte).put(0x62 as byte).put(0x90 as byte).put(0xa1 as byte).put(0x63 as byte).put(1 as byte) } | '{"a":[{"b":[]}],"c":1}'
+        "non-string keys"    | gen { x -> x.put(0x83 as byte).put(1 as byte).put(0xc2 as byte).put(0xc0 as byte).put(2 as byte).put(0xc3 as byte).put(3 as byte) } | '{"1":false,"null":2,"true":3}'
+        "timestamp"          | gen { x -> x.put(0xd6 as byte).put(-1 as byte).putInt(60) }                                            | '"1970-01-01T00:01:00Z"'
+        "timestamp64"        | gen { x -> x.put(0xd7 as byte).put(-1 as byte).putLong((123000L << 34) | 951782400L) }                | '"2000-02-29T00:00:00.000123Z"'
+        "timestamp96"        | gen { x -> x.put(0xc7 as byte).put(12 as byte).put(-1 as byte).putInt(5).putLong(-62167219201L) }     | '"-0001-12-31T23:59:59.000000005Z"'
+        "timestamp96 max"    | gen { x -> x.put(0xc7 as byte).put(12 as byte).put(-1 as byte).putInt(5).putLong(Long.MAX_VALUE) }    | '"9223372036854775807.000000005"'
+        "timestamp96 min"    | gen { x -> x.put(0xc7 as byte).put(12 as byte).put(-1 as byte).putInt(5).putLong(Long.MIN_VALUE) }    | '"-9223372036854775807.999999995"'
+        "ext"                | gen { x -> x.put(0xd5 as byte).put(5 as byte).put([1, 2] as byte[]) }                                  | '{"type":5,"data":"AQI="}'
+    }
+
+    @Unroll
+    def "transcode messages split into #max byte buffers"(int max) {
+        def transcoder = new JsonTranscoder(new BufferPool(16, 4), new UnpackerOptions().splitFrameThreshold(0))
+        def bytes = message.msgpack()
+        def buffers = split(max, bytes) + split(max, bytes.rewind() as ByteBuffer)
+
+        when:
+        def s = transcoder.transcode(Flux.fromIterable(buffers)).map { x -> utf8(x) }.collectList().block()
+
+        then:
+        s.join("") == messageJson * 2
+        s.size() == 8
+
+        where:
+        max << [1, 2, 3, 7, 200]
+    }
+
+    def "transcode streamed str and bin payloads chunk by chunk"() {
+        def transcoder = new JsonTranscoder(new BufferPool(16, 4), new UnpackerOptions().splitFrameThreshold(0))
+        def buffer = gen { x ->
+            x.put(0x92 as byte)
+            x.put(0xd9 as byte).put(6 as byte).put('x"\n\u00e9y'.getBytes(StandardCharsets.UTF_8))
+            x.put(0xc4 as byte).put(7 as byte).put([1, 2, 3, 4, 5, 6, 7] as byte[])
+        }
+
+        when:
+        def s = transcoder.transcode(Flux.fromIterable(split(1, buffer))).map { x -> utf8(x) }.collectList().block()
+
+        then:
+        s == ['["x\\"\\n\u00e9y","AQIDBAUGBw=="]']
+    }
+
+    def "write values larger than the pooled buffers to larger buffers"() {
+        def transcoder = new JsonTranscoder(new BufferPool(8, 4))
+        def buffer = gen { x -> x.put(0xd9 as byte).put(100 as byte).put(("\n" * 100).bytes) }
+
+        when:
+        def s = transcoder.transcode(Flux.just(buffer)).map { x -> utf8(x) }.collectList().block()
+
+        then:
+        s == ['"' + '\\n' * 100 + '"']
+    }
+
+    def "fail the stream on container map keys"() {
+        def transcoder = new JsonTranscoder()
+        def buffer = gen { x -> x.put(0x81 as byte).put(0x90 as byte).put(1 as byte) }
+
+        when:
+        transcoder.transcode(Flux.just(buffer)).blockLast()
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    def "fail the stream on timestamp map keys"() {
+        def transcoder = new JsonTranscoder()
+        def buffer = gen { x -> x.put(0x81 as byte).put(0xd6 as byte).put(-1 as byte).putInt(60).put(1 as byte) }
+
+        when:
+        transcoder.transcode(Flux.just(buffer)).blockLast()
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    /**
+     * Returns the UTF-8 string in the remaining bytes of {@code buffer}.
+     *
+     * @param buffer
+     * @return
+     */
+    private static String utf8(ByteBuffer buffer) {
+        StandardCharsets.UTF_8.decode(buffer).toString()
+    }
+}
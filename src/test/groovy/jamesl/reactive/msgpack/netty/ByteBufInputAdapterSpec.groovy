@@ -0,0 +1,130 @@
+package jamesl.reactive.msgpack.netty
+
+import io.netty.buffer.ByteBuf
+import io.netty.buffer.PooledByteBufAllocator
+import io.netty.buffer.Unpooled
+import jamesl.reactive.msgpack.DebugElementParserFactory
+import jamesl.reactive.msgpack.Message
+import jamesl.reactive.msgpack.MessageElementParserFactory
+import jamesl.reactive.msgpack.Unpacker
+import reactor.core.publisher.Flux
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.stream.Collectors
+
+/**
+ * @author jamesl
+ * @since 1.0
+ */
+class ByteBufInputAdapterSpec extends Specification {
+    def message = new Message(checksum: 200, name: "james", interests: ["reactive", "msgpack"], ratings: [pizza: 100, beer: 100, gerkins: 0])
+
+    @Unroll
+    def "decode composite buffers of #max byte components in place"(int max) {
+        def unpacker = new Unpacker<>(new MessageElementParserFactory())
+        def composites = (0..<3).collect { composite(max, bytes(message)) }
+
+        when:
+        def m = unpacker.unpack(Flux.fromIterable(composites), ByteBufInputAdapter.byteBufs()).collectList().block()
+
+        then:
+        m == [message, message, message]
+        composites.every { it.refCnt() == 0 }
+
+        where:
+        max << [1, 3, 8, 200]
+    }
+
+    @Unroll
+    def "reassemble frames that span #numberOfComponents composite components at every offset"(int numberOfComponents) {
+        def unpacker = new Unpacker<>(new MessageElementParserFactory())
+        def spanning = new Message(checksum: 70000, name: "j" * 40, interests: ["reactive", "msgpack"], ratings: [pizza: 100, beer: 100, gerkins: 0])
+        def bytes = bytes(spanning)
+        def composites = (1..bytes.length - numberOfComponents + 1).collect { offset ->
+            composite(bytes, (0..<numberOfComponents - 1).collect { offset + it })
+        }
+
+        when:
+        def m = unpacker.unpack(Flux.fromIterable(composites), ByteBufInputAdapter.byteBufs()).collectList().block()
+
+        then:
+        m == [spanning] * composites.size()
+        composites.every { it.refCnt() == 0 }
+
+        where:
+        numberOfComponents << [2, 3]
+    }
+
+    def "decode pooled direct buffers from the reader index"() {
+        def unpacker = new Unpacker<>(new MessageElementParserFactory())
+        def buffer = PooledByteBufAllocator.DEFAULT.directBuffer(256)
+        buffer.writeBytes([0xc0, 0xc0, 0xc0] as byte[]).writeBytes(bytes(message)).readerIndex(3)
+
+        when:
+        def m = unpacker.unpack(Flux.just(buffer), ByteBufInputAdapter.byteBufs()).collectList().block()
+
+        then:
+        m == [message]
+        buffer.refCnt() == 0
+    }
+
+    def "release buffers that are not fully decoded when cancelled"() {
+        def unpacker = new Unpacker<>(new DebugElementParserFactory())
+        def buffer = Unpooled.wrappedBuffer([0x01, 0x02, 0x03] as byte[])
+
+        when:
+        def s = unpacker.unpack(Flux.just(buffer), ByteBufInputAdapter.byteBufs()).take(1).collect(Collectors.toList()).block()
+
+        then:
+        s == ["onByte|1"]
+        buffer.refCnt() == 0
+    }
+
+    /**
+     * Returns the msgpack encoding of {@code message}.
+     *
+     * @param message
+     * @return
+     */
+    private static byte[] bytes(Message message) {
+        def buffer = message.msgpack()
+        Arrays.copyOf(buffer.array(), buffer.limit())
+    }
+
+    /**
+     * Returns a composite buffer over {@code bytes} with components of between 1 and {@code max} bytes.
+     *
+     * @param max
+     * @param bytes
+     * @return
+     */
+    private static ByteBuf composite(int max, byte[] bytes) {
+        def random = new Random()
+        def composite = Unpooled.compositeBuffer(Integer.MAX_VALUE)
+        int offset = 0
+        while (offset < bytes.length) {
+            int length = Math.min(random.nextInt(max) + 1, bytes.length - offset)
+            composite.addComponent(true, Unpooled.copiedBuffer(bytes, offset, length))
+            offset += length
+        }
+        return composite
+    }
+
+    /**
+     * Returns a composite buffer over {@code bytes} that is split into components at each of {@code offsets}.
+     *
+     * @param bytes
+     * @param offsets
+     * @return
+     */
+    private static ByteBuf composite(byte[] bytes, List<Integer> offsets) {
+        def composite = Unpooled.compositeBuffer(Integer.MAX_VALUE)
+        int start = 0
+        (offsets + bytes.length).each { end ->
+            composite.addComponent(true, Unpooled.copiedBuffer(bytes, start, end - start))
+            start = end
+        }
+        return composite
+    }
+}